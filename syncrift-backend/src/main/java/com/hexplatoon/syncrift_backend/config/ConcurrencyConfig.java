@@ -0,0 +1,140 @@
+package com.hexplatoon.syncrift_backend.config;
+
+import com.hexplatoon.syncrift_backend.service.battle.BattleShardExecutor;
+import com.hexplatoon.syncrift_backend.service.timer.HashedWheelTimer;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread pools and timers shared by the battle services.
+ */
+@Configuration
+public class ConcurrencyConfig {
+
+    /**
+     * Runs expired battle deadlines (battle end, readiness timeout). Kept separate from the
+     * timing wheel so slow callbacks such as CSS scoring never delay other expiries.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor battleTimerExecutor(
+            @Value("${battle.timer.executor.threads:8}") int threads,
+            @Value("${battle.timer.executor.queue-capacity:10000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("battle-timer-");
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        return executor;
+    }
+
+    @Bean(destroyMethod = "stop")
+    public HashedWheelTimer battleWheelTimer(
+            @Qualifier("battleTimerExecutor") ThreadPoolTaskExecutor battleTimerExecutor,
+            @Value("${battle.timer.tick-ms:100}") long tickMillis,
+            @Value("${battle.timer.ticks-per-wheel:512}") int ticksPerWheel) {
+        return new HashedWheelTimer("battle", tickMillis, TimeUnit.MILLISECONDS, ticksPerWheel, battleTimerExecutor);
+    }
+
+    /**
+     * Event loops that own the battles, by default one per core. Messages and typing battle
+     * expiries of a battle run in order on its loop.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public BattleShardExecutor battleShardExecutor(
+            @Value("${battle.shards:0}") int shards,
+            @Value("${battle.shard.queue-capacity:10000}") int queueCapacity,
+            @Value("${battle.shard.offer-timeout-ms:100}") long offerTimeoutMillis) {
+        return new BattleShardExecutor(shards > 0 ? shards : Runtime.getRuntime().availableProcessors(),
+                queueCapacity, offerTimeoutMillis);
+    }
+
+    /**
+     * Single writer that group-commits the queued battle lifecycle writes.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor battleWriteExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("battle-write-");
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(15);
+        return executor;
+    }
+
+    /**
+     * Single writer that appends ended battles to the replay journal and forces them to
+     * disk together.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor replayWriteExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("replay-write-");
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(15);
+        return executor;
+    }
+
+    /**
+     * Renders and scores CSS submissions, both players of a battle in parallel. Sized to the
+     * browser pool since every task holds a browser while it renders.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor cssScoringExecutor(
+            @Value("${css.scoring.executor.threads:4}") int threads,
+            @Value("${css.scoring.executor.queue-capacity:1000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("css-scoring-");
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    /**
+     * Runs the per-upload stages (resize/encode, palette, scoring features) in parallel.
+     * Memory use is bounded separately by the upload memory budget.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor imageProcessingExecutor(
+            @Value("${image.processing.executor.threads:4}") int threads,
+            @Value("${image.processing.executor.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("image-processing-");
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    /**
+     * Processes the images of bulk uploads, a few at a time so a large batch cannot starve
+     * single uploads of the image processing pool.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor bulkUploadExecutor(
+            @Value("${image.bulk.executor.threads:2}") int threads,
+            @Value("${image.bulk.executor.queue-capacity:1000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("bulk-upload-");
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
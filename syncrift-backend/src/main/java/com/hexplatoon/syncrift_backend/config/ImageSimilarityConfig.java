@@ -0,0 +1,37 @@
+package com.hexplatoon.syncrift_backend.config;
+
+import com.hexplatoon.syncrift_backend.service.battle.css.similarity.ImageSimilarity;
+import com.hexplatoon.syncrift_backend.service.battle.css.similarity.OpenCvImageSimilarity;
+import com.hexplatoon.syncrift_backend.service.battle.css.similarity.SsimImageSimilarity;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Picks the CSS battle scoring engine: {@code ssim} (default, needs the Vector API module)
+ * or {@code opencv} (legacy mean absolute difference).
+ */
+@Slf4j
+@Configuration
+public class ImageSimilarityConfig {
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    @Bean
+    public ImageSimilarity imageSimilarity(
+            @Value("${css.similarity.engine:ssim}") String engine,
+            @Value("${css.similarity.multi-scale:true}") boolean multiScale,
+            @Value("${css.similarity.parallelism:0}") int parallelism) {
+        if ("opencv".equalsIgnoreCase(engine)) {
+            return new OpenCvImageSimilarity();
+        }
+        // Checked by name so the Vector API classes are never loaded when the module is missing
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            log.warn("{} is not enabled (start the JVM with --add-modules {}), falling back to OpenCV scoring",
+                    VECTOR_MODULE, VECTOR_MODULE);
+            return new OpenCvImageSimilarity();
+        }
+        return new SsimImageSimilarity(parallelism, multiScale);
+    }
+}
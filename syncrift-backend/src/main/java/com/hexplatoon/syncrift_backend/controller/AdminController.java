@@ -1,26 +1,44 @@
 package com.hexplatoon.syncrift_backend.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hexplatoon.syncrift_backend.dto.UploadImageResponse;
+import com.hexplatoon.syncrift_backend.dto.image.BulkUploadItemDto;
+import com.hexplatoon.syncrift_backend.dto.image.BulkUploadJobDto;
 import com.hexplatoon.syncrift_backend.entity.Image;
+import com.hexplatoon.syncrift_backend.exception.ImageUploadRejectedException;
 import com.hexplatoon.syncrift_backend.service.ImageUploadService;
+import com.hexplatoon.syncrift_backend.service.image.BulkImageUploadService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
 import java.io.IOException;
+import java.util.List;
 
 @RestController
 @RequestMapping("/admin")
 @RequiredArgsConstructor
 public class AdminController {
     private final ImageUploadService imageUploadService;
+    private final BulkImageUploadService bulkImageUploadService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${image.bulk.stream-timeout-ms:1800000}")
+    private long bulkStreamTimeoutMillis;
 
     @PostMapping("/upload")
-    public ResponseEntity<UploadImageResponse> uploadImage(@RequestParam("image") MultipartFile imageFile) {
+    public ResponseEntity<UploadImageResponse> uploadImage(
+            @RequestParam("image") MultipartFile imageFile,
+            @RequestParam(value = "difficulty", required = false) Image.Difficulty difficulty) {
         try {
-            Image savedImage = imageUploadService.uploadImage(imageFile); // Call the service method
+            Image savedImage = imageUploadService.uploadImage(imageFile, difficulty); // Call the service method
             UploadImageResponse response = UploadImageResponse.builder() // Use builder pattern for DTO
                     .message("Image uploaded successfully to Cloudinary and URL saved to DB.")
                     .cloudinaryUrl(savedImage.getCloudinaryUrl())
@@ -34,6 +52,11 @@ public class AdminController {
             return ResponseEntity.badRequest().body(UploadImageResponse.builder()
                     .message("Error: " + e.getMessage())
                     .build());
+        } catch (ImageUploadRejectedException e) {
+            System.err.println("Upload rejected (Busy): " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(UploadImageResponse.builder()
+                    .message("Error: " + e.getMessage())
+                    .build());
         } catch (IOException e) {
             System.err.println("Server error during file operation: " + e.getMessage());
             e.printStackTrace();
@@ -48,4 +71,88 @@ public class AdminController {
                     .build());
         }
     }
+
+    /**
+     * Uploads a batch of images, sent as repeated "images" parts and/or a ZIP "archive".
+     * Progress is streamed as NDJSON: one line per item, then a summary line.
+     */
+    @PostMapping(value = "/upload/bulk", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> uploadImages(
+            @RequestParam(value = "images", required = false) List<MultipartFile> images,
+            @RequestParam(value = "archive", required = false) MultipartFile archive,
+            @RequestParam(value = "difficulty", required = false) Image.Difficulty difficulty) {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(bulkStreamTimeoutMillis);
+        try {
+            bulkImageUploadService.submit(images, archive, difficulty, new NdjsonListener(emitter));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Failed to read bulk upload: " + e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Failed to read the uploaded batch");
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(emitter);
+    }
+
+    /**
+     * Processes the failed items of a bulk upload again, streaming progress like the upload.
+     */
+    @PostMapping(value = "/upload/bulk/{jobId}/retry", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> retryBulkUpload(@PathVariable String jobId) {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(bulkStreamTimeoutMillis);
+        try {
+            bulkImageUploadService.retry(jobId, new NdjsonListener(emitter))
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown bulk upload " + jobId));
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(emitter);
+    }
+
+    @GetMapping("/upload/bulk/{jobId}")
+    public ResponseEntity<BulkUploadJobDto> getBulkUpload(@PathVariable String jobId) {
+        return bulkImageUploadService.find(jobId)
+                .map(ResponseEntity::ok)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown bulk upload " + jobId));
+    }
+
+    /**
+     * Writes progress as NDJSON. The job keeps running if the client goes away, its state
+     * stays available from the status endpoint.
+     */
+    private class NdjsonListener implements BulkImageUploadService.Listener {
+
+        private final ResponseBodyEmitter emitter;
+        private volatile boolean open = true;
+
+        NdjsonListener(ResponseBodyEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void onItem(BulkUploadItemDto item) {
+            send(item);
+        }
+
+        @Override
+        public void onComplete(BulkUploadJobDto job) {
+            send(job);
+            if (open) {
+                emitter.complete();
+            }
+        }
+
+        private void send(Object line) {
+            if (!open) {
+                return;
+            }
+            try {
+                emitter.send(objectMapper.writeValueAsString(line) + "\n", MediaType.APPLICATION_NDJSON);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            } catch (IOException | IllegalStateException e) {
+                // Client disconnected or the stream timed out
+                open = false;
+            }
+        }
+    }
 }
@@ -4,10 +4,18 @@ import com.hexplatoon.syncrift_backend.dto.battle.BattleHistoryDto;
 import com.hexplatoon.syncrift_backend.entity.Battle;
 import com.hexplatoon.syncrift_backend.mapper.BattleMapper;
 import com.hexplatoon.syncrift_backend.repository.BattleRepository;
+import com.hexplatoon.syncrift_backend.service.battle.replay.ReplayJournal;
+import com.hexplatoon.syncrift_backend.service.battle.typing.TypingTextService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.nio.channels.Channels;
 import java.util.Optional;
 
 @RestController
@@ -16,11 +24,37 @@ import java.util.Optional;
 public class BattleController {
 
     private final BattleRepository battleRepository;
+    private final TypingTextService typingTextService;
+    private final ReplayJournal replayJournal;
 
     @GetMapping("/{id}")
     @ResponseStatus(HttpStatus.OK)
     public BattleHistoryDto getBattleHistory(@PathVariable Long id) {
         Optional<Battle> battle = battleRepository.findById(id);
-        return battle.map(BattleMapper::toBattleHistoryDto).orElse(null);
+        BattleHistoryDto dto = battle.map(BattleMapper::toBattleHistoryDto).orElse(null);
+        if (dto != null) {
+            typingTextService.restoreText(dto.getConfigJson());
+        }
+        return dto;
+    }
+
+    /**
+     * The recorded input events of a battle, in the binary format described on
+     * {@link ReplayJournal}. Tomcat sends the journal slice with sendfile when it can.
+     */
+    @GetMapping("/{id}/replay")
+    public void getReplay(@PathVariable Long id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ReplayJournal.Slice slice = replayJournal.find(id).orElseThrow(
+                () -> new ResponseStatusException(HttpStatus.NOT_FOUND, "No replay for battle : " + id));
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setContentLengthLong(slice.length());
+        if (Boolean.TRUE.equals(request.getAttribute("org.apache.tomcat.sendfile.support"))) {
+            request.setAttribute("org.apache.tomcat.sendfile.filename",
+                    replayJournal.segmentPath(slice).toAbsolutePath().toString());
+            request.setAttribute("org.apache.tomcat.sendfile.start", slice.offset());
+            request.setAttribute("org.apache.tomcat.sendfile.end", slice.offset() + slice.length());
+            return;
+        }
+        replayJournal.transferTo(slice, Channels.newChannel(response.getOutputStream()));
     }
 }
@@ -2,8 +2,12 @@
 package com.hexplatoon.syncrift_backend.controller;
 
 import com.hexplatoon.syncrift_backend.dto.battle.websocket.BattleEndWebsocketDto;
+import com.hexplatoon.syncrift_backend.dto.battle.websocket.CssEditWebsocketDto;
+import com.hexplatoon.syncrift_backend.dto.battle.websocket.TypingCaretWebsocketDto;
+import com.hexplatoon.syncrift_backend.dto.battle.websocket.TypingProgressWebsocketDto;
 import com.hexplatoon.syncrift_backend.entity.Battle;
 import com.hexplatoon.syncrift_backend.service.battle.BattleService;
+import com.hexplatoon.syncrift_backend.service.battle.BattleShardExecutor;
 import com.hexplatoon.syncrift_backend.service.battle.CssBattleHandlerService;
 import com.hexplatoon.syncrift_backend.service.battle.TypingBattleHandlerService;
 import lombok.RequiredArgsConstructor;
@@ -20,23 +24,75 @@ public class BattleWebSocketController {
     private final BattleService battleService;
     private final TypingBattleHandlerService typingBattleHandlerService;
     private final CssBattleHandlerService cssBattleHandlerService;
+    // Every message of a battle is handled in order on the battle's shard
+    private final BattleShardExecutor battleShardExecutor;
 
     @MessageMapping({"/battle/ready"})
     public void handleReadiness(@Payload Long battleId, Principal principal) {
+        if (battleId == null) return;
         String username = (String) principal.getName();
-        battleService.updateReadiness(username, battleId);
+        battleShardExecutor.execute(battleId, () -> battleService.updateReadiness(username, battleId));
+    }
+
+    // Bounds the work a single progress message can cause
+    private static final int MAX_WORDS_PER_UPDATE = 64;
+
+    @MessageMapping({"/battle/typing/progress"})
+    public void updateTypingProgress(@Payload TypingProgressWebsocketDto dto, Principal principal) {
+        if (dto.getBattleId() == null || dto.getStartIndex() == null || dto.getWords() == null
+                || dto.getWords().size() > MAX_WORDS_PER_UPDATE) {
+            return;
+        }
+        String username = principal.getName();
+        battleShardExecutor.execute(dto.getBattleId(), () -> {
+            Battle battle = battleService.getActiveBattleById(dto.getBattleId());
+            if (battle == null || battle.getCategory() != Battle.Category.TB) return;
+            typingBattleHandlerService.updateProgress(dto.getBattleId(), username, dto.getStartIndex(), dto.getWords());
+        });
+    }
+
+    @MessageMapping({"/battle/typing/caret"})
+    public void updateTypingCaret(@Payload TypingCaretWebsocketDto dto, Principal principal) {
+        if (dto.getBattleId() == null || dto.getPosition() == null) return;
+        String username = principal.getName();
+        battleShardExecutor.execute(dto.getBattleId(), () -> {
+            Battle battle = battleService.getActiveBattleById(dto.getBattleId());
+            if (battle == null || battle.getCategory() != Battle.Category.TB) return;
+            typingBattleHandlerService.updateCaret(dto.getBattleId(), username, dto.getPosition());
+        });
+    }
+
+    // Bounds the text a single edit can add to a replay
+    private static final int MAX_EDIT_CHARS = 16384;
+
+    @MessageMapping({"/battle/css/edit"})
+    public void recordCssEdit(@Payload CssEditWebsocketDto dto, Principal principal) {
+        if (dto.getBattleId() == null || dto.getOffset() == null || dto.getOffset() < 0
+                || dto.getDeleted() == null || dto.getDeleted() < 0
+                || (dto.getInserted() != null && dto.getInserted().length() > MAX_EDIT_CHARS)) {
+            return;
+        }
+        String username = principal.getName();
+        battleShardExecutor.execute(dto.getBattleId(), () -> {
+            Battle battle = battleService.getActiveBattleById(dto.getBattleId());
+            if (battle == null || battle.getCategory() != Battle.Category.CSS) return;
+            cssBattleHandlerService.recordEdit(dto.getBattleId(), username,
+                    dto.getOffset(), dto.getDeleted(), dto.getInserted());
+        });
     }
 
     @MessageMapping({"/battle/end"})
     public void calculateScore(@Payload BattleEndWebsocketDto dto, Principal principal) {
+        if (dto.getBattleId() == null) return;
         String username = (String) principal.getName();
-        Battle battleType = battleService.getActiveBattleById(dto.getBattleId());
-        if(battleType.getCategory() == Battle.Category.TB){
-            typingBattleHandlerService.saveUserText(dto.getBattleId(), username, dto.getText());
-        }else if(battleType.getCategory() == Battle.Category.CSS){
-//            System.out.println(dto.getText());
-//            System.out.println("From the controller " + username + ": " + dto.getText());
-            cssBattleHandlerService.saveUserText(dto.getBattleId(), username, dto.getText());
-        }
+        battleShardExecutor.execute(dto.getBattleId(), () -> {
+            Battle battleType = battleService.getActiveBattleById(dto.getBattleId());
+            if (battleType == null) return;
+            if(battleType.getCategory() == Battle.Category.TB){
+                typingBattleHandlerService.saveUserText(dto.getBattleId(), username, dto.getText());
+            }else if(battleType.getCategory() == Battle.Category.CSS){
+                cssBattleHandlerService.saveUserText(dto.getBattleId(), username, dto.getText());
+            }
+        });
     }
 }
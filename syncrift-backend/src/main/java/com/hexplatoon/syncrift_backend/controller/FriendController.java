@@ -1,13 +1,16 @@
 package com.hexplatoon.syncrift_backend.controller;
 
 import com.hexplatoon.syncrift_backend.dto.ApiResponse;
+import com.hexplatoon.syncrift_backend.dto.friend.FriendPageDto;
 import com.hexplatoon.syncrift_backend.dto.friend.FriendRequestDto;
 import com.hexplatoon.syncrift_backend.dto.friend.FriendStatusDto;
+import com.hexplatoon.syncrift_backend.dto.friend.FriendSuggestionDto;
 import com.hexplatoon.syncrift_backend.dto.user.ProfileDto;
 import com.hexplatoon.syncrift_backend.service.FriendService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
@@ -132,6 +135,25 @@ public class FriendController {
         }
     }
 
+    /**
+     * Get friendship status with many users at once. The body is a JSON array of usernames,
+     * the response one status byte per username in the same order:
+     * 0 NOT_FRIENDS, 1 FRIENDS, 2 REQUEST_SENT, 3 REQUEST_RECEIVED, 4 BLOCKED
+     */
+    @PostMapping(value = "/status/batch", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> getFriendStatuses(
+            @RequestBody List<String> usernames,
+            Authentication authentication) {
+        try {
+            String username = authentication.getName();
+            return ResponseEntity.ok(friendService.getFriendStatusCodes(username, usernames));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to get friendship statuses");
+        }
+    }
+
     /**
      * List all friends of the authenticated user
      */
@@ -160,6 +182,38 @@ public class FriendController {
         }
     }
 
+    /**
+     * List one page of the authenticated user's friends, in username order
+     */
+    @GetMapping("/page")
+    public ResponseEntity<FriendPageDto> getFriendsPage(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int limit,
+            Authentication authentication) {
+        try {
+            String username = authentication.getName();
+            return ResponseEntity.ok(friendService.listFriendsPage(username, after, limit));
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to retrieve friends list");
+        }
+    }
+
+    /**
+     * List one page of the pending friend requests for the authenticated user, in username order
+     */
+    @GetMapping("/pending/page")
+    public ResponseEntity<FriendPageDto> getPendingRequestsPage(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int limit,
+            Authentication authentication) {
+        try {
+            String username = authentication.getName();
+            return ResponseEntity.ok(friendService.listPendingRequestsPage(username, after, limit));
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to retrieve pending requests");
+        }
+    }
+
     /**
      * Get mutual friends between the authenticated user and another user
      */
@@ -177,5 +231,36 @@ public class FriendController {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to retrieve mutual friends");
         }
     }
-}
 
+    /**
+     * Count mutual friends between the authenticated user and another user
+     */
+    @GetMapping("/mutual/{otherUsername}/count")
+    public ResponseEntity<Integer> getMutualFriendCount(
+            @PathVariable String otherUsername,
+            Authentication authentication) {
+        try {
+            String username = authentication.getName();
+            return ResponseEntity.ok(friendService.getMutualFriendCount(username, otherUsername));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to count mutual friends");
+        }
+    }
+
+    /**
+     * Suggest friends of friends for the authenticated user, most mutual friends first
+     */
+    @GetMapping("/suggestions")
+    public ResponseEntity<List<FriendSuggestionDto>> getFriendSuggestions(
+            @RequestParam(defaultValue = "10") int limit,
+            Authentication authentication) {
+        try {
+            String username = authentication.getName();
+            return ResponseEntity.ok(friendService.getFriendSuggestions(username, limit));
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to retrieve friend suggestions");
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.hexplatoon.syncrift_backend.dto.battle;
+
+import com.hexplatoon.syncrift_backend.entity.Battle;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory authority for a live battle, from creation until it ends or is canceled. The
+ * phase and both readiness bits share one atomic word, so every transition is a single
+ * compare-and-set and exactly one caller wins it:
+ * <pre>
+ * WAITING -> READY_PARTIAL -> ONGOING -> SCORING -> ENDED
+ *    \____________\________________________\___-> CANCELED
+ * </pre>
+ * A battle only goes from SCORING to CANCELED when it can not be scored.
+ * The {@link Battle} entity is kept as loaded at creation, the database is written at
+ * transitions and never read per message.
+ */
+public class BattleState {
+
+    public enum Phase {
+        WAITING, READY_PARTIAL, ONGOING, SCORING, ENDED, CANCELED
+    }
+
+    public enum ReadyOutcome {
+        // This player is now ready, the other one is not yet
+        PARTIAL,
+        // Both players are ready and this call moved the battle to ONGOING, the caller starts it
+        STARTED,
+        // Already ready, or the battle is no longer waiting
+        REJECTED
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final int CHALLENGER_READY = 1;
+    private static final int OPPONENT_READY = 2;
+    private static final int READY_BITS = 2;
+
+    @Getter
+    private final Battle battle;
+    private final String challengerUsername;
+    private final String opponentUsername;
+    // phase.ordinal() << READY_BITS | readiness bits
+    private final AtomicInteger word;
+
+    @Getter
+    @Setter
+    private volatile BattleSession session;
+
+    public BattleState(Battle battle) {
+        this(battle, Phase.WAITING);
+    }
+
+    /**
+     * State of a battle taken back after a restart. Readiness is not stored: a WAITING battle
+     * starts over with nobody ready, an ONGOING one has both players ready.
+     */
+    public BattleState(Battle battle, Phase phase) {
+        this.battle = battle;
+        this.challengerUsername = battle.getChallenger().getUsername();
+        this.opponentUsername = battle.getOpponent().getUsername();
+        this.word = new AtomicInteger(pack(phase, phase == Phase.WAITING ? 0 : CHALLENGER_READY | OPPONENT_READY));
+    }
+
+    /**
+     * Marks a player ready.
+     * @param username Either player, anyone else is rejected.
+     */
+    public ReadyOutcome markReady(String username) {
+        int bit = username.equals(challengerUsername) ? CHALLENGER_READY
+                : username.equals(opponentUsername) ? OPPONENT_READY : 0;
+        if (bit == 0) return ReadyOutcome.REJECTED;
+        while (true) {
+            int current = word.get();
+            Phase phase = phaseOf(current);
+            int ready = current & (CHALLENGER_READY | OPPONENT_READY);
+            if ((phase != Phase.WAITING && phase != Phase.READY_PARTIAL) || (ready & bit) != 0) {
+                return ReadyOutcome.REJECTED;
+            }
+            ready |= bit;
+            boolean both = ready == (CHALLENGER_READY | OPPONENT_READY);
+            if (word.compareAndSet(current, pack(both ? Phase.ONGOING : Phase.READY_PARTIAL, ready))) {
+                return both ? ReadyOutcome.STARTED : ReadyOutcome.PARTIAL;
+            }
+        }
+    }
+
+    /**
+     * Moves from {@code from} to {@code to}, keeping the readiness bits.
+     * @return false if the battle was not in {@code from}, someone else made the transition.
+     */
+    public boolean transition(Phase from, Phase to) {
+        while (true) {
+            int current = word.get();
+            if (phaseOf(current) != from) return false;
+            if (word.compareAndSet(current, pack(to, current & ((1 << READY_BITS) - 1)))) return true;
+        }
+    }
+
+    /**
+     * Cancels a battle that has not started.
+     * @return false if it already started or was canceled.
+     */
+    public boolean cancel() {
+        return transition(Phase.WAITING, Phase.CANCELED) || transition(Phase.READY_PARTIAL, Phase.CANCELED);
+    }
+
+    public Phase getPhase() {
+        return phaseOf(word.get());
+    }
+
+    public boolean isBothReady() {
+        return (word.get() & (CHALLENGER_READY | OPPONENT_READY)) == (CHALLENGER_READY | OPPONENT_READY);
+    }
+
+    /**
+     * True while the battle is played or scored, when progress and results can be read.
+     */
+    public boolean isActive() {
+        Phase phase = getPhase();
+        return phase == Phase.ONGOING || phase == Phase.SCORING;
+    }
+
+    private static int pack(Phase phase, int ready) {
+        return phase.ordinal() << READY_BITS | ready;
+    }
+
+    private static Phase phaseOf(int word) {
+        return PHASES[word >>> READY_BITS];
+    }
+}
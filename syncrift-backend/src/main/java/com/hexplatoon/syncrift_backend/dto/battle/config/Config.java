@@ -2,4 +2,10 @@ package com.hexplatoon.syncrift_backend.dto.battle.config;
 
 public interface Config {
 
+    /**
+     * The form stored in {@code Battle.configJson}, without anything that can be rebuilt.
+     */
+    default Config persistentForm() {
+        return this;
+    }
 }
@@ -1,14 +1,18 @@
 package com.hexplatoon.syncrift_backend.dto.battle.config;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
+
 import java.util.List;
 
 @Data
-//@NoArgsConstructor
-//@AllArgsConstructor
+@NoArgsConstructor
+@AllArgsConstructor
 @Builder
 public class CssConfig implements Config {
+    private Long imageId;
     private String imageUrl;
     private Integer duration;
     private List<String> colorCode;
@@ -1,15 +1,37 @@
 package com.hexplatoon.syncrift_backend.dto.battle.config;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+/**
+ * The text of a typing battle is a pure function of (corpusVersion, seed, wordCount,
+ * difficulty), so only those are stored with the battle and the text is rebuilt on read.
+ * Battles stored before that only have {@code text}.
+ */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @AllArgsConstructor
 @NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class TypingConfig implements Config {
     private String text;
     private Integer duration;
+    private Integer corpusVersion;
+    private Long seed;
+    private Integer wordCount;
+    private String difficulty;
+
+    @JsonIgnore
+    public boolean isRegenerable() {
+        return corpusVersion != null && seed != null && wordCount != null && difficulty != null;
+    }
+
+    @Override
+    public Config persistentForm() {
+        return isRegenerable() ? toBuilder().text(null).build() : this;
+    }
 }
@@ -1,4 +1,102 @@
 package com.hexplatoon.syncrift_backend.dto.battle.progress;
 
+import com.hexplatoon.syncrift_backend.dto.battle.websocket.TypingProgressFrameDto;
+import com.hexplatoon.syncrift_backend.service.battle.typing.TypingAligner;
+import com.hexplatoon.syncrift_backend.service.battle.typing.TypingAlignment;
+
+import java.util.List;
+
+/**
+ * Running score of one player in a typing battle, updated from word deltas as the player
+ * types, so a player going back and retyping words only resends those words. Every delta
+ * aligns the typed text with the battle text again, so reading the score is O(1) and
+ * nothing is left to score at the deadline.
+ * <p>
+ * It also holds the live caret from keystroke updates, which is sent to the opponent at a
+ * fixed tick rate however fast the player types.
+ */
 public class TypingBattleProgress implements BattleProgress {
-}
\ No newline at end of file
+
+    // The battle text split into words, shared by both players
+    private final String[] expected;
+    private final String text;
+    // The committed words as typed
+    private final String[] typed;
+
+    private int committedWords;
+    private final StringBuilder typedText = new StringBuilder();
+    private final TypingAlignment alignment = new TypingAlignment();
+
+    private int caret;
+    // State of the last frame sent to the opponent
+    private int sentCaret;
+    private int sentWords;
+    private int frameSeq;
+
+    public TypingBattleProgress(String[] expected) {
+        this.expected = expected;
+        this.text = String.join(" ", expected);
+        this.typed = new String[expected.length];
+    }
+
+    /**
+     * Replaces the words from {@code startIndex} on with {@code words}. Words previously
+     * committed at or after {@code startIndex} are dropped first, the player erased them.
+     * Words past the end of the text are ignored.
+     */
+    public synchronized void replaceFrom(int startIndex, List<String> words) {
+        startIndex = Math.max(0, startIndex);
+        // A gap means words that never arrived, they count as untyped
+        for (int i = committedWords; i < Math.min(startIndex, expected.length); i++) {
+            typed[i] = "";
+        }
+        int index = Math.min(startIndex, expected.length);
+        for (String word : words) {
+            if (index >= expected.length) break;
+            typed[index++] = word == null ? "" : word;
+        }
+        committedWords = index;
+
+        // Character alignment, so a skipped or doubled word only costs its own characters
+        typedText.setLength(0);
+        for (int i = 0; i < committedWords; i++) {
+            if (i > 0) typedText.append(' ');
+            typedText.append(typed[i]);
+        }
+        TypingAligner.align(text, typedText, alignment);
+    }
+
+    /**
+     * Alignment of the typed text with the battle text as of the last delta. Reused by the
+     * next delta, read it once no more input is applied.
+     */
+    public synchronized TypingAlignment getAlignment() {
+        return alignment;
+    }
+
+    public synchronized void setCaret(int position) {
+        caret = Math.max(0, position);
+    }
+
+    /**
+     * The frame to send to the opponent for this tick, or null if nothing changed since the
+     * previous one.
+     * @param keyFrameInterval Every this many frames the absolute position is included.
+     */
+    public synchronized TypingProgressFrameDto nextFrame(Long battleId, int keyFrameInterval) {
+        if (caret == sentCaret && committedWords == sentWords) {
+            return null;
+        }
+        boolean keyFrame = frameSeq % keyFrameInterval == 0;
+        TypingProgressFrameDto frame = TypingProgressFrameDto.builder()
+                .battleId(battleId)
+                .seq(frameSeq++)
+                .delta(caret - sentCaret)
+                .words(committedWords)
+                .position(keyFrame ? caret : null)
+                .build();
+        sentCaret = caret;
+        sentWords = committedWords;
+        return frame;
+    }
+}
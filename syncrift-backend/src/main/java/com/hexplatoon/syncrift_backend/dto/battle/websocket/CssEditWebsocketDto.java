@@ -0,0 +1,21 @@
+package com.hexplatoon.syncrift_backend.dto.battle.websocket;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One edit of a player's CSS battle code: {@code deleted} characters at {@code offset}
+ * replaced by {@code inserted}. Only recorded for the replay, scoring uses the final text.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CssEditWebsocketDto {
+    private Long battleId;
+    private Integer offset;
+    private Integer deleted;
+    private String inserted;
+}
@@ -0,0 +1,18 @@
+package com.hexplatoon.syncrift_backend.dto.battle.websocket;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Sent on every keystroke of a typing battle: how many characters the player has typed.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class TypingCaretWebsocketDto {
+    private Long battleId;
+    private Integer position;
+}
@@ -0,0 +1,25 @@
+package com.hexplatoon.syncrift_backend.dto.battle.websocket;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The opponent's typing progress, at most one frame per tick. {@code delta} is the caret
+ * movement since the previous frame; key frames also carry the absolute {@code position}
+ * so a client that joined late or missed a frame can resync.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TypingProgressFrameDto {
+    private Long battleId;
+    private int seq;
+    private int delta;
+    private int words;
+    private Integer position;
+}
@@ -0,0 +1,22 @@
+package com.hexplatoon.syncrift_backend.dto.battle.websocket;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Words a player committed since the last update. {@code words} replace everything from
+ * {@code startIndex} on, so a player who erased back into earlier words resends from there.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class TypingProgressWebsocketDto {
+    private Long battleId;
+    private Integer startIndex;
+    private List<String> words;
+}
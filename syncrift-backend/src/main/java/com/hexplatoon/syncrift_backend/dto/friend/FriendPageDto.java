@@ -0,0 +1,23 @@
+package com.hexplatoon.syncrift_backend.dto.friend;
+
+import com.hexplatoon.syncrift_backend.dto.user.ProfileDto;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for one page of a friend list, in username order
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class FriendPageDto {
+
+    private List<ProfileDto> items;
+    private long total;         // size of the whole list
+    private String nextAfter;   // pass as ?after= for the next page, null on the last page
+}
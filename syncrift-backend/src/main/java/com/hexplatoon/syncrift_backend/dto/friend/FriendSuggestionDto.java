@@ -0,0 +1,20 @@
+package com.hexplatoon.syncrift_backend.dto.friend;
+
+import com.hexplatoon.syncrift_backend.dto.user.MiniProfileDto;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for a "people you may know" suggestion
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class FriendSuggestionDto {
+
+    private MiniProfileDto user;
+    private int mutualFriends;
+}
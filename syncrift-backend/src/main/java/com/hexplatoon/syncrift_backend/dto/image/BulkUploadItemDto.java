@@ -0,0 +1,31 @@
+package com.hexplatoon.syncrift_backend.dto.image;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Progress of one image of a bulk upload. Streamed as one NDJSON line per processed item.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkUploadItemDto {
+
+    public enum Status {
+        PENDING, PROCESSING, UPLOADED, DUPLICATE, FAILED
+    }
+
+    private String jobId;
+    private Integer index;      // position of the item in the batch
+    private String name;        // part or archive entry name
+    private Status status;
+    private Long imageId;
+    private String cloudinaryUrl;
+    private String message;
+    private Boolean retryable;  // a failed item that can be sent to the retry endpoint
+}
@@ -0,0 +1,29 @@
+package com.hexplatoon.syncrift_backend.dto.image;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Summary of a bulk upload. It is the last NDJSON line of every run, and the body of the
+ * job status endpoint, which also lists the items.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkUploadJobDto {
+    private String jobId;
+    private boolean done;
+    private int total;
+    private int uploaded;
+    private int duplicates;
+    private int failed;
+    private int pending;
+    private List<BulkUploadItemDto> items;
+}
@@ -11,7 +11,8 @@ import java.time.LocalDateTime;
         @Index(name = "idx_challenger", columnList = "challenger"),
         @Index(name = "idx_opponent", columnList = "opponent"),
         @Index(name = "idx_status", columnList = "status"),
-        @Index(name = "idx_category", columnList = "category")
+        @Index(name = "idx_category", columnList = "category"),
+        @Index(name = "idx_status_deadline", columnList = "status, deadline_at")
 })
 @Getter
 @Setter
@@ -59,6 +60,11 @@ public class Battle {
     @Column(name = "config_json", columnDefinition = "TEXT")
     private String configJson;
 
+    // When the readiness window (WAITING) or the battle timer (ONGOING) expires, so both
+    // can be rescheduled after a restart
+    @Column(name = "deadline_at")
+    private LocalDateTime deadlineAt;
+
     @Column(name = "winner_username")
     private String winnerUsername;
 
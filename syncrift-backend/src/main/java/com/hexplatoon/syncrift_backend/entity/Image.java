@@ -26,6 +26,15 @@ public class Image {
     @Column(name = "public_id", length = 255)
     private String publicId;
 
+    // SHA-256 of the uploaded file, used to skip re-uploading the same target
+    @Column(name = "content_hash", length = 64, unique = true)
+    private String contentHash;
+
+    // Null for targets uploaded before difficulties existed, treated as MEDIUM
+    @Enumerated(EnumType.STRING)
+    @Column(name = "difficulty", length = 16)
+    private Difficulty difficulty;
+
     @Column(name = "color_code")
     private List<String> colorCode;
 
@@ -37,5 +46,12 @@ public class Image {
         if(uploadedAt == null) {
             uploadedAt = OffsetDateTime.now();
         }
+        if (difficulty == null) {
+            difficulty = Difficulty.MEDIUM;
+        }
+    }
+
+    public enum Difficulty {
+        EASY, MEDIUM, HARD
     }
 }
@@ -0,0 +1,41 @@
+package com.hexplatoon.syncrift_backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Scoring-ready features of a CSS battle target, computed once at upload. Kept out of
+ * {@link Image} so loading an image row never pulls the blob.
+ */
+@Entity
+@Table(name = "image_features")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImageFeatures {
+    @Id
+    @Column(name = "image_id")
+    private Long imageId;
+
+    @Column(name = "format_version", nullable = false)
+    private short formatVersion;
+
+    @Column(name = "data", nullable = false, columnDefinition = "bytea")
+    private byte[] data;
+
+    @Column(name = "created_at", nullable = false)
+    private OffsetDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = OffsetDateTime.now();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.hexplatoon.syncrift_backend.event;
+
+import com.hexplatoon.syncrift_backend.entity.Friend;
+
+/**
+ * Published when the relation between two users changes. It replaces whatever was there
+ * before, in either direction.
+ *
+ * @param userId      id of the user who made the change, the sender of a request or the one blocking
+ * @param otherUserId id of the other user
+ * @param status      the relation now, {@code UNRELATED} once no row is left
+ */
+public record FriendshipChangedEvent(Long userId, Long otherUserId, Friend.FriendshipStatus status) {
+}
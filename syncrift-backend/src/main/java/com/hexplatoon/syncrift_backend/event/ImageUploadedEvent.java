@@ -0,0 +1,12 @@
+package com.hexplatoon.syncrift_backend.event;
+
+import com.hexplatoon.syncrift_backend.entity.Image;
+
+/**
+ * Published after a new CSS battle target has been stored.
+ *
+ * @param imageId    id of the stored image
+ * @param difficulty its difficulty
+ */
+public record ImageUploadedEvent(Long imageId, Image.Difficulty difficulty) {
+}
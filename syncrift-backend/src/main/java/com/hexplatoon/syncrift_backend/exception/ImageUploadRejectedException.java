@@ -0,0 +1,17 @@
+package com.hexplatoon.syncrift_backend.exception;
+
+/**
+ * Exception thrown when an upload can not be admitted because the image processing
+ * memory budget stayed exhausted for too long. The client may retry later.
+ */
+public class ImageUploadRejectedException extends RuntimeException {
+
+    /**
+     * Constructs a new ImageUploadRejectedException with the specified detail message.
+     *
+     * @param message the detail message
+     */
+    public ImageUploadRejectedException(String message) {
+        super(message);
+    }
+}
@@ -13,16 +13,14 @@ import com.hexplatoon.syncrift_backend.entity.Battle;
 // TODO : Move this mapper to global mapper
 public class BattleMapper {
 
+    // Thread-safe once configured, creating one per call was most of the cost of a history read
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
     public static BattleHistoryDto toBattleHistoryDto(Battle battle) {
         if (battle == null) return null;
-        ObjectMapper mapper = new ObjectMapper();
 
         try {
-            Config obj = null;
-            if (battle.getCategory() == Battle.Category.TB) obj = mapper.readValue(battle.getConfigJson(), TypingConfig.class);
-            else if (battle.getCategory() == Battle.Category.CSS) obj = mapper.readValue(battle.getConfigJson(), CssConfig.class);
-            else if (battle.getCategory() == Battle.Category.CF) obj = mapper.readValue(battle.getConfigJson(), CodeforcesConfig.class);
-
+            Config obj = readConfig(battle);
 
             return BattleHistoryDto.builder()
                     .id(battle.getId())
@@ -33,11 +31,22 @@ public class BattleMapper {
                     .createdAt(battle.getCreatedAt())
                     .startedAt(battle.getStartedAt())
                     .updatedAt(battle.getUpdatedAt())
-                    .resultJson(mapper.readValue(battle.getResultJson(), Result.class))
+                    .resultJson(MAPPER.readValue(battle.getResultJson(), Result.class))
                     .configJson(obj)
                     .build();
         } catch (JsonProcessingException e) {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * The stored config of a battle as its category's config class, null if there is none.
+     */
+    public static Config readConfig(Battle battle) throws JsonProcessingException {
+        if (battle.getConfigJson() == null) return null;
+        if (battle.getCategory() == Battle.Category.TB) return MAPPER.readValue(battle.getConfigJson(), TypingConfig.class);
+        if (battle.getCategory() == Battle.Category.CSS) return MAPPER.readValue(battle.getConfigJson(), CssConfig.class);
+        if (battle.getCategory() == Battle.Category.CF) return MAPPER.readValue(battle.getConfigJson(), CodeforcesConfig.class);
+        return null;
+    }
 }
@@ -2,8 +2,33 @@ package com.hexplatoon.syncrift_backend.repository;
 
 import com.hexplatoon.syncrift_backend.entity.Battle;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface BattleRepository extends JpaRepository<Battle, Long> {
+
+    /**
+     * Battles in the given statuses whose deadline has not passed, with both players, in one
+     * query on the (status, deadline_at) index.
+     */
+    @Query("SELECT b FROM Battle b JOIN FETCH b.challenger JOIN FETCH b.opponent " +
+            "WHERE b.status IN :statuses AND b.deadlineAt > :now")
+    List<Battle> findLiveWithPlayers(@Param("statuses") Collection<Battle.Status> statuses,
+                                     @Param("now") LocalDateTime now);
+
+    /**
+     * Cancels the battles in the given statuses whose deadline passed, or that never had one.
+     * @return the number of battles canceled
+     */
+    @Modifying
+    @Query("UPDATE Battle b SET b.status = com.hexplatoon.syncrift_backend.entity.Battle.Status.CANCELED, " +
+            "b.updatedAt = :now WHERE b.status IN :statuses AND (b.deadlineAt IS NULL OR b.deadlineAt <= :now)")
+    int cancelOverdue(@Param("statuses") Collection<Battle.Status> statuses, @Param("now") LocalDateTime now);
 }
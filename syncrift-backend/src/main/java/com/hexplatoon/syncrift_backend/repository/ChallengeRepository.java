@@ -10,6 +10,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -32,6 +33,12 @@ public interface ChallengeRepository extends JpaRepository<Challenge, Long> {
     @Query("SELECT c FROM Challenge c WHERE c.status = com.hexplatoon.syncrift_backend.entity.Challenge.ChallengeStatus.PENDING AND c.expiresAt < :now")
     List<Challenge> findExpiredChallenges(@Param("now") LocalDateTime now);
 
+    /**
+     * Find all PENDING challenges with both users loaded
+     */
+    @Query("SELECT c FROM Challenge c JOIN FETCH c.sender JOIN FETCH c.recipient WHERE c.status = com.hexplatoon.syncrift_backend.entity.Challenge.ChallengeStatus.PENDING")
+    List<Challenge> findPendingWithUsers();
+
     /**
      * Find pending challenge between two users
      */
@@ -52,6 +59,13 @@ public interface ChallengeRepository extends JpaRepository<Challenge, Long> {
     @Query("UPDATE Challenge c SET c.status = com.hexplatoon.syncrift_backend.entity.Challenge.ChallengeStatus.EXPIRED WHERE c.status = com.hexplatoon.syncrift_backend.entity.Challenge.ChallengeStatus.PENDING AND c.expiresAt < :now")
     int markExpiredChallenges(@Param("now") LocalDateTime now);
 
+    /**
+     * Update status of the given challenge requests to EXPIRED, those still PENDING
+     */
+    @Modifying
+    @Query("UPDATE Challenge c SET c.status = com.hexplatoon.syncrift_backend.entity.Challenge.ChallengeStatus.EXPIRED WHERE c.id IN :ids AND c.status = com.hexplatoon.syncrift_backend.entity.Challenge.ChallengeStatus.PENDING")
+    int markExpired(@Param("ids") Collection<Long> ids);
+
     /**
      * Find challenge by sender, recipient and status
      */
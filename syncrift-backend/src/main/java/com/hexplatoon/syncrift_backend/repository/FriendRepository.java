@@ -1,17 +1,24 @@
 package com.hexplatoon.syncrift_backend.repository;
 
 
+import com.hexplatoon.syncrift_backend.dto.user.MiniProfileDto;
+import com.hexplatoon.syncrift_backend.dto.user.ProfileDto;
 import com.hexplatoon.syncrift_backend.entity.Friend;
 import com.hexplatoon.syncrift_backend.entity.Friend.FriendshipStatus;
 import com.hexplatoon.syncrift_backend.entity.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface FriendRepository extends JpaRepository<Friend, Long> {
@@ -78,5 +85,48 @@ public interface FriendRepository extends JpaRepository<Friend, Long> {
             "f2.userId = :user2 AND f2.status = com.hexplatoon.syncrift_backend.entity.Friend.FriendshipStatus.ACCEPTED AND " +
             "f1.friendId = f2.friendId")
     List<User> findMutualFriends(@Param("user1") User user1, @Param("user2") User user2);
-}
 
+    /**
+     * Profiles of a user's friends in username order, after the given username, in one query
+     */
+    @Query("SELECT new com.hexplatoon.syncrift_backend.dto.user.ProfileDto(u.id, u.username, u.firstName, u.lastName, u.bio, " +
+            "u.profilePicture, u.level, u.experience, u.typingRating, u.cssDesignRating, u.codeforcesRating, u.status) " +
+            "FROM Friend f JOIN f.friendId u WHERE f.userId.id = :userId AND " +
+            "f.status = com.hexplatoon.syncrift_backend.entity.Friend.FriendshipStatus.ACCEPTED AND u.username > :after " +
+            "ORDER BY u.username")
+    List<ProfileDto> findFriendProfiles(@Param("userId") Long userId, @Param("after") String after, Limit limit);
+
+    /**
+     * Profiles of the users with a pending request to a user in username order, after the given username, in one query
+     */
+    @Query("SELECT new com.hexplatoon.syncrift_backend.dto.user.ProfileDto(u.id, u.username, u.firstName, u.lastName, u.bio, " +
+            "u.profilePicture, u.level, u.experience, u.typingRating, u.cssDesignRating, u.codeforcesRating, u.status) " +
+            "FROM Friend f JOIN f.userId u WHERE f.friendId.id = :userId AND " +
+            "f.status = com.hexplatoon.syncrift_backend.entity.Friend.FriendshipStatus.PENDING AND u.username > :after " +
+            "ORDER BY u.username")
+    List<ProfileDto> findRequesterProfiles(@Param("userId") Long userId, @Param("after") String after, Limit limit);
+
+    /**
+     * Mini profiles of all of a user's friends in one query
+     */
+    @Query("SELECT new com.hexplatoon.syncrift_backend.dto.user.MiniProfileDto(u.id, u.username, u.firstName, u.lastName, u.profilePicture) " +
+            "FROM Friend f JOIN f.friendId u WHERE f.userId.id = :userId AND " +
+            "f.status = com.hexplatoon.syncrift_backend.entity.Friend.FriendshipStatus.ACCEPTED")
+    List<MiniProfileDto> findFriendMiniProfiles(@Param("userId") Long userId);
+
+    /**
+     * Every friendship row as ids, streamed without loading the entities. Must be consumed
+     * inside a transaction and closed.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT f.userId.id AS userId, f.friendId.id AS friendId, f.status AS status FROM Friend f")
+    Stream<FriendEdge> streamAllEdges();
+
+    interface FriendEdge {
+        Long getUserId();
+
+        Long getFriendId();
+
+        FriendshipStatus getStatus();
+    }
+}
@@ -0,0 +1,9 @@
+package com.hexplatoon.syncrift_backend.repository;
+
+import com.hexplatoon.syncrift_backend.entity.ImageFeatures;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ImageFeaturesRepository extends JpaRepository<ImageFeatures, Long> {
+}
@@ -4,8 +4,25 @@ import com.hexplatoon.syncrift_backend.entity.Image;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 
+import java.util.List;
+import java.util.Optional;
+
 public interface ImageRepository extends JpaRepository<Image, Long> {
 
     @Query(value = "SELECT * FROM images ORDER BY RANDOM() LIMIT 1", nativeQuery = true) // Use RANDOM() if PostgreSQL
     Image findRandomImage();
+
+    Optional<Image> findByContentHash(String contentHash);
+
+    /**
+     * Id and difficulty of every image, without loading the rows.
+     */
+    @Query("SELECT i.id AS id, i.difficulty AS difficulty FROM Image i")
+    List<TargetRef> findAllTargetRefs();
+
+    interface TargetRef {
+        Long getId();
+
+        Image.Difficulty getDifficulty();
+    }
 }
@@ -2,10 +2,13 @@ package com.hexplatoon.syncrift_backend.repository;
 
 import com.hexplatoon.syncrift_backend.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -52,5 +55,55 @@ public interface UserRepository extends JpaRepository<User, Long> {
      */
     @Query("SELECT CASE WHEN COUNT(u) > 0 THEN true ELSE false END FROM User u WHERE u.username = :username OR u.email = :email")
     boolean existsByUsernameOrEmail(@Param("username") String username, @Param("email") String email);
-}
 
+    /**
+     * Set the status of several users without loading them
+     *
+     * @param ids the users to update
+     * @param status the new status
+     * @return the number of users updated
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.status = :status WHERE u.id IN :ids")
+    int updateStatus(@Param("ids") Collection<Long> ids, @Param("status") User.UserStatus status);
+
+    /**
+     * Set every user in one status to another, except the given users
+     *
+     * @param from the status to replace
+     * @param to the new status
+     * @param keepIds users to leave as they are, must not be empty
+     * @return the number of users updated
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.status = :to WHERE u.status = :from AND u.id NOT IN :keepIds")
+    int replaceStatusExcept(@Param("from") User.UserStatus from, @Param("to") User.UserStatus to,
+                            @Param("keepIds") Collection<Long> keepIds);
+
+    /**
+     * Find the id of a user without loading it
+     *
+     * @param username the username to search for
+     * @return an Optional containing the id if found
+     */
+    @Query("SELECT u.id FROM User u WHERE u.username = :username")
+    Optional<Long> findIdByUsername(@Param("username") String username);
+
+    /**
+     * Id and username of every user, without loading the rows
+     */
+    @Query("SELECT u.id AS id, u.username AS username FROM User u")
+    List<UserRef> findAllUserRefs();
+
+    /**
+     * Id and username of the given users, without loading the rows
+     */
+    @Query("SELECT u.id AS id, u.username AS username FROM User u WHERE u.username IN :usernames")
+    List<UserRef> findUserRefsByUsernameIn(@Param("usernames") Collection<String> usernames);
+
+    interface UserRef {
+        Long getId();
+
+        String getUsername();
+    }
+}
\ No newline at end of file
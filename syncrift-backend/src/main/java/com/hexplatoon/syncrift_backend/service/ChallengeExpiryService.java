@@ -0,0 +1,197 @@
+package com.hexplatoon.syncrift_backend.service;
+
+import com.hexplatoon.syncrift_backend.dto.challenge.ChallengeDto;
+import com.hexplatoon.syncrift_backend.entity.Challenge;
+import com.hexplatoon.syncrift_backend.entity.Challenge.ChallengeStatus;
+import com.hexplatoon.syncrift_backend.repository.ChallengeRepository;
+import com.hexplatoon.syncrift_backend.service.timer.HashedWheelTimer;
+import com.hexplatoon.syncrift_backend.service.timer.WheelTimeout;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Expires pending challenges at their {@code expiresAt} on the battle timing wheel instead
+ * of polling the table. The pending timeouts are the authority on whether a challenge can
+ * still be answered: accepting or declining claims the timeout first, so a challenge is
+ * either answered or expired, never both.
+ * <p>
+ * Challenges expiring together are marked in one bulk update, then sender and recipient
+ * are told on {@code /topic/challenge}. Pending challenges are loaded back at startup,
+ * which assumes a single backend node.
+ */
+@Slf4j
+@Service
+public class ChallengeExpiryService implements MeterBinder {
+
+    private final ChallengeRepository challengeRepository;
+    private final SimpMessagingTemplate simpMessagingTemplate;
+    private final HashedWheelTimer timer;
+    private final Executor battleTimerExecutor;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<Long, Pending> pending = new ConcurrentHashMap<>();
+    private final Queue<Pending> expired = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private volatile long retryDelayMillis = RETRY_MIN_MILLIS;
+
+    private static final long RETRY_MIN_MILLIS = 1_000;
+    private static final long RETRY_MAX_MILLIS = 60_000;
+
+    private static final class Pending {
+        final ChallengeDto challenge;
+        volatile WheelTimeout timeout;
+
+        Pending(ChallengeDto challenge) {
+            this.challenge = challenge;
+        }
+    }
+
+    public ChallengeExpiryService(ChallengeRepository challengeRepository,
+                                  SimpMessagingTemplate simpMessagingTemplate,
+                                  @Qualifier("battleWheelTimer") HashedWheelTimer timer,
+                                  @Qualifier("battleTimerExecutor") Executor battleTimerExecutor,
+                                  PlatformTransactionManager transactionManager) {
+        this.challengeRepository = challengeRepository;
+        this.simpMessagingTemplate = simpMessagingTemplate;
+        this.timer = timer;
+        this.battleTimerExecutor = battleTimerExecutor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Marks the challenges that expired while the backend was down, then schedules the
+     * pending ones.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadPending() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Challenge> challenges = transactionTemplate.execute(tx -> {
+            int overdue = challengeRepository.markExpiredChallenges(now);
+            if (overdue > 0) {
+                log.info("Expired {} challenges that were due while the backend was down", overdue);
+            }
+            return challengeRepository.findPendingWithUsers();
+        });
+        for (Challenge challenge : challenges) {
+            schedule(ChallengeDto.builder()
+                    .challengeId(challenge.getId())
+                    .senderUsername(challenge.getSender().getUsername())
+                    .recipientUsername(challenge.getRecipient().getUsername())
+                    .status(challenge.getStatus())
+                    .eventType(challenge.getEventType())
+                    .createdAt(challenge.getCreatedAt())
+                    .expiresAt(challenge.getExpiresAt())
+                    .build());
+        }
+    }
+
+    /**
+     * Expires a pending challenge at its {@code expiresAt}.
+     */
+    public void schedule(ChallengeDto challenge) {
+        Long challengeId = challenge.getChallengeId();
+        long delayMillis = Duration.between(LocalDateTime.now(), challenge.getExpiresAt()).toMillis();
+        Pending entry = new Pending(challenge);
+        // Published before scheduling so an overdue challenge cannot expire unseen
+        pending.put(challengeId, entry);
+        entry.timeout = timer.schedule(() -> {
+            // Removed first, an answer claiming the challenge meanwhile wins
+            if (!pending.remove(challengeId, entry)) return;
+            expired.add(entry);
+            if (flushQueued.compareAndSet(false, true)) {
+                battleTimerExecutor.execute(this::flush);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Takes a challenge out of expiry because it is being answered.
+     * @return false if it already expired.
+     */
+    public boolean claim(Long challengeId) {
+        Pending entry = pending.remove(challengeId);
+        if (entry == null) return false;
+        WheelTimeout timeout = entry.timeout;
+        if (timeout != null) timeout.cancel();
+        return true;
+    }
+
+    /**
+     * Commits everything that expired since the last flush in one update and pushes it to
+     * both players. Expiries of the same wheel tick share a flush. A batch that fails to
+     * commit goes back on the queue and is retried with a growing delay.
+     */
+    private void flush() {
+        // Cleared before draining, an expiry added after the drain queues the next flush
+        flushQueued.set(false);
+        List<Pending> batch = new ArrayList<>();
+        for (Pending entry; (entry = expired.poll()) != null; ) {
+            batch.add(entry);
+        }
+        if (batch.isEmpty()) return;
+
+        List<Long> ids = batch.stream().map(entry -> entry.challenge.getChallengeId()).toList();
+        try {
+            transactionTemplate.executeWithoutResult(tx -> challengeRepository.markExpired(ids));
+        } catch (RuntimeException e) {
+            log.error("Failed to expire challenges {}, retrying in {} ms", ids, retryDelayMillis, e);
+            expired.addAll(batch);
+            retryFlush();
+            return;
+        }
+        retryDelayMillis = RETRY_MIN_MILLIS;
+
+        for (Pending entry : batch) {
+            ChallengeDto challenge = entry.challenge;
+            challenge.setStatus(ChallengeStatus.EXPIRED);
+            challenge.setTimeRemainingSeconds(null);
+            simpMessagingTemplate.convertAndSendToUser(challenge.getSenderUsername(), "/topic/challenge", challenge);
+            simpMessagingTemplate.convertAndSendToUser(challenge.getRecipientUsername(), "/topic/challenge", challenge);
+        }
+    }
+
+    /**
+     * Queues a flush after the retry delay and doubles the delay. Expiries arriving until
+     * then join the retried batch instead of flushing on their own.
+     */
+    private void retryFlush() {
+        // A flush queued meanwhile picks the batch up
+        if (!flushQueued.compareAndSet(false, true)) return;
+        long delayMillis = retryDelayMillis;
+        retryDelayMillis = Math.min(delayMillis * 2, RETRY_MAX_MILLIS);
+        try {
+            timer.schedule(() -> battleTimerExecutor.execute(this::flush), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (IllegalStateException e) {
+            // Shutting down, still PENDING in the table so the next startup expires them
+            log.warn("Timer stopped, {} expired challenges left pending", expired.size());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("syncrift.challenge.pending", pending, Map::size)
+                .description("Pending challenges waiting to be answered or expire")
+                .register(registry);
+    }
+}
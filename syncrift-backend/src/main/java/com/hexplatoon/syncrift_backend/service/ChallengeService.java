@@ -13,9 +13,10 @@ import jakarta.validation.constraints.NotBlank;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -38,6 +39,7 @@ public class ChallengeService {
     private final FriendService friendService;
     private final BattleService battleService;
     private final SimpMessagingTemplate simpMessagingTemplate;
+    private final ChallengeExpiryService challengeExpiryService;
 
     /**
      * Create a new challenge request from one user to another
@@ -91,8 +93,17 @@ public class ChallengeService {
 //        );
 //
         ChallengeDto dto = convertToDto(savedChallenge);
-        simpMessagingTemplate.convertAndSendToUser(recipientUsername,
-                "/topic/challenge", dto);
+        ChallengeDto pending = convertToDto(savedChallenge);
+        // Only a committed challenge expires or can be answered, an earlier expiry would
+        // update a row that is not visible yet
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                challengeExpiryService.schedule(pending);
+                simpMessagingTemplate.convertAndSendToUser(recipientUsername,
+                        "/topic/challenge", pending);
+            }
+        });
 
         return dto;
     }
@@ -114,6 +125,7 @@ public class ChallengeService {
         User sender = challenge.getSender();
         // Validate challenge status and recipient
         validateChallengeStatus(challenge, recipient, ChallengeStatus.PENDING);
+        claimBeforeExpiry(challenge);
 
         // Update challenge status
         challenge.setStatus(ChallengeStatus.ACCEPTED);
@@ -140,6 +152,7 @@ public class ChallengeService {
         
         // Validate challenge status and recipient
         validateChallengeStatus(challenge, recipient, ChallengeStatus.PENDING);
+        claimBeforeExpiry(challenge);
         
         // Update challenge status
         challenge.setStatus(ChallengeStatus.DECLINED);
@@ -229,19 +242,22 @@ public class ChallengeService {
     }
 
     /**
-     * Scheduled task to handle expired challenges
-     * Runs every 10 seconds
+     * Take the challenge out of expiry before answering it, it stays pending again if the
+     * answer is rolled back
      */
-    @Scheduled(fixedRate = 10000)
-    @Transactional
-    public void handleExpiredChallenges() {
-        LocalDateTime now = LocalDateTime.now();
-        List<Challenge> expiredChallenges = challengeRepository.findExpiredChallenges(now);
-        
-        for (Challenge challenge : expiredChallenges) {
-            challenge.setStatus(ChallengeStatus.EXPIRED);
-            challengeRepository.save(challenge);
+    private void claimBeforeExpiry(Challenge challenge) {
+        if (!challengeExpiryService.claim(challenge.getId())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Challenge has expired");
         }
+        ChallengeDto dto = convertToDto(challenge);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    challengeExpiryService.schedule(dto);
+                }
+            }
+        });
     }
 
     /**
@@ -1,24 +1,37 @@
 package com.hexplatoon.syncrift_backend.service;
 
+import com.hexplatoon.syncrift_backend.dto.friend.FriendPageDto;
+import com.hexplatoon.syncrift_backend.dto.friend.FriendSuggestionDto;
+import com.hexplatoon.syncrift_backend.dto.user.MiniProfileDto;
 import com.hexplatoon.syncrift_backend.dto.user.ProfileDto;
 import com.hexplatoon.syncrift_backend.entity.Friend;
 import com.hexplatoon.syncrift_backend.entity.Friend.FriendshipStatus;
 import com.hexplatoon.syncrift_backend.entity.User;
+import com.hexplatoon.syncrift_backend.event.FriendshipChangedEvent;
 import com.hexplatoon.syncrift_backend.mapper.ProfileMapper;
 import com.hexplatoon.syncrift_backend.repository.FriendRepository;
 import com.hexplatoon.syncrift_backend.repository.UserRepository;
+import com.hexplatoon.syncrift_backend.service.friend.FriendGraph;
+import com.hexplatoon.syncrift_backend.service.friend.MutualFriendIndex;
 import jakarta.validation.constraints.NotBlank;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -27,9 +40,15 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class FriendService {
 
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_STATUS_BATCH = 500;
+
     private final FriendRepository friendRepository;
     private final UserRepository userRepository;
     private final NotificationService notificationService;
+    private final FriendGraph friendGraph;
+    private final MutualFriendIndex mutualFriendIndex;
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * Sends a friend request from one user to another.
@@ -75,6 +94,7 @@ public class FriendService {
                 .build();
 
         friendRepository.save(friendRequest);
+        publishChange(currentUser, targetUser, FriendshipStatus.PENDING);
         // Send notification to target user
         notificationService.createNotification(
                 targetUsername,
@@ -118,6 +138,7 @@ public class FriendService {
                     .build();
             friendRepository.save(reciprocalFriendship);
         }
+        publishChange(sender, currentUser, FriendshipStatus.ACCEPTED);
 
         // Send notification to the sender
         notificationService.createNotification(
@@ -158,6 +179,7 @@ public class FriendService {
         );
 
         friendRepository.delete(pendingRequest);
+        publishChange(sender, currentUser, FriendshipStatus.UNRELATED);
         return "Friend request declined";
     }
 
@@ -184,6 +206,7 @@ public class FriendService {
                 .build();
 
         friendRepository.save(blockRecord);
+        publishChange(currentUser, targetUser, FriendshipStatus.BLOCKED);
         return "User blocked successfully";
     }
 
@@ -207,6 +230,7 @@ public class FriendService {
 
         // Delete friend records in both directions
         friendRepository.deleteFriendshipBetweenUsers(currentUser, friendUser);
+        publishChange(currentUser, friendUser, FriendshipStatus.UNRELATED);
 
         return "Friend removed successfully";
     }
@@ -218,50 +242,46 @@ public class FriendService {
      * @param otherUsername   The username of the other user
      * @return The status of the friendship
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public String getFriendStatusAsText(@NotBlank String currentUsername, @NotBlank String otherUsername) {
-        User currentUser = findUserByUsername(currentUsername);
-        User otherUser = findUserByUsername(otherUsername);
-
-        List<Friend> friendships = friendRepository.findFriendRequestBetweenUsers(currentUser, otherUser);
-        Optional<Friend> friendship = friendships.isEmpty() ? Optional.empty() : Optional.of(friendships.get(0));
-
-        if (friendship.isEmpty()) {
-            return "NOT_FRIENDS";
-        }
-
-        Friend friend = friendship.get();
-        FriendshipStatus status = friend.getStatus();
-
-        if (status == FriendshipStatus.ACCEPTED) {
-            return "FRIENDS";
-        } else if (status == FriendshipStatus.PENDING) {
-            if (currentUser.equals(friend.getUserId())) {
-                return "REQUEST_SENT";
-            } else {
-                return "REQUEST_RECEIVED";
-            }
-        } else if (status == FriendshipStatus.BLOCKED) {
-            if (currentUser.equals(friend.getUserId())) {
-                return "BLOCKED";
-            } else {
-                return "NOT_FRIENDS"; // Don't expose that the user is blocked
-            }
-        }
-
-        return "NOT_FRIENDS";
+        return switch (relation(currentUsername, otherUsername)) {
+            case FRIENDS -> "FRIENDS";
+            case REQUEST_SENT -> "REQUEST_SENT";
+            case REQUEST_RECEIVED -> "REQUEST_RECEIVED";
+            case BLOCKED -> "BLOCKED";
+            // Don't expose that the user is blocked
+            case BLOCKED_BY, NONE -> "NOT_FRIENDS";
+        };
     }
 
+    @Transactional(propagation = Propagation.SUPPORTS)
     public FriendshipStatus getFriendStatus(@NotBlank String currentUsername, @NotBlank String otherUsername) {
-        User currentUser = findUserByUsername(currentUsername);
-        User otherUser = findUserByUsername(otherUsername);
-        List<Friend> friendships = friendRepository.findFriendRequestBetweenUsers(currentUser, otherUser);
-        Optional<Friend> friendship = friendships.isEmpty() ? Optional.empty() : Optional.of(friendships.get(0));
+        return relation(currentUsername, otherUsername).toStatus();
+    }
 
-        if (friendship.isEmpty()) {
-            return FriendshipStatus.UNRELATED;
+    /**
+     * Gets the friendship status between a user and several others, one byte per user in
+     * request order, coded as {@link FriendGraph.Relation#code()}. Unknown users are NOT_FRIENDS.
+     *
+     * @param currentUsername The username of the current user
+     * @param otherUsernames  The usernames of the other users, at most {@value #MAX_STATUS_BATCH}
+     * @return The status codes
+     * @throws IllegalArgumentException if too many usernames are given
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public byte[] getFriendStatusCodes(@NotBlank String currentUsername, List<String> otherUsernames) {
+        if (otherUsernames.size() > MAX_STATUS_BATCH) {
+            throw new IllegalArgumentException("At most " + MAX_STATUS_BATCH + " usernames per request");
         }
-
-        return friendship.get().getStatus();
+        long currentUserId = findUserIdByUsername(currentUsername);
+        long[] otherIds = friendGraph.userIds(otherUsernames);
+        byte[] codes = new byte[otherIds.length];
+        for (int i = 0; i < otherIds.length; i++) {
+            if (otherIds[i] != 0 && otherIds[i] != currentUserId) {
+                codes[i] = friendGraph.relation(currentUserId, otherIds[i]).code();
+            }
+        }
+        return codes;
     }
 
     /**
@@ -270,13 +290,36 @@ public class FriendService {
      * @param username The username of the user
      * @return A list of ProfileDto objects representing the user's friends
      */
+    @Transactional(readOnly = true)
     public List<ProfileDto> listFriends(@NotBlank String username) {
-        User user = findUserByUsername(username);
-        List<User> friends = friendRepository.findByUserIdAndStatus(user, FriendshipStatus.ACCEPTED).stream()
-                .map(Friend::getFriendId)
-                .collect(Collectors.toList());
+        return friendRepository.findFriendProfiles(findUserIdByUsername(username), "", Limit.unlimited());
+    }
 
-        return convertUsersToProfileDtos(friends);
+    /**
+     * Lists one page of a user's friends.
+     *
+     * @param username The username of the user
+     * @param after    The last username of the previous page, null for the first page
+     * @param limit    The maximum number of friends on the page
+     * @return The page and the total number of friends
+     */
+    @Transactional(readOnly = true)
+    public FriendPageDto listFriendsPage(@NotBlank String username, String after, int limit) {
+        long userId = findUserIdByUsername(username);
+        int size = pageSize(limit);
+        List<ProfileDto> friends = friendRepository.findFriendProfiles(userId, after == null ? "" : after, Limit.of(size));
+        return toPage(friends, friendGraph.friendCount(userId), size);
+    }
+
+    /**
+     * Lists mini profiles of all friends of a user.
+     *
+     * @param username The username of the user
+     * @return A list of MiniProfileDto objects representing the user's friends
+     */
+    @Transactional(readOnly = true)
+    public List<MiniProfileDto> listFriendMiniProfiles(@NotBlank String username) {
+        return friendRepository.findFriendMiniProfiles(findUserIdByUsername(username));
     }
 
     /**
@@ -285,13 +328,25 @@ public class FriendService {
      * @param username The username of the user
      * @return A list of ProfileDto objects representing users who sent friend requests
      */
+    @Transactional(readOnly = true)
     public List<ProfileDto> listPendingRequests(@NotBlank String username) {
-        User user = findUserByUsername(username);
-        List<User> requestSenders = friendRepository.findPendingRequestsForUser(user).stream()
-                .map(Friend::getUserId)
-                .collect(Collectors.toList());
+        return friendRepository.findRequesterProfiles(findUserIdByUsername(username), "", Limit.unlimited());
+    }
 
-        return convertUsersToProfileDtos(requestSenders);
+    /**
+     * Lists one page of the pending friend requests for a user.
+     *
+     * @param username The username of the user
+     * @param after    The last username of the previous page, null for the first page
+     * @param limit    The maximum number of requests on the page
+     * @return The page and the total number of pending requests
+     */
+    @Transactional(readOnly = true)
+    public FriendPageDto listPendingRequestsPage(@NotBlank String username, String after, int limit) {
+        long userId = findUserIdByUsername(username);
+        int size = pageSize(limit);
+        List<ProfileDto> senders = friendRepository.findRequesterProfiles(userId, after == null ? "" : after, Limit.of(size));
+        return toPage(senders, friendGraph.receivedCount(userId), size);
     }
 
     /**
@@ -301,23 +356,54 @@ public class FriendService {
      * @param username2 The username of the second user
      * @return A list of ProfileDto objects representing mutual friends
      */
+    @Transactional(readOnly = true)
     public List<ProfileDto> getMutualFriends(@NotBlank String username1, @NotBlank String username2) {
-        User user1 = findUserByUsername(username1);
-        User user2 = findUserByUsername(username2);
-
-        List<User> friends1 = friendRepository.findByUserIdAndStatus(user1, FriendshipStatus.ACCEPTED).stream()
-                .map(Friend::getFriendId)
-                .toList();
-
-        List<User> friends2 = friendRepository.findByUserIdAndStatus(user2, FriendshipStatus.ACCEPTED).stream()
-                .map(Friend::getFriendId)
-                .collect(Collectors.toList());
+        long[] mutualIds = mutualFriendIndex.mutualFriendIds(findUserIdByUsername(username1), findUserIdByUsername(username2));
+        if (mutualIds.length == 0) {
+            return List.of();
+        }
+        List<User> mutualFriends = new ArrayList<>(userRepository.findAllById(Arrays.stream(mutualIds).boxed().toList()));
+        mutualFriends.sort(Comparator.comparing(User::getUsername));
+        return convertUsersToProfileDtos(mutualFriends);
+    }
 
-        // Find the intersection of the two friend lists
-        List<User> mutualFriends = new ArrayList<>(friends1);
-        mutualFriends.retainAll(friends2);
+    /**
+     * Counts the mutual friends of two users.
+     *
+     * @param username1 The username of the first user
+     * @param username2 The username of the second user
+     * @return The number of friends they have in common
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public int getMutualFriendCount(@NotBlank String username1, @NotBlank String username2) {
+        return mutualFriendIndex.mutualFriendCount(findUserIdByUsername(username1), findUserIdByUsername(username2));
+    }
 
-        return convertUsersToProfileDtos(mutualFriends);
+    /**
+     * Suggests friends of friends, most mutual friends first.
+     *
+     * @param username The username of the user
+     * @param limit    The maximum number of suggestions
+     * @return A list of FriendSuggestionDto objects, best first
+     */
+    @Transactional(readOnly = true)
+    public List<FriendSuggestionDto> getFriendSuggestions(@NotBlank String username, int limit) {
+        List<MutualFriendIndex.Suggestion> suggestions =
+                mutualFriendIndex.suggestions(findUserIdByUsername(username), limit);
+        if (suggestions.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, User> users = userRepository.findAllById(
+                        suggestions.stream().map(MutualFriendIndex.Suggestion::userId).toList()).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        List<FriendSuggestionDto> dtos = new ArrayList<>(suggestions.size());
+        for (MutualFriendIndex.Suggestion suggestion : suggestions) {
+            User user = users.get(suggestion.userId());
+            if (user != null) {
+                dtos.add(new FriendSuggestionDto(ProfileMapper.toMiniProfileDto(user), suggestion.mutualFriends()));
+            }
+        }
+        return dtos;
     }
 
     /**
@@ -332,6 +418,42 @@ public class FriendService {
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found: " + username));
     }
 
+    /**
+     * Helper method to look up the relation between two users in the friend graph.
+     *
+     * @throws ResponseStatusException if either user is not found
+     */
+    private FriendGraph.Relation relation(String currentUsername, String otherUsername) {
+        return friendGraph.relation(findUserIdByUsername(currentUsername), findUserIdByUsername(otherUsername));
+    }
+
+    private long findUserIdByUsername(String username) {
+        Long id = friendGraph.userId(username);
+        if (id == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found: " + username);
+        }
+        return id;
+    }
+
+    private static int pageSize(int limit) {
+        return Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+    }
+
+    /**
+     * Helper method to build a page, the total comes from the friend graph.
+     */
+    private static FriendPageDto toPage(List<ProfileDto> items, long total, int size) {
+        String nextAfter = items.size() == size ? items.get(items.size() - 1).getUsername() : null;
+        return new FriendPageDto(items, total, nextAfter);
+    }
+
+    /**
+     * Helper method to update the friend graph once the transaction commits.
+     */
+    private void publishChange(User user, User otherUser, FriendshipStatus status) {
+        eventPublisher.publishEvent(new FriendshipChangedEvent(user.getId(), otherUser.getId(), status));
+    }
+
     /**
      * Helper method to convert a list of User objects to ProfileDto objects.
      *
@@ -3,128 +3,291 @@ package com.hexplatoon.syncrift_backend.service;
 import com.cloudinary.Cloudinary;
 import com.cloudinary.utils.ObjectUtils;
 import com.hexplatoon.syncrift_backend.entity.Image;
+import com.hexplatoon.syncrift_backend.event.ImageUploadedEvent;
 import com.hexplatoon.syncrift_backend.repository.ImageRepository;
-import jakarta.annotation.PostConstruct;
+import com.hexplatoon.syncrift_backend.service.image.ContentHash;
+import com.hexplatoon.syncrift_backend.service.image.DominantColorExtractor;
+import com.hexplatoon.syncrift_backend.service.image.MemoryBudget;
+import com.hexplatoon.syncrift_backend.service.image.TargetFeatureExtractor;
+import com.hexplatoon.syncrift_backend.service.image.TargetFeatureStore;
+import com.hexplatoon.syncrift_backend.service.image.TargetFeatures;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import net.coobird.thumbnailator.Thumbnails;
 
-import java.io.File;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.InterruptedIOException;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.*;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.SampleModel;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
 
+/**
+ * Ingests CSS battle targets. The multipart stream is decoded exactly once, in memory, and
+ * the decoded image is shared by the resize/encode, palette and scoring feature stages,
+ * which run in parallel. The memory budget is held until those stages are done and given
+ * back before the encoded JPEG is uploaded to Cloudinary from memory, so no temporary files
+ * are written and a slow upload does not hold up other ingestions. Uploads are deduplicated by the SHA-256 of the file, so
+ * submitting the same target twice returns the stored image.
+ */
 @Service
 public class ImageUploadService {
-    @Value("${image.upload.temp-dir}")
-    private String tempDir;
 
-
-    private Path tempUploadPath;
+    // Heap an upload holds on top of its pixels: JPEG buffer, histograms, row buffers
+    private static final long FIXED_OVERHEAD_BYTES = 8L * 1024 * 1024;
+    // Copies the stages make of the decoded image, per source pixel: the resize steps of the
+    // thumbnail (ARGB, the first one can be almost full size, under 4 + 4/3 bytes in all)
+    // and the grayscale pyramid of the features (under 4/3 byte), rounded up
+    private static final int DERIVED_BYTES_PER_PIXEL = 7;
+    // Widest raster ImageIO decodes to, four 32 bit bands
+    private static final int MAX_RASTER_BYTES_PER_PIXEL = 16;
+    private static final long MAX_FILE_BYTES = 10L * 1024 * 1024;
 
     private final Cloudinary cloudinary;
     private final ImageRepository imageRepository;
+    private final TargetFeatureExtractor featureExtractor;
+    private final TargetFeatureStore featureStore;
+    private final DominantColorExtractor dominantColorExtractor;
+    private final MemoryBudget memoryBudget;
+    private final Executor imageProcessingExecutor;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long maxPixels;
 
-    public ImageUploadService(Cloudinary cloudinary, ImageRepository imageRepository) {
+    public ImageUploadService(Cloudinary cloudinary, ImageRepository imageRepository,
+                              TargetFeatureExtractor featureExtractor, TargetFeatureStore featureStore,
+                              DominantColorExtractor dominantColorExtractor, MemoryBudget memoryBudget,
+                              @Qualifier("imageProcessingExecutor") Executor imageProcessingExecutor,
+                              ApplicationEventPublisher eventPublisher,
+                              @Value("${image.upload.max-pixels:40000000}") long maxPixels) {
         this.cloudinary = cloudinary;
         this.imageRepository = imageRepository;
+        this.featureExtractor = featureExtractor;
+        this.featureStore = featureStore;
+        this.dominantColorExtractor = dominantColorExtractor;
+        this.memoryBudget = memoryBudget;
+        this.imageProcessingExecutor = imageProcessingExecutor;
+        this.eventPublisher = eventPublisher;
+        this.maxPixels = maxPixels;
     }
 
-    @PostConstruct
-    public void init() {
-        this.tempUploadPath = Paths.get(tempDir).toAbsolutePath().normalize();
-        try {
-            Files.createDirectories(this.tempUploadPath);
-            System.out.println("Temporary upload directory created at: " + this.tempUploadPath);
-        } catch (IOException e) {
-            System.err.println("Could not create temp upload directory: " + e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException("Could not create upload directory", e);
-        }
+    /**
+     * Result of an ingestion. {@code duplicate} is set when the content was already stored
+     * and nothing was processed or uploaded.
+     */
+    public record IngestResult(Image image, boolean duplicate) {
     }
 
-    public Image uploadImage(MultipartFile file) throws IOException {
+    /**
+     * @param difficulty Difficulty of the target, null for the default (MEDIUM).
+     */
+    public Image uploadImage(MultipartFile file, Image.Difficulty difficulty) throws IOException {
         validateImageFile(file);
 
-        File originalTempfile = null;
-        File fileToUploadToCloudinary = null;
-
         try {
-            String originalFilename = file.getOriginalFilename();
-            String fileExtension = "";
-            if (originalFilename != null && originalFilename.contains(".")) {
-                fileExtension = originalFilename.substring(originalFilename.lastIndexOf("."));
+            String contentHash = hash(file);
+            Optional<Image> existing = imageRepository.findByContentHash(contentHash);
+            if (existing.isPresent()) {
+                System.out.println("Image already uploaded as " + existing.get().getId() + ", skipping");
+                return existing.get();
+            }
+            try (InputStream in = file.getInputStream()) {
+                return ingest(in, file.getSize(), file::getBytes, contentHash, difficulty).image();
             }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error during image upload: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Ingests an upload that is already in memory, e.g. an entry of a bulk upload.
+     * @param content The encoded image.
+     * @param contentHash {@link ContentHash#of(byte[])} of the content, computed by the caller.
+     * @param difficulty Difficulty of the target, null for the default (MEDIUM).
+     */
+    public IngestResult uploadImage(byte[] content, String contentHash, Image.Difficulty difficulty) throws IOException {
+        if (content.length == 0) {
+            throw new IllegalArgumentException("Cannot upload empty file");
+        }
+        if (content.length > MAX_FILE_BYTES) {
+            throw new IllegalArgumentException("File size must be less than 10MB");
+        }
+        Optional<Image> existing = imageRepository.findByContentHash(contentHash);
+        if (existing.isPresent()) {
+            return new IngestResult(existing.get(), true);
+        }
+        return ingest(new ByteArrayInputStream(content), content.length, () -> content, contentHash, difficulty);
+    }
 
-            String uniqueFileName = UUID.randomUUID().toString() + fileExtension;
-            originalTempfile = this.tempUploadPath.resolve(uniqueFileName).toFile();
-            file.transferTo(originalTempfile);
+    /**
+     * The encoded upload, read again only if it has to be uploaded as is.
+     */
+    @FunctionalInterface
+    private interface OriginalContent {
+        byte[] read() throws IOException;
+    }
 
-            // Process the image (resize, compress)
-            fileToUploadToCloudinary = processImage(originalTempfile);
+    /**
+     * What the processing stages produced, everything needed to store the target.
+     */
+    private record Prepared(byte[] upload, List<String> hexCodes, CompletableFuture<TargetFeatures> features) {
+    }
 
-            // Extract dominant colors
-            List<String> hexCodes = null;
-            try {
-                hexCodes = getDominantHexColors(originalTempfile, 4);
-                System.out.println("Extracted Dominant Color Hex Codes: " + hexCodes);
-            } catch (Exception e) {
-                System.err.println("Failed to extract dominant color hex codes: " + e.getMessage());
-                e.printStackTrace();
-                // Set default empty list if color extraction fails
-                hexCodes = new ArrayList<>();
+    /**
+     * Decodes the stream once and runs the processing stages on the decoded image. The memory
+     * budget is reserved from the header, before any pixel is decoded, and given back as soon
+     * as the stages are done, before the upload.
+     */
+    private IngestResult ingest(InputStream in, long encodedSize, OriginalContent original,
+                                String contentHash, Image.Difficulty difficulty) throws IOException {
+        Prepared prepared;
+        // Memory cache, ImageIO would otherwise spill the stream to a temp file
+        try (ImageInputStream imageStream = new MemoryCacheImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageStream);
+            if (!readers.hasNext()) {
+                throw new IllegalArgumentException("Unsupported image format");
             }
-            // Upload to Cloudinary
-            Map uploadResult = cloudinary.uploader().upload(fileToUploadToCloudinary, ObjectUtils.asMap("resource_type", "auto"));
-            System.out.println("Cloudinary Upload Result: " + uploadResult);
-
-            String cloudinaryUrl = (String) uploadResult.get("secure_url");
-            String publicId = (String) uploadResult.get("public_id");
-
-            System.out.println("Uploaded to Cloudinary " + cloudinaryUrl + " with id " + publicId);
-
-            Image image = Image.builder()
-                    .cloudinaryUrl(cloudinaryUrl)
-                    .publicId(publicId)
-                    .colorCode(hexCodes)
-                    .build();
-            Image savedImage = imageRepository.save(image);
-            return savedImage;
-        } catch (IOException e) {
-            System.err.println("Error during image upload: " + e.getMessage());
-            e.printStackTrace();
-            throw new IOException("Failed to upload image: " + e.getMessage(), e);
-        } catch (Exception e) {
-            System.err.println("General error during image upload: " + e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException("An unexpected error occurred during image upload: " + e.getMessage(), e);
-        } finally {
-            // Clean up temporary files
-            if (originalTempfile != null && originalTempfile.exists() && !originalTempfile.equals(fileToUploadToCloudinary)) {
-                boolean deleted = originalTempfile.delete();
-                if (deleted) {
-                    System.out.println("Original temporary file deleted: " + originalTempfile.getName());
-                } else {
-                    System.err.println("Failed to delete original temporary file: " + originalTempfile.getName());
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageStream, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    throw new IllegalArgumentException("Image has too many pixels (" + pixels + ", max " + maxPixels + ")");
                 }
-            }
 
-            if (fileToUploadToCloudinary != null && fileToUploadToCloudinary.exists()) {
-                boolean deleted = fileToUploadToCloudinary.delete();
-                if (deleted) {
-                    System.out.println("Temporary file sent to Cloudinary deleted: " + fileToUploadToCloudinary.getName());
-                } else {
-                    System.err.println("Failed to delete temporary file sent to Cloudinary: " + fileToUploadToCloudinary.getName());
+                long bytesPerPixel = rasterBytesPerPixel(reader) + DERIVED_BYTES_PER_PIXEL;
+                try (MemoryBudget.Reservation ignored =
+                             memoryBudget.reserve(pixels * bytesPerPixel + encodedSize + FIXED_OVERHEAD_BYTES)) {
+                    BufferedImage decoded = reader.read(0);
+                    prepared = prepare(decoded, original);
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for image processing memory");
+            } finally {
+                reader.dispose();
             }
         }
+        return store(prepared, contentHash, difficulty);
+    }
+
+    /**
+     * Size of one pixel of the raster {@code reader.read(0)} decodes to, from the first image
+     * type the reader offers, which is the one it decodes to by default.
+     */
+    private static long rasterBytesPerPixel(ImageReader reader) throws IOException {
+        Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+        if (types == null || !types.hasNext()) {
+            return MAX_RASTER_BYTES_PER_PIXEL;
+        }
+        ImageTypeSpecifier type = types.next();
+        int bandBits = 0;
+        for (int band = 0; band < type.getNumBands(); band++) {
+            bandBits += type.getBitsPerBand(band);
+        }
+        // Packed and padded layouts take more than the bands themselves
+        SampleModel model = type.getSampleModel(1, 1);
+        int elementBits = model.getNumDataElements() * DataBuffer.getDataTypeSize(model.getDataType());
+        return (Math.max(bandBits, elementBits) + 7) / 8;
+    }
+
+    private Prepared prepare(BufferedImage decoded, OriginalContent original) throws IOException {
+        CompletableFuture<byte[]> jpeg = CompletableFuture.supplyAsync(() -> encodeForUpload(decoded, original), imageProcessingExecutor);
+
+        CompletableFuture<List<String>> palette = CompletableFuture
+                .supplyAsync(() -> dominantColorExtractor.extract(decoded, 4), imageProcessingExecutor)
+                .exceptionally(e -> {
+                    System.err.println("Failed to extract dominant color hex codes: " + e.getMessage());
+                    // Set default empty list if color extraction fails
+                    return new ArrayList<>();
+                });
+
+        // Precompute the scoring features so battles never have to download the target
+        CompletableFuture<TargetFeatures> features = CompletableFuture
+                .supplyAsync(() -> featureExtractor.extract(decoded), imageProcessingExecutor)
+                .exceptionally(e -> {
+                    // Not fatal, the features are rebuilt from the uploaded image on first use
+                    System.err.println("Failed to extract scoring features: " + e.getMessage());
+                    return null;
+                });
+
+        // Every stage holds the decoded image, wait for all of them before giving the budget back
+        CompletableFuture.allOf(jpeg, palette, features).exceptionally(e -> null).join();
+
+        byte[] upload;
+        try {
+            upload = jpeg.join();
+        } catch (CompletionException e) {
+            throw new IOException("Failed to process image: " + e.getCause().getMessage(), e.getCause());
+        }
+        List<String> hexCodes = palette.join();
+        System.out.println("Extracted Dominant Color Hex Codes: " + hexCodes);
+        return new Prepared(upload, hexCodes, features);
+    }
+
+    private IngestResult store(Prepared prepared, String contentHash, Image.Difficulty difficulty) throws IOException {
+        // Upload to Cloudinary straight from memory
+        Map uploadResult = cloudinary.uploader().upload(prepared.upload(), ObjectUtils.asMap("resource_type", "auto"));
+        System.out.println("Cloudinary Upload Result: " + uploadResult);
+
+        String cloudinaryUrl = (String) uploadResult.get("secure_url");
+        String publicId = (String) uploadResult.get("public_id");
+
+        System.out.println("Uploaded to Cloudinary " + cloudinaryUrl + " with id " + publicId);
+
+        Image image = Image.builder()
+                .cloudinaryUrl(cloudinaryUrl)
+                .publicId(publicId)
+                .contentHash(contentHash)
+                .difficulty(difficulty)
+                .colorCode(prepared.hexCodes())
+                .build();
+        Image savedImage;
+        try {
+            savedImage = imageRepository.save(image);
+        } catch (DataIntegrityViolationException e) {
+            // The same content was stored concurrently, keep that row and drop our copy
+            Optional<Image> existing = imageRepository.findByContentHash(contentHash);
+            if (existing.isEmpty()) {
+                throw e;
+            }
+            cloudinary.uploader().destroy(publicId, ObjectUtils.emptyMap());
+            return new IngestResult(existing.get(), true);
+        }
+        TargetFeatures targetFeatures = prepared.features().join();
+        if (targetFeatures != null) {
+            featureStore.save(savedImage.getId(), targetFeatures);
+        }
+        // Makes the target selectable right away
+        eventPublisher.publishEvent(new ImageUploadedEvent(savedImage.getId(), savedImage.getDifficulty()));
+        return new IngestResult(savedImage, false);
+    }
+
+    private static String hash(MultipartFile file) throws IOException {
+        MessageDigest digest = ContentHash.newDigest();
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return ContentHash.toHex(digest.digest());
     }
 
     /**
@@ -141,90 +304,33 @@ public class ImageUploadService {
         }
 
         // Check file size (max 10MB)
-        if (file.getSize() > 10 * 1024 * 1024) {
+        if (file.getSize() > MAX_FILE_BYTES) {
             throw new IllegalArgumentException("File size must be less than 10MB");
         }
     }
 
     /**
-     * Optional image processing (resize and compress) using Thumbnails library.
-     * Returns the path to the processed file. If processing fails, returns the original file.
-     * @param originalFile The temporarily saved file.
-     * @return The processed file, or the original file if no processing occurred or failed.
+     * Resizes and compresses the decoded image with the Thumbnails library.
+     * @param decoded The decoded upload.
+     * @param original The upload as received, sent instead if the image cannot be resized.
+     * @return The JPEG that is sent to Cloudinary.
      */
-    private File processImage(File originalFile) throws IOException {
-        String originalFileName = originalFile.getName();
-        String baseName = originalFileName.contains(".")
-                ? originalFileName.substring(0, originalFileName.lastIndexOf('.'))
-                : originalFileName;
-        String processedFileName = "processed_" + baseName + ".jpg";
-
-        Path processedFilePath = this.tempUploadPath.resolve(processedFileName);
-        File processedFile = processedFilePath.toFile();
-
+    private byte[] encodeForUpload(BufferedImage decoded, OriginalContent original) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256 * 1024);
         try {
-            Thumbnails.of(originalFile)
+            Thumbnails.of(decoded)
                     .size(800, 800)
                     .outputFormat("jpg")
                     .outputQuality(0.80)
-                    .toFile(processedFile);
-            return processedFile;
+                    .toOutputStream(out);
+            return out.toByteArray();
         } catch (IOException e) {
-            System.err.println("Image processing failed for " + originalFile.getName() + ": " + e.getMessage());
-            e.printStackTrace();
-            return originalFile;
-        }
-    }
-    /**
-     * Analyzes an image to find the most dominant colors and returns their hex codes.
-     * This method samples all pixels, counts their frequency, and returns a specified number of colors.
-     * @param imageFile The image file to analyze.
-     * @param maxColors The maximum number of dominant colors to return.
-     * @return A list of hex color codes for the dominant colors.
-     * @throws IOException If the image file cannot be read.
-     */
-    private List<String> getDominantHexColors(File imageFile, int maxColors) throws IOException {
-        // Read the image into a BufferedImage object
-        BufferedImage image = ImageIO.read(imageFile);
-        if (image == null) {
-            throw new IOException("Could not read image file: " + imageFile.getName());
-        }
-
-        Map<Integer, Integer> colorFrequency = new HashMap<>();
-
-        // Iterate through all pixels and count color frequencies
-        for (int y = 0; y < image.getHeight(); y++) {
-            for (int x = 0; x < image.getWidth(); x++) {
-                // Get the RGB value of the pixel
-                int rgb = image.getRGB(x, y);
-                // Increment the count for this color in the map
-                colorFrequency.put(rgb, colorFrequency.getOrDefault(rgb, 0) + 1);
-            }
+            System.err.println("Image processing failed, uploading the original: " + e.getMessage());
         }
-
-        // Create a list of map entries to sort them by frequency
-        List<Map.Entry<Integer, Integer>> sortedColors = new ArrayList<>(colorFrequency.entrySet());
-
-        // Sort the list in descending order based on the frequency (value)
-        Collections.sort(sortedColors, new Comparator<Map.Entry<Integer, Integer>>() {
-            @Override
-            public int compare(Map.Entry<Integer, Integer> o1, Map.Entry<Integer, Integer> o2) {
-                return o2.getValue().compareTo(o1.getValue());
-            }
-        });
-
-        // Extract the top 'maxColors' dominant colors and convert them to hex codes
-        List<String> hexCodes = new ArrayList<>();
-        int count = 0;
-        for (Map.Entry<Integer, Integer> entry : sortedColors) {
-            if (count >= maxColors) { // Get only up to the specified number of colors
-                break;
-            }
-            String hex = String.format("#%06X", (0xFFFFFF & entry.getKey()));
-            hexCodes.add(hex);
-            count++;
+        try {
+            return original.read();
+        } catch (IOException e) {
+            throw new CompletionException(e);
         }
-
-        return hexCodes;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,67 @@
+package com.hexplatoon.syncrift_backend.service.battle;
+
+import com.hexplatoon.syncrift_backend.entity.Battle;
+import com.hexplatoon.syncrift_backend.entity.User;
+import com.hexplatoon.syncrift_backend.repository.BattleRepository;
+import com.hexplatoon.syncrift_backend.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks up the battles left WAITING or ONGOING by the previous run. Battles past their
+ * deadline are canceled in one update, their inputs were only in memory. The others are
+ * loaded in one query and handed back to {@link BattleService} with their remaining time.
+ * Battles are owned by the node that runs them, so this assumes a single backend node.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BattleRecoveryService {
+
+    private static final List<Battle.Status> LIVE = List.of(Battle.Status.WAITING, Battle.Status.ONGOING);
+
+    private final BattleRepository battleRepository;
+    private final UserRepository userRepository;
+    private final BattleService battleService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void recover() {
+        long start = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+
+        int canceled = battleRepository.cancelOverdue(LIVE, now);
+
+        int resumed = 0;
+        // Never empty, NOT IN () is not valid SQL
+        List<Long> stillInBattle = new ArrayList<>(List.of(-1L));
+        for (Battle battle : battleRepository.findLiveWithPlayers(LIVE, now)) {
+            if (battleService.resume(battle, now)) {
+                resumed++;
+                if (battle.getStatus() == Battle.Status.ONGOING) {
+                    stillInBattle.add(battle.getChallenger().getId());
+                    stillInBattle.add(battle.getOpponent().getId());
+                }
+            } else {
+                battle.setStatus(Battle.Status.CANCELED);
+                battle.setUpdatedAt(now);
+                canceled++;
+            }
+        }
+        int released = userRepository.replaceStatusExcept(User.UserStatus.IN_BATTLE, User.UserStatus.ONLINE, stillInBattle);
+
+        if (canceled > 0 || resumed > 0 || released > 0) {
+            log.info("Battle recovery: {} resumed, {} canceled, {} players released in {} ms",
+                    resumed, canceled, released, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+}
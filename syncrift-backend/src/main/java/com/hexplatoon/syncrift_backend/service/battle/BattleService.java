@@ -6,27 +6,30 @@ import com.hexplatoon.syncrift_backend.dto.battle.Result;
 import com.hexplatoon.syncrift_backend.dto.battle.websocket.BattleCreateWebsocketDto;
 import com.hexplatoon.syncrift_backend.dto.battle.websocket.BattleResultWebsocketDto;
 import com.hexplatoon.syncrift_backend.dto.battle.websocket.BattleStartWebsocketDto;
-import com.hexplatoon.syncrift_backend.dto.battle.Readiness;
+import com.hexplatoon.syncrift_backend.dto.battle.BattleState;
 import com.hexplatoon.syncrift_backend.dto.battle.config.Config;
 import com.hexplatoon.syncrift_backend.entity.Challenge;
 import com.hexplatoon.syncrift_backend.entity.User;
 import com.hexplatoon.syncrift_backend.entity.Battle;
 import com.hexplatoon.syncrift_backend.dto.battle.BattleSession;
+import com.hexplatoon.syncrift_backend.mapper.BattleMapper;
 import com.hexplatoon.syncrift_backend.mapper.ProfileMapper;
 import com.hexplatoon.syncrift_backend.repository.BattleRepository;
 import com.hexplatoon.syncrift_backend.repository.UserRepository;
+import com.hexplatoon.syncrift_backend.service.battle.replay.ReplayJournal;
 import jakarta.validation.constraints.NotNull;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
-import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -36,9 +39,14 @@ import java.util.concurrent.ConcurrentHashMap;
 @Service
 public class BattleService{
 
-    private final Map<Long, BattleSession> activeSessions = new ConcurrentHashMap<>();
-    private final Map<Long, Readiness> readinessMap = new ConcurrentHashMap<>();
-    private final Map<Long, Battle> activeBattles = new ConcurrentHashMap<>();
+    private static final int READINESS_SECONDS = 30;
+    // Added to the battle duration before the timer ends it, for late submissions
+    private static final int GRACE_SECONDS = 5;
+    // Score shown to both players when a battle could not be scored
+    private static final String UNSCORED = "Not scored";
+
+    // Every battle from creation until it ends or is canceled, the authority while it lives
+    private final Map<Long, BattleState> states = new ConcurrentHashMap<>();
     private final UserRepository userRepository;
     private final SimpMessagingTemplate simpMessagingTemplate;
     private final BattleRepository battleRepository;
@@ -46,7 +54,8 @@ public class BattleService{
     private final TypingBattleHandlerService typingBattleHandlerService;
     private final CssBattleHandlerService cssBattleHandlerService;
     private final ObjectMapper objectMapper;
-
+    private final ReplayJournal replayJournal;
+    private final BattleWriteBehind battleWriteBehind;
 
 
     @Autowired
@@ -55,7 +64,8 @@ public class BattleService{
             SimpMessagingTemplate simpMessagingTemplate,
             BattleRepository battleRepository,
             BattleTimerService battleTimerService,
-            TypingBattleHandlerService typingBattleHandlerService, CssBattleHandlerService cssBattleHandlerService, ObjectMapper objectMapper) {
+            TypingBattleHandlerService typingBattleHandlerService, CssBattleHandlerService cssBattleHandlerService, ObjectMapper objectMapper,
+            ReplayJournal replayJournal, BattleWriteBehind battleWriteBehind) {
         this.userRepository = userRepository;
         this.simpMessagingTemplate = simpMessagingTemplate;
         this.battleRepository = battleRepository;
@@ -63,6 +73,8 @@ public class BattleService{
         this.typingBattleHandlerService = typingBattleHandlerService;
         this.cssBattleHandlerService = cssBattleHandlerService;
         this.objectMapper = objectMapper;
+        this.replayJournal = replayJournal;
+        this.battleWriteBehind = battleWriteBehind;
     }
 
     @Transactional
@@ -77,15 +89,18 @@ public class BattleService{
         else if (eventType == Challenge.EventType.CF) duration = 3600;
 
 
+        LocalDateTime now = LocalDateTime.now();
         Battle battle = Battle.builder()
                 .category(Battle.Category.valueOf(eventType.name()))
-                .createdAt(LocalDateTime.now())
+                .createdAt(now)
+                .deadlineAt(now.plusSeconds(READINESS_SECONDS))
                 .challenger(challenger)
                 .opponent(opponent)
                 .status(Battle.Status.WAITING)
                 .duration(duration)
                 .build();
 
+        // Inserted right away, the id is needed for everything that follows
         battleRepository.save(battle);
 
         // response to send to each of the user
@@ -101,84 +116,171 @@ public class BattleService{
         simpMessagingTemplate.convertAndSendToUser(challengerUsername,"/topic/battle/create", responseDto);
         simpMessagingTemplate.convertAndSendToUser(opponentUsername,"/topic/battle/create", responseDto);
 
-        // to check for both user being ready
-        // remove this object from map if timer expire or both user get ready
-        Readiness ready = new Readiness();
-        readinessMap.put(battle.getId(), ready);
+        // Readiness and every later transition go through this state, removed when the
+        // battle ends or the readiness timer cancels it
+        states.put(battle.getId(), new BattleState(battle));
 
         // start a timer for checking both user being ready
-        battleTimerService.startReadinessTimer(battle.getId(), 30);
+        battleTimerService.startReadinessTimer(battle.getId(), READINESS_SECONDS);
     }
 
+    /**
+     * Starts a battle the last READY moved to ONGOING, only called by that READY. If the
+     * battle can not be set up it is canceled and both players are told, so it never stays
+     * ONGOING without a timer.
+     */
     @Transactional
     public void startBattle(Long battleId){
-        Battle battle = findBattleById(battleId);
-        validateBattle(battle, Battle.Status.WAITING);
-
-        activeBattles.put(battle.getId(), battle);
-        BattleSession session = BattleSession.builder().build();
-        activeSessions.put(battle.getId(), session);
-
-        // update user status in db
+        BattleState state = states.get(battleId);
+        Battle battle = state.getBattle();
         User challenger = battle.getChallenger();
         User opponent = battle.getOpponent();
-        challenger.setStatus(User.UserStatus.IN_BATTLE);
-        opponent.setStatus(User.UserStatus.IN_BATTLE);
-        userRepository.save(challenger);
-        userRepository.save(opponent);
-
-        // config fetch logic
-        Config config = null;
-        if (battle.getCategory() == Battle.Category.TB){
-            config = typingBattleHandlerService.getConfig(battleId);
-
-        }else if(battle.getCategory() == Battle.Category.CSS){
-            config = cssBattleHandlerService.getConfig(battleId);
-        }
         try {
-            battle.setConfigJson(objectMapper.writeValueAsString(config));
-        } catch (JsonProcessingException e) {
-            throw new RuntimeException("Error serializing config", e);
-        } catch (AssertionError e) {
-            throw new RuntimeException("No battle running with id " + battleId, e);
-        }
+            validateBattle(battle, Battle.Status.WAITING);
+            state.setSession(BattleSession.builder().build());
 
-        //When both are ready
-        BattleStartWebsocketDto dto = BattleStartWebsocketDto.builder()
-                .battleId(battle.getId())
-                .config(config)
-                .category(battle.getCategory())
-                .build();
+            // config fetch logic
+            Config config = null;
+            if (battle.getCategory() == Battle.Category.TB){
+                config = typingBattleHandlerService.getConfig(battleId);
 
-        // send data to users with websocket
-        simpMessagingTemplate.convertAndSendToUser(challenger.getUsername(),"/topic/battle/start", dto);
-        simpMessagingTemplate.convertAndSendToUser(opponent.getUsername(),"/topic/battle/start", dto);
-        System.out.println("Battle started with config:" + config.toString());
-        battle.setStatus(Battle.Status.ONGOING);
-        battle.setStartedAt(LocalDateTime.now());
-        battleRepository.save(battle);
-
-        // Start timer with 5 seconds grace period
-        battleTimerService.startBattleTimer(battleId, battle.getDuration() + 5);
+            }else if(battle.getCategory() == Battle.Category.CSS){
+                config = cssBattleHandlerService.getConfig(battleId);
+            }
+            if (config == null) {
+                throw new IllegalStateException("No config for a " + battle.getCategory() + " battle");
+            }
+            try {
+                battle.setConfigJson(objectMapper.writeValueAsString(config.persistentForm()));
+            } catch (JsonProcessingException e) {
+                throw new RuntimeException("Error serializing config", e);
+            }
 
-//        activeSessions.put(battleId, session);
+            // update user status in db once the battle can start, the cached users may be
+            // stale so only the status is written
+            battleWriteBehind.updateUserStatus(List.of(challenger.getId(), opponent.getId()), User.UserStatus.IN_BATTLE);
+
+            //When both are ready
+            BattleStartWebsocketDto dto = BattleStartWebsocketDto.builder()
+                    .battleId(battle.getId())
+                    .config(config)
+                    .category(battle.getCategory())
+                    .build();
+
+            // send data to users with websocket
+            simpMessagingTemplate.convertAndSendToUser(challenger.getUsername(),"/topic/battle/start", dto);
+            simpMessagingTemplate.convertAndSendToUser(opponent.getUsername(),"/topic/battle/start", dto);
+            System.out.println("Battle started with config:" + config.toString());
+            LocalDateTime startedAt = LocalDateTime.now();
+            battle.setStatus(Battle.Status.ONGOING);
+            battle.setStartedAt(startedAt);
+            battle.setDeadlineAt(startedAt.plusSeconds(battle.getDuration() + GRACE_SECONDS));
+            battleWriteBehind.saveBattle(battle);
+
+            replayJournal.start(battleId, List.of(challenger.getUsername(), opponent.getUsername()));
+
+            // Start timer with the grace period, same as the stored deadline
+            battleTimerService.startBattleTimer(battleId, battle.getDuration() + GRACE_SECONDS);
+        } catch (RuntimeException e) {
+            log.error("Starting battle {} failed, canceling it", battleId, e);
+            abortStart(state);
+        }
     }
 
-    @Transactional
-    public void endBattle(Long battleId) {
-        Battle battle = getActiveBattleById(battleId);
-        validateBattle(battle, Battle.Status.ONGOING);
+    /**
+     * Cancels a battle whose start failed half way and undoes what the start did.
+     */
+    private void abortStart(BattleState state) {
+        Battle battle = state.getBattle();
+        Long battleId = battle.getId();
+        if (!state.transition(BattleState.Phase.ONGOING, BattleState.Phase.CANCELED)) return;
+        battleTimerService.cancelBattleTimer(battleId);
+        states.remove(battleId);
+        if (battle.getCategory() == Battle.Category.TB) {
+            typingBattleHandlerService.release(battleId);
+        } else if (battle.getCategory() == Battle.Category.CSS) {
+            cssBattleHandlerService.release(battleId);
+        }
+        replayJournal.discard(battleId);
 
-        // update ending time in the battle
         battle.setUpdatedAt(LocalDateTime.now());
+        battle.setStatus(Battle.Status.CANCELED);
+        battle.setWinnerUsername(null);
+        battleWriteBehind.saveBattle(battle);
+        battleWriteBehind.updateUserStatus(
+                List.of(battle.getChallenger().getId(), battle.getOpponent().getId()), User.UserStatus.ONLINE);
+
+        // Shown as a result without a winner, like a battle that could not be scored
+        sendResult(battle, Result.builder()
+                .winnerScore(UNSCORED)
+                .loserScore(UNSCORED)
+                .build());
+    }
 
-        // update user status
+    /**
+     * Scores and ends a battle. Once this call won the move to SCORING it always leaves the
+     * battle terminal: if scoring fails the battle is canceled with no winner, and both
+     * players are told either way.
+     */
+    @Transactional
+    public void endBattle(Long battleId) {
+        BattleState state = states.get(battleId);
+        // The timer and the last submission can both get here, only one scores
+        if (state == null || !state.transition(BattleState.Phase.ONGOING, BattleState.Phase.SCORING)) {
+            log.debug("Battle {} is not ongoing, not ending it again", battleId);
+            return;
+        }
+        Battle battle = state.getBattle();
         User challenger = battle.getChallenger();
         User opponent = battle.getOpponent();
-        challenger.setStatus(User.UserStatus.ONLINE);
-        userRepository.save(challenger);
-        opponent.setStatus(User.UserStatus.ONLINE);
-        userRepository.save(opponent);
+        boolean scored = false;
+        try {
+            Result result = scoreBattle(battle);
+
+            battle.setUpdatedAt(LocalDateTime.now());
+            battle.setStatus(Battle.Status.ENDED);
+            battle.setWinnerUsername(result.getWinnerUsername());
+            battleWriteBehind.saveBattle(battle);
+            state.transition(BattleState.Phase.SCORING, BattleState.Phase.ENDED);
+            scored = true;
+
+            sendResult(battle, result);
+        } catch (RuntimeException e) {
+            log.error("Scoring battle {} failed, canceling it", battleId, e);
+            battle.setUpdatedAt(LocalDateTime.now());
+            battle.setStatus(Battle.Status.CANCELED);
+            battle.setWinnerUsername(null);
+            battleWriteBehind.saveBattle(battle);
+            state.transition(BattleState.Phase.SCORING, BattleState.Phase.CANCELED);
+
+            // Shown as a result without a winner
+            sendResult(battle, Result.builder()
+                    .winnerScore(UNSCORED)
+                    .loserScore(UNSCORED)
+                    .build());
+        } finally {
+            battleWriteBehind.updateUserStatus(List.of(challenger.getId(), opponent.getId()), User.UserStatus.ONLINE);
+            states.remove(battleId);
+            if (battle.getCategory() == Battle.Category.TB) {
+                typingBattleHandlerService.release(battleId);
+            } else if (battle.getCategory() == Battle.Category.CSS) {
+                cssBattleHandlerService.release(battleId);
+            }
+            if (scored) {
+                replayJournal.finish(battleId);
+            } else {
+                replayJournal.discard(battleId);
+            }
+        }
+    }
+
+    /**
+     * Computes the result of a battle in SCORING and stores it on the battle.
+     * @throws RuntimeException if the battle can not be scored.
+     */
+    private Result scoreBattle(Battle battle) {
+        Long battleId = battle.getId();
+        validateBattle(battle, Battle.Status.ONGOING);
 
         // result config fetch logic
         Result result = null;
@@ -201,85 +303,133 @@ public class BattleService{
         } catch (JsonProcessingException e) {
             throw new RuntimeException("Error serializing result", e);
         }
+        return result;
+    }
 
-        // BattleResultWebsocketDto
+    private void sendResult(Battle battle, Result result) {
         BattleResultWebsocketDto dto = BattleResultWebsocketDto.builder()
                 .result(result)
                 .battleId(battle.getId())
                 .category(battle.getCategory())
                 .build();
         // send to both the users
-        simpMessagingTemplate.convertAndSendToUser(opponent.getUsername(),"/topic/battle/end", dto);
-        simpMessagingTemplate.convertAndSendToUser(challenger.getUsername(),"/topic/battle/end", dto);
-
-        // remove active battle and session
-        // update battle status and winnerUsername
-        battle.setStatus(Battle.Status.ENDED);
-        battle.setWinnerUsername(result.getWinnerUsername());
-        BattleSession session = activeSessions.remove(battleId);
-        Battle removedBattle = activeBattles.remove(battleId);
-
-        if (removedBattle != null && session != null) {
-            battleRepository.save(removedBattle);
-        }else{
-            throw new RuntimeException("Error delete active session or battle");
-        }
+        simpMessagingTemplate.convertAndSendToUser(battle.getOpponent().getUsername(),"/topic/battle/end", dto);
+        simpMessagingTemplate.convertAndSendToUser(battle.getChallenger().getUsername(),"/topic/battle/end", dto);
     }
 
+    /**
+     * Cancels a battle that did not start, a no-op if the last READY won the race.
+     */
     @Transactional
     public void cancelBattle(Long battleId) {
-        Battle battle = findBattleById(battleId);
+        BattleState state = states.get(battleId);
+        if (state == null || !state.cancel()) return;
+        states.remove(battleId);
 
+        Battle battle = state.getBattle();
         battle.setStatus(Battle.Status.CANCELED);
-        battleRepository.save(battle);
-
-        readinessMap.remove(battleId);
+        battleWriteBehind.saveBattle(battle);
 
         System.out.println("Battle " + battleId + " cancelled.");
     }
 
 
-    // TODO : create get challenger username and get opponent username
+    /**
+     * Marks a player ready from memory, no database read. When both are, the READY that
+     * completed the pair starts the battle, a concurrent one can not start it twice.
+     */
     @Transactional
     public void updateReadiness(@NotNull String username , Long battleId) {
+        BattleState state = states.get(battleId);
+        if (state == null) {
+            // Expired, canceled or already over, a stale READY is nothing to report
+            log.debug("READY from {} for battle {} that is not active", username, battleId);
+            return;
+        }
 
-        Readiness ready = readinessMap.get(battleId);
-        Battle battle = findBattleById(battleId);
-
+        BattleState.ReadyOutcome outcome = state.markReady(username);
+        if (outcome == BattleState.ReadyOutcome.REJECTED) {
+            // Not a player of the battle, already ready, or the battle already started
+            log.debug("READY from {} for battle {} rejected", username, battleId);
+            return;
+        }
 
-        String challengerUsername = battle.getChallenger().getUsername();
-        String opponentUsername =  battle.getOpponent().getUsername();
+        if (outcome == BattleState.ReadyOutcome.STARTED) {
+            battleTimerService.cancelReadinessTimer(battleId);
+            startBattle(battleId);
+        }
+    }
 
-        validateBattle(battle, Battle.Status.WAITING);
+    /**
+     * Takes back a WAITING or ONGOING battle loaded after a restart and schedules what is
+     * left until its deadline. Nobody is ready in a resumed WAITING battle, and an ONGOING
+     * one is scored on the progress received after the restart.
+     * @param battle The battle with both players loaded, its deadline not passed.
+     * @return false if it can not be resumed, the caller cancels it.
+     */
+    public boolean resume(Battle battle, LocalDateTime now) {
+        Long battleId = battle.getId();
+        int secondsLeft = (int) Math.max(1, (Duration.between(now, battle.getDeadlineAt()).toMillis() + 999) / 1000);
+        if (battle.getStatus() == Battle.Status.WAITING) {
+            states.put(battleId, new BattleState(battle));
+            battleTimerService.startReadinessTimer(battleId, secondsLeft);
+            return true;
+        }
 
-        if(username.equals(challengerUsername) && !readinessMap.get(battleId).isChallengerOk()) {
-            ready.setChallengerOk(true);
+        Config config;
+        try {
+            config = BattleMapper.readConfig(battle);
+        } catch (JsonProcessingException e) {
+            log.warn("Battle {} has an unreadable config, not resuming it", battleId, e);
+            return false;
         }
-        else if(username.equals(opponentUsername) && !readinessMap.get(battleId).isOpponentOk()) {
-            ready.setOpponentOk(true);
+        BattleState state = new BattleState(battle, BattleState.Phase.ONGOING);
+        state.setSession(BattleSession.builder().build());
+        states.put(battleId, state);
+        boolean restored = false;
+        if (battle.getCategory() == Battle.Category.TB) {
+            restored = typingBattleHandlerService.resume(battleId, config);
+        } else if (battle.getCategory() == Battle.Category.CSS) {
+            restored = cssBattleHandlerService.resume(battleId, config);
         }
-        else {
-            throw new UsernameNotFoundException("Username " + username + " not found Or Battle already started.");
+        if (!restored) {
+            states.remove(battleId);
+            return false;
         }
+        replayJournal.start(battleId, List.of(battle.getChallenger().getUsername(), battle.getOpponent().getUsername()));
+        battleTimerService.startBattleTimer(battleId, secondsLeft);
+        return true;
+    }
 
-        if (isBothReady(battleId)) {
-            readinessMap.remove(battleId);
-            battleTimerService.cancelReadinessTimer(battleId);
-            startBattle(battleId);
-        }
+    /**
+     * True while the battle is played, until the end task moves it to scoring. Input is
+     * applied only then, so what was queued on the shard before the end is still counted.
+     */
+    public boolean isOngoing(Long battleId) {
+        BattleState state = states.get(battleId);
+        return state != null && state.getPhase() == BattleState.Phase.ONGOING;
     }
 
     public boolean isBothReady(Long battleId) {
-        Readiness ready = readinessMap.get(battleId);
-        return ready!=null && ready.isChallengerOk()&& ready.isOpponentOk();
+        BattleState state = states.get(battleId);
+        return state != null && state.isBothReady();
     }
 
     public Battle findBattleById(Long battleId) {
         return battleRepository.findById(battleId).orElseThrow(
                 () -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Battle not found : " + battleId));
     }
+    /**
+     * The battle while it is played or scored, null otherwise.
+     */
     public Battle getActiveBattleById(Long battleId) {
-        return activeBattles.get(battleId);
+        BattleState state = states.get(battleId);
+        return state != null && state.isActive() ? state.getBattle() : null;
+    }
+
+    public BattleSession getActiveSession(Long battleId) {
+        BattleState state = states.get(battleId);
+        return state != null && state.isActive() ? state.getSession() : null;
     }
 
     private User findUserByUsername(String username) {
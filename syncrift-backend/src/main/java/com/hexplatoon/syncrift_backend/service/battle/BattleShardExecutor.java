@@ -0,0 +1,141 @@
+package com.hexplatoon.syncrift_backend.service.battle;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs battle work on a fixed set of single-threaded event loops, a battle always on the
+ * same one. Every message, readiness change and timer expiry of a battle is therefore
+ * handled in arrival order by one thread, battles on different shards never contend, and
+ * the per-battle state needs no coordination between its own mutations.
+ * <p>
+ * Tasks must not block: a render or any other slow call holds up every battle of the shard
+ * and belongs on another executor. Submitters are the STOMP inbound and timer threads, so a
+ * full shard queue only makes them wait up to the offer timeout, then the task is dropped
+ * and the submitter told, rather than one hot shard stalling every battle.
+ */
+@Slf4j
+public class BattleShardExecutor implements MeterBinder {
+
+    private static final Runnable STOP = () -> {
+    };
+
+    private final Shard[] shards;
+    private final long offerTimeoutNanos;
+
+    public BattleShardExecutor(int shardCount, int queueCapacity, long offerTimeoutMillis) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("shardCount must be greater than 0: " + shardCount);
+        }
+        this.offerTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(offerTimeoutMillis);
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i, queueCapacity);
+            shards[i].thread.start();
+        }
+    }
+
+    /**
+     * Queues a task on the battle's shard, after everything already queued for it. Waits at
+     * most the offer timeout for room in a full queue.
+     * @return false if the task was dropped.
+     */
+    public boolean execute(long battleId, Runnable task) {
+        Shard shard = shardFor(battleId);
+        try {
+            if (shard.queue.offer(task, offerTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                return true;
+            }
+            log.warn("Battle shard {} is full, dropped work for battle {}", shard.index, battleId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while queueing work for battle {}, dropped", battleId);
+        }
+        shard.rejected.incrementAndGet();
+        return false;
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Runs what is already queued, then stops the loops.
+     */
+    public void shutdown() throws InterruptedException {
+        for (Shard shard : shards) {
+            shard.queue.put(STOP);
+        }
+        for (Shard shard : shards) {
+            shard.thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    private Shard shardFor(long battleId) {
+        // Fibonacci hashing, ids are sequential and the shard count need not be a power of two
+        int hash = (int) ((battleId * 0x9E3779B97F4A7C15L) >>> 32);
+        return shards[Math.floorMod(hash, shards.length)];
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Shard shard : shards) {
+            String tag = Integer.toString(shard.index);
+            Gauge.builder("syncrift.battle.shard.queue.depth", shard.queue, BlockingQueue::size)
+                    .description("Battle tasks waiting on the shard's event loop")
+                    .tag("shard", tag)
+                    .register(registry);
+            FunctionCounter.builder("syncrift.battle.shard.tasks", shard.completed, AtomicLong::get)
+                    .description("Battle tasks run by the shard's event loop")
+                    .tag("shard", tag)
+                    .register(registry);
+            FunctionCounter.builder("syncrift.battle.shard.rejected", shard.rejected, AtomicLong::get)
+                    .description("Battle tasks dropped because the shard's queue stayed full")
+                    .tag("shard", tag)
+                    .register(registry);
+        }
+    }
+
+    private static final class Shard implements Runnable {
+        final int index;
+        final BlockingQueue<Runnable> queue;
+        final AtomicLong completed = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final Thread thread;
+
+        Shard(int index, int queueCapacity) {
+            this.index = index;
+            this.queue = new LinkedBlockingQueue<>(queueCapacity);
+            this.thread = new Thread(this, "battle-shard-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Runnable task;
+                try {
+                    task = queue.take();
+                } catch (InterruptedException e) {
+                    log.warn("Battle shard {} interrupted with {} tasks queued", index, queue.size());
+                    return;
+                }
+                if (task == STOP) return;
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    log.error("Battle shard {} task failed", index, t);
+                }
+                completed.incrementAndGet();
+            }
+        }
+    }
+}
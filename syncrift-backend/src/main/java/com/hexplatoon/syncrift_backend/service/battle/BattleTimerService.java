@@ -1,70 +1,129 @@
 package com.hexplatoon.syncrift_backend.service.battle;
 
+import com.hexplatoon.syncrift_backend.entity.Battle;
+import com.hexplatoon.syncrift_backend.service.timer.HashedWheelTimer;
+import com.hexplatoon.syncrift_backend.service.timer.WheelTimeout;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
 import java.util.Map;
 import java.util.concurrent.*;
 
-// TODO : Refine the code. It's smelling
 // TODO : Add proper exception handling for websocket and write fail safe checks in all necessary places
+@Slf4j
 @Service
 public class BattleTimerService {
 
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
-    private final Map<Long, ScheduledFuture<?>> battleTimers = new ConcurrentHashMap<>();
-    private final Map<Long, ScheduledFuture<?>> readinessTimers = new ConcurrentHashMap<>();
+    private final HashedWheelTimer timer;
+    private final Map<Long, Slot> battleTimers = new ConcurrentHashMap<>();
+    private final Map<Long, Slot> readinessTimers = new ConcurrentHashMap<>();
     private final BattleService battleService;
+    private final BattleShardExecutor battleShardExecutor;
+    private final Executor battleTimerExecutor;
 
-    public BattleTimerService(@Lazy BattleService battleService) {
+    /**
+     * A battle's timer. Claimed in the map before it is scheduled, the timeout is filled in
+     * right after.
+     */
+    private static final class Slot {
+        volatile WheelTimeout timeout;
+
+        void cancel() {
+            WheelTimeout scheduled = timeout;
+            if (scheduled != null) scheduled.cancel();
+        }
+    }
+
+    public BattleTimerService(@Lazy BattleService battleService,
+                              @Qualifier("battleWheelTimer") HashedWheelTimer timer,
+                              BattleShardExecutor battleShardExecutor,
+                              @Qualifier("battleTimerExecutor") Executor battleTimerExecutor) {
         this.battleService = battleService;
+        this.timer = timer;
+        this.battleShardExecutor = battleShardExecutor;
+        this.battleTimerExecutor = battleTimerExecutor;
     }
 
     public void startBattleTimer(Long battleId, int durationSeconds) {
-        // Avoid duplicate timers
-        if (battleTimers.containsKey(battleId)) return;
+        Slot slot = new Slot();
+        // Avoid duplicate timers, and published before scheduling so an expiry cannot miss it
+        if (battleTimers.putIfAbsent(battleId, slot) != null) return;
 
-        ScheduledFuture<?> future = scheduler.schedule(() -> {
-            System.out.println("battle ended.");
-            battleService.endBattle(battleId);
-            battleTimers.remove(battleId);
+        slot.timeout = timer.schedule(() -> {
+            // Removed first so a late submission does not try to end the battle a second time
+            if (!battleTimers.remove(battleId, slot)) return;
+            log.info("Battle {} timer expired", battleId);
+            Battle battle = battleService.getActiveBattleById(battleId);
+            if (battle != null && battle.getCategory() == Battle.Category.CSS) {
+                // Scoring renders both submissions for seconds, it stays off the shards
+                battleService.endBattle(battleId);
+            } else {
+                // After the progress already queued for the battle
+                executeOnShard(battleId, () -> battleService.endBattle(battleId));
+            }
         }, durationSeconds, TimeUnit.SECONDS);
-
-        battleTimers.put(battleId, future);
+        dropIfCanceled(battleTimers, battleId, slot);
     }
 
     public void startReadinessTimer(Long battleId, int durationSeconds) {
-        if (readinessTimers.containsKey(battleId)) return;
-        ScheduledFuture<?> future = scheduler.schedule(() -> {;
-            if (!battleService.isBothReady(battleId)){
-                battleService.cancelBattle(battleId);
-            }
-            readinessTimers.remove(battleId);
+        Slot slot = new Slot();
+        if (readinessTimers.putIfAbsent(battleId, slot) != null) return;
+
+        slot.timeout = timer.schedule(() -> {
+            if (!readinessTimers.remove(battleId, slot)) return;
+            // No-op if the last READY started the battle meanwhile
+            executeOnShard(battleId, () -> battleService.cancelBattle(battleId));
         }, durationSeconds, TimeUnit.SECONDS);
+        dropIfCanceled(readinessTimers, battleId, slot);
+    }
+
+    /**
+     * Queues an expiry on the battle's shard. A shard that stays full gets it again a second
+     * later, an expiry is never dropped.
+     */
+    private void executeOnShard(Long battleId, Runnable task) {
+        if (battleShardExecutor.execute(battleId, task)) return;
+        timer.schedule(() -> executeOnShard(battleId, task), 1, TimeUnit.SECONDS);
+    }
 
-        readinessTimers.put(battleId, future);
+    /**
+     * A cancel between claiming the slot and scheduling found no timeout to cancel. The
+     * expiry would be a no-op anyway, this only frees the wheel entry early.
+     */
+    private static void dropIfCanceled(Map<Long, Slot> timers, Long battleId, Slot slot) {
+        if (timers.get(battleId) != slot) {
+            slot.cancel();
+        }
     }
 
     public void cancelBattleTimer(Long battleId) {
-        ScheduledFuture<?> future = battleTimers.remove(battleId);
-        if (future != null) {
-            future.cancel(true);
+        Slot slot = battleTimers.remove(battleId);
+        if (slot != null) {
+            slot.cancel();
         }
     }
 
+    /**
+     * Ends a battle before its timer, on the timer executor since it is only used by CSS
+     * battles once both players submitted. A no-op if the timer already expired.
+     */
+    public void endEarly(Long battleId) {
+        Slot slot = battleTimers.remove(battleId);
+        if (slot == null) return;
+        slot.cancel();
+        battleTimerExecutor.execute(() -> battleService.endBattle(battleId));
+    }
+
     public void cancelReadinessTimer(Long battleId) {
-        ScheduledFuture<?> future = readinessTimers.remove(battleId);
-        if (future != null) {
-            future.cancel(true);
+        Slot slot = readinessTimers.remove(battleId);
+        if (slot != null) {
+            slot.cancel();
         }
     }
 
     public boolean isBattleRunning(Long battleId) {
         return battleTimers.containsKey(battleId);
     }
-
-//    public void forceEndBattleTimer(Long battleId) {
-//        cancelBattleTimer(battleId);
-//        battleService.endBattle(battleId);
-//    }
 }
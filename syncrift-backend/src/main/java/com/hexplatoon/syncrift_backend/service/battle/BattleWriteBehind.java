@@ -0,0 +1,260 @@
+package com.hexplatoon.syncrift_backend.service.battle;
+
+import com.hexplatoon.syncrift_backend.entity.Battle;
+import com.hexplatoon.syncrift_backend.entity.User;
+import com.hexplatoon.syncrift_backend.repository.BattleRepository;
+import com.hexplatoon.syncrift_backend.repository.UserRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists the battle lifecycle writes (battle rows and player status). In
+ * {@link Mode#GROUP_COMMIT} the writes are queued and a single writer commits them together,
+ * when the batch is full or the flush interval after its first write has passed. Several
+ * writes to the same battle or user in one batch collapse to the last one, and the battle
+ * updates go out as Hibernate JDBC batches. In {@link Mode#SYNC} every write is made right
+ * away in the caller's transaction.
+ * <p>
+ * Group commit trades durability for fewer round trips: a crash loses at most the writes of
+ * the last flush interval.
+ */
+@Slf4j
+@Component
+public class BattleWriteBehind implements MeterBinder {
+
+    public enum Mode {
+        SYNC, GROUP_COMMIT
+    }
+
+    private sealed interface Mutation permits BattleUpdate, StatusUpdate {
+    }
+
+    /**
+     * The mutable columns of a battle, copied when the write is submitted since the cached
+     * entity keeps changing.
+     */
+    private record BattleUpdate(Long battleId, Battle.Status status, LocalDateTime startedAt,
+                                LocalDateTime updatedAt, LocalDateTime deadlineAt, String configJson,
+                                String resultJson, String winnerUsername) implements Mutation {
+
+        static BattleUpdate of(Battle battle) {
+            return new BattleUpdate(battle.getId(), battle.getStatus(), battle.getStartedAt(), battle.getUpdatedAt(),
+                    battle.getDeadlineAt(), battle.getConfigJson(), battle.getResultJson(), battle.getWinnerUsername());
+        }
+
+        void applyTo(Battle battle) {
+            battle.setStatus(status);
+            battle.setStartedAt(startedAt);
+            battle.setUpdatedAt(updatedAt);
+            battle.setDeadlineAt(deadlineAt);
+            battle.setConfigJson(configJson);
+            battle.setResultJson(resultJson);
+            battle.setWinnerUsername(winnerUsername);
+        }
+    }
+
+    private record StatusUpdate(List<Long> userIds, User.UserStatus status) implements Mutation {
+    }
+
+    private final BattleRepository battleRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Executor battleWriteExecutor;
+    private final Mode mode;
+    private final long flushIntervalNanos;
+    private final int batchSize;
+    private final BlockingQueue<Mutation> queue;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private volatile boolean running = true;
+
+    private volatile Timer commitTimer;
+    private volatile DistributionSummary batchSizeSummary;
+
+    public BattleWriteBehind(BattleRepository battleRepository, UserRepository userRepository,
+                             PlatformTransactionManager transactionManager,
+                             @Qualifier("battleWriteExecutor") Executor battleWriteExecutor,
+                             @Value("${battle.persistence.mode:GROUP_COMMIT}") Mode mode,
+                             @Value("${battle.persistence.flush-interval-ms:50}") long flushIntervalMillis,
+                             @Value("${battle.persistence.batch-size:100}") int batchSize,
+                             @Value("${battle.persistence.queue-capacity:10000}") int queueCapacity) {
+        this.battleRepository = battleRepository;
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.battleWriteExecutor = battleWriteExecutor;
+        this.mode = mode;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.batchSize = batchSize;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    void start() {
+        if (mode == Mode.GROUP_COMMIT) {
+            battleWriteExecutor.execute(this::drain);
+        } else {
+            stopped.countDown();
+        }
+    }
+
+    /**
+     * Stops taking new batches and commits what is queued.
+     */
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        if (!stopped.await(10, TimeUnit.SECONDS)) {
+            log.warn("Battle writes still queued at shutdown: {}", queue.size());
+        }
+    }
+
+    /**
+     * Writes the current state of an already inserted battle.
+     */
+    public void saveBattle(Battle battle) {
+        if (mode == Mode.SYNC) {
+            battleRepository.save(battle);
+        } else {
+            enqueue(BattleUpdate.of(battle));
+        }
+    }
+
+    public void updateUserStatus(Collection<Long> userIds, User.UserStatus status) {
+        if (mode == Mode.SYNC) {
+            userRepository.updateStatus(userIds, status);
+        } else {
+            enqueue(new StatusUpdate(List.copyOf(userIds), status));
+        }
+    }
+
+    private void enqueue(Mutation mutation) {
+        if (!running) {
+            // Nothing drains the queue any more
+            commit(List.of(mutation));
+            return;
+        }
+        try {
+            // Blocks when the writer falls behind, back pressure instead of dropping writes
+            queue.put(mutation);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while queueing a battle write, writing it directly");
+            commit(List.of(mutation));
+        }
+    }
+
+    private void drain() {
+        List<Mutation> batch = new ArrayList<>(batchSize);
+        try {
+            while (running || !queue.isEmpty()) {
+                Mutation first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long wait = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || wait <= 0) break;
+                    Mutation next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                flush(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Battle writer interrupted with {} writes queued", queue.size() + batch.size());
+        } finally {
+            stopped.countDown();
+        }
+    }
+
+    private void flush(List<Mutation> batch) {
+        long start = System.nanoTime();
+        try {
+            commit(batch);
+        } catch (RuntimeException e) {
+            // One bad write must not lose the others, retry them one by one
+            log.error("Battle write batch of {} failed, retrying individually", batch.size(), e);
+            for (Mutation mutation : batch) {
+                try {
+                    commit(List.of(mutation));
+                } catch (RuntimeException retryError) {
+                    log.error("Dropping battle write {}", mutation, retryError);
+                }
+            }
+        }
+        Timer timer = commitTimer;
+        DistributionSummary sizes = batchSizeSummary;
+        if (timer != null && sizes != null) {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            sizes.record(batch.size());
+        }
+    }
+
+    /**
+     * Commits the writes in one transaction, the last write of each battle and user wins.
+     */
+    private void commit(List<Mutation> batch) {
+        Map<Long, BattleUpdate> battles = new LinkedHashMap<>();
+        Map<Long, User.UserStatus> statuses = new LinkedHashMap<>();
+        for (Mutation mutation : batch) {
+            if (mutation instanceof BattleUpdate update) {
+                battles.put(update.battleId(), update);
+            } else if (mutation instanceof StatusUpdate update) {
+                for (Long userId : update.userIds()) {
+                    statuses.put(userId, update.status());
+                }
+            }
+        }
+        Map<User.UserStatus, List<Long>> byStatus = new EnumMap<>(User.UserStatus.class);
+        statuses.forEach((userId, status) -> byStatus.computeIfAbsent(status, s -> new ArrayList<>()).add(userId));
+
+        transactionTemplate.executeWithoutResult(tx -> {
+            if (!battles.isEmpty()) {
+                // One select for the batch, the dirty entities are flushed as batched updates
+                for (Battle battle : battleRepository.findAllById(battles.keySet())) {
+                    battles.get(battle.getId()).applyTo(battle);
+                }
+            }
+            byStatus.forEach((status, userIds) -> userRepository.updateStatus(userIds, status));
+        });
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("syncrift.battle.persistence.queue.depth", queue, BlockingQueue::size)
+                .description("Battle writes waiting for the next group commit")
+                .register(registry);
+        commitTimer = Timer.builder("syncrift.battle.persistence.commit")
+                .description("Time to commit one batch of battle writes")
+                .register(registry);
+        batchSizeSummary = DistributionSummary.builder("syncrift.battle.persistence.batch.size")
+                .description("Battle writes per group commit")
+                .register(registry);
+    }
+}
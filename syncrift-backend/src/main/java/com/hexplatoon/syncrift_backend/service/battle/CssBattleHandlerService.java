@@ -6,49 +6,61 @@ import com.hexplatoon.syncrift_backend.dto.battle.config.CssConfig;
 import com.hexplatoon.syncrift_backend.entity.Battle;
 import com.hexplatoon.syncrift_backend.entity.Image;
 import com.hexplatoon.syncrift_backend.repository.ImageRepository;
-import org.bytedeco.javacpp.BytePointer;
-import org.bytedeco.opencv.global.opencv_core;
-import org.bytedeco.opencv.global.opencv_imgcodecs;
-import org.bytedeco.opencv.global.opencv_imgproc;
-import org.bytedeco.opencv.opencv_core.Mat;
-import org.bytedeco.opencv.opencv_core.Scalar;
+import com.hexplatoon.syncrift_backend.service.battle.css.BrowserPool;
+import com.hexplatoon.syncrift_backend.service.battle.css.CssTargetIndex;
+import com.hexplatoon.syncrift_backend.service.battle.css.TargetImageCache;
+import com.hexplatoon.syncrift_backend.service.battle.css.similarity.GrayImage;
+import com.hexplatoon.syncrift_backend.service.battle.css.similarity.ImageSimilarity;
+import com.hexplatoon.syncrift_backend.service.battle.replay.ReplayJournal;
 import org.openqa.selenium.OutputType;
-import org.openqa.selenium.TakesScreenshot;
-import org.openqa.selenium.WebDriver;
-import org.openqa.selenium.chrome.ChromeDriver;
-import org.openqa.selenium.chrome.ChromeOptions;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayOutputStream;
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.Base64;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-
-import static org.bytedeco.opencv.global.opencv_imgproc.COLOR_BGR2GRAY;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
 @Service
 public class CssBattleHandlerService {
 
     private final BattleTimerService battleTimerService;
+    private final BrowserPool browserPool;
+    private final TargetImageCache targetImageCache;
+    private final ImageSimilarity imageSimilarity;
+    private final Executor cssScoringExecutor;
+    private final CssTargetIndex cssTargetIndex;
+    private final Image.Difficulty targetDifficulty;
+    private final ReplayJournal replayJournal;
     private ImageRepository imageRepository;
     private BattleService battleService;
 
     // Use @Lazy to avoid circular dependencies if BattleService depends on this service
-    CssBattleHandlerService(@Lazy BattleService battleService, ImageRepository imageRepository, BattleTimerService battleTimerService) {
+    CssBattleHandlerService(@Lazy BattleService battleService, ImageRepository imageRepository,
+                            BattleTimerService battleTimerService, BrowserPool browserPool,
+                            TargetImageCache targetImageCache, ImageSimilarity imageSimilarity,
+                            @Qualifier("cssScoringExecutor") Executor cssScoringExecutor,
+                            CssTargetIndex cssTargetIndex, ReplayJournal replayJournal,
+                            @Value("${css.target.difficulty:}") String targetDifficulty) {
         this.battleService = battleService;
         this.imageRepository = imageRepository;
         this.battleTimerService = battleTimerService;
+        this.browserPool = browserPool;
+        this.targetImageCache = targetImageCache;
+        this.imageSimilarity = imageSimilarity;
+        this.cssScoringExecutor = cssScoringExecutor;
+        this.cssTargetIndex = cssTargetIndex;
+        this.replayJournal = replayJournal;
+        // Blank picks over every difficulty, by weight
+        this.targetDifficulty = targetDifficulty.isBlank() ? null : Image.Difficulty.valueOf(targetDifficulty.trim().toUpperCase());
     }
 
     private final Map<Long, Config> configMap = new ConcurrentHashMap<>();
@@ -56,14 +68,27 @@ public class CssBattleHandlerService {
     private final Map<Long, Map<String, String>> userTextMap = new ConcurrentHashMap<>();
 
     /**
-     * Creates and stores a CSS battle configuration based on a random image.
+     * Creates and stores a CSS battle configuration based on a random image that neither
+     * player has seen recently.
      * @param battleId The ID of the battle.
      * @return The battle configuration object.
+     * @throws IllegalStateException if there is no target image to pick.
      */
     public Config getConfig(Long battleId) {
-        Image image = imageRepository.findRandomImage();
-        Integer duration = battleService.getActiveBattleById(battleId).getDuration();
+        Battle battle = battleService.getActiveBattleById(battleId);
+        List<String> players = List.of(battle.getChallenger().getUsername(), battle.getOpponent().getUsername());
+        Image image = cssTargetIndex.pick(targetDifficulty, players).orElse(null);
+        if (image == null && !cssTargetIndex.isLoaded()) {
+            // The query is only a fallback for an index that has not been loaded yet
+            image = imageRepository.findRandomImage();
+        }
+        if (image == null) {
+            throw new IllegalStateException("No CSS target image"
+                    + (targetDifficulty == null ? "" : " of difficulty " + targetDifficulty));
+        }
+        Integer duration = battle.getDuration();
         Config config = CssConfig.builder()
+                .imageId(image.getId())
                 .imageUrl(image.getCloudinaryUrl())
                 .duration(duration)
                 .colorCode(image.getColorCode())
@@ -72,6 +97,17 @@ public class CssBattleHandlerService {
         return config;
     }
 
+    /**
+     * Restores a battle running when the server stopped, from its stored config. Players
+     * submit their full code at the end, so nothing else is needed to score it.
+     * @return false if the config is not a CSS config.
+     */
+    public boolean resume(Long battleId, Config storedConfig) {
+        if (!(storedConfig instanceof CssConfig config) || config.getImageId() == null) return false;
+        configMap.put(battleId, config);
+        return true;
+    }
+
     /**
      * Saves the HTML/CSS code typed by a user for a specific battle.
      * @param battleId The ID of the battle.
@@ -86,19 +122,30 @@ public class CssBattleHandlerService {
 //        System.out.println(userTextMap.get(battleId));
         if(userTextMap.get(battleId).size() == 2 && battleTimerService.isBattleRunning(battleId)) {
             System.out.println(username + " have called the end battle method.");
-            battleTimerService.cancelBattleTimer(battleId);
-            battleService.endBattle(battleId);
+            battleTimerService.endEarly(battleId);
         }
     }
 
     /**
-     * Captures a screenshot of the user's submitted HTML/CSS code using a headless browser.
+     * Records an edit of the player's code for the battle replay.
+     * @param offset Where the edit starts in the code.
+     * @param deleted Characters removed at that offset.
+     * @param inserted Text inserted in their place.
+     */
+    public void recordEdit(Long battleId, String username, int offset, int deleted, String inserted) {
+        if (!battleTimerService.isBattleRunning(battleId)) return;
+        replayJournal.recordEdit(battleId, username, offset, deleted, inserted);
+    }
+
+    /**
+     * Captures a screenshot of the user's submitted HTML/CSS code using a pooled headless browser.
+     * The PNG never touches the disk, it is decoded straight into grayscale.
      * @param battleId The ID of the battle.
      * @param username The user's username.
-     * @return The absolute file path of the captured screenshot.
+     * @return The decoded grayscale screenshot.
      * @throws Exception if screenshot capture fails.
      */
-    public String captureScreenshot(Long battleId, String username) throws Exception {
+    public GrayImage captureScreenshot(Long battleId, String username) throws Exception {
         String htmlContent = Optional.ofNullable(userTextMap.get(battleId))
                 .map(innerMap -> innerMap.get(username))
                 .orElse(null);
@@ -107,145 +154,44 @@ public class CssBattleHandlerService {
             throw new IllegalArgumentException("No HTML content found for " + username + " in battle " + battleId);
         }
 
-        ChromeOptions options = new ChromeOptions();
-        options.addArguments("--headless", "--disable-gpu", "--window-size=400,600");
-        WebDriver driver = new ChromeDriver(options);
-
-        String screenshotPath = null;
         try {
-            // Encode the HTML content to a base64 data URI
-            byte[] htmlBytes = htmlContent.getBytes(StandardCharsets.UTF_8);
-            String base64Html = Base64.getEncoder().encodeToString(htmlBytes);
-            String encodedHtml = "data:text/html;base64," + base64Html;
-
-            driver.get(encodedHtml);
-
-            // Wait a bit to ensure rendering is complete
-            Thread.sleep(500);
-
-            // Take the screenshot and get the file
-            File screenshotFile = ((TakesScreenshot) driver).getScreenshotAs(OutputType.FILE);
-
-            // Create a unique filename using username and battleId
-            File savedFile = new File("screenshots/" + username + "_" + battleId + ".png");
-            savedFile.getParentFile().mkdirs(); // Create directory if it doesn't exist
-
-            try (FileOutputStream fos = new FileOutputStream(savedFile)) {
-                Files.copy(screenshotFile.toPath(), fos);
-            }
-            screenshotPath = savedFile.getAbsolutePath();
-
-            System.out.println("Screenshot captured for " + username + " at: " + screenshotPath);
-            return screenshotPath;
-
+            // Render on a warm pooled browser, waits for paint instead of a fixed sleep
+            byte[] png = browserPool.render(htmlContent, OutputType.BYTES);
+            return GrayImage.decode(png);
         } catch (Exception e) {
             System.err.println("Error capturing screenshot for " + username + ": " + e.getMessage());
             throw e;
-        } finally {
-            if (driver != null) {
-                driver.quit();
-            }
-        }
-    }
-
-    /**
-     * Downloads an image from a URI (local or web) and returns it as an OpenCV Mat object.
-     * @param imageUrl The URI of the image.
-     * @return The image as an OpenCV Mat.
-     * @throws IOException if the image cannot be downloaded or decoded.
-     */
-    public Mat downloadImageAsMat(String imageUrl) throws IOException {
-        if (imageUrl.startsWith("file://")) {
-            String filePath = imageUrl.substring(7);
-            Mat image = opencv_imgcodecs.imread(filePath);
-            if (image.empty()) {
-                throw new RuntimeException("❌ Failed to load image from local path: " + filePath);
-            }
-            return image;
-        } else if (imageUrl.startsWith("http://") || imageUrl.startsWith("https://")) {
-            URL url = new URL(imageUrl);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestProperty("User-Agent", "Mozilla/5.0");
-
-            ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-            try (InputStream in = connection.getInputStream()) {
-                byte[] buffer = new byte[4096];
-                int bytesRead;
-                while ((bytesRead = in.read(buffer)) != -1) {
-                    byteStream.write(buffer, 0, bytesRead);
-                }
-            }
-
-            byte[] imageBytes = byteStream.toByteArray();
-            BytePointer bytePointer = new BytePointer(imageBytes);
-            Mat image = opencv_imgcodecs.imdecode(new Mat(bytePointer), opencv_imgcodecs.IMREAD_COLOR);
-            if (image.empty()) {
-                throw new RuntimeException("❌ Failed to decode image from URL: " + imageUrl);
-            }
-            return image;
-        } else {
-            throw new IllegalArgumentException("Unsupported image URI scheme: " + imageUrl);
         }
     }
 
     /**
      * Compares a user's screenshot with the target image for a battle.
      * @param battleId The ID of the battle.
-     * @param userScreenshotPath The file path of the user's screenshot.
+     * @param screenshot The user's decoded screenshot.
      * @return A similarity score between 0 and 100.
-     * @throws IOException if an image file cannot be read.
+     * @throws IOException if the target image cannot be loaded.
      */
-    public double compareImages(Long battleId, String userScreenshotPath) throws IOException {
+    public double compareImages(Long battleId, GrayImage screenshot) throws IOException {
         CssConfig config = (CssConfig) configMap.get(battleId);
         if (config == null) {
             throw new IllegalArgumentException("Config not found for battleId: " + battleId);
         }
 
-        // Load the user's screenshot and the target image
-        Mat img1 = opencv_imgcodecs.imread(userScreenshotPath);
-        if (img1.empty()) {
-            throw new RuntimeException("❌ Failed to load user screenshot from path: " + userScreenshotPath);
-        }
-        Mat img2 = downloadImageAsMat(config.getImageUrl());
-
-        // Convert images to grayscale
-        Mat gray1 = new Mat();
-        Mat gray2 = new Mat();
-        opencv_imgproc.cvtColor(img1, gray1, COLOR_BGR2GRAY);
-        opencv_imgproc.cvtColor(img2, gray2, COLOR_BGR2GRAY);
-
-        // Resize images if dimensions don't match
-        if (gray1.size().width() != gray2.size().width() || gray1.size().height() != gray2.size().height()) {
-            opencv_imgproc.resize(gray2, gray2, gray1.size());
-        }
-
-        // Compute the absolute difference between the images
-        Mat diff = new Mat();
-        opencv_core.absdiff(gray1, gray2, diff);
-
-        // Calculate the mean of the difference to get a simple similarity score
-        Scalar mean = opencv_core.mean(diff);
-        double similarity = 100 - (mean.get(0)); // Normalize score to be a percentage
-
-        // Release Mat objects to free native memory (crucial to prevent leaks)
-        img1.release();
-        img2.release();
-        gray1.release();
-        gray2.release();
-        diff.release();
-
-        return Math.max(similarity, 0); // Ensure score is not negative
+        // The target comes decoded and resized from the cache
+        GrayImage target = targetImageCache.get(
+                config.getImageId(), config.getImageUrl(), screenshot.width(), screenshot.height());
+        return imageSimilarity.score(screenshot, target);
     }
 
     /**
      * Calculates the final score for a user, combining image similarity and time taken.
      * @param battleId The ID of the battle.
-     * @param userScreenshotPath The file path of the user's screenshot.
+     * @param screenshot The user's decoded screenshot.
      * @return The final weighted score.
      * @throws IOException if image comparison fails.
      */
-    public double finalScore(Long battleId, String userScreenshotPath) throws IOException {
-        double ssimScore = compareImages(battleId, userScreenshotPath);
+    public double finalScore(Long battleId, GrayImage screenshot) throws IOException {
+        double similarityScore = compareImages(battleId, screenshot);
         Battle battle = battleService.getActiveBattleById(battleId);
         Integer time = battle.getDuration();
 
@@ -259,15 +205,50 @@ public class CssBattleHandlerService {
         double ssimWeight = 0.9;
         double timeTakenWeight = 0.1;
 
-        double score = ssimWeight * ssimScore + timeTakenWeight * timeTaken;
+        double score = ssimWeight * similarityScore + timeTakenWeight * timeTaken;
         return score;
     }
 
+    /**
+     * Drops what is kept for a battle once it ended, scored or not.
+     */
+    public void release(Long battleId) {
+        configMap.remove(battleId);
+        userTextMap.remove(battleId);
+    }
+
+    /**
+     * Renders and scores one player's submission on the scoring executor, or on the calling
+     * thread if its queue is full, so a burst of battles ending is slower but still scored.
+     */
+    private CompletableFuture<Double> scoreAsync(Long battleId, String username) {
+        Supplier<Double> score = () -> {
+            try {
+                return finalScore(battleId, captureScreenshot(battleId, username));
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        };
+        try {
+            return CompletableFuture.supplyAsync(score, cssScoringExecutor);
+        } catch (RejectedExecutionException e) {
+            System.err.println("CSS scoring queue is full, scoring battle " + battleId + " for " + username + " inline");
+            CompletableFuture<Double> inline = new CompletableFuture<>();
+            try {
+                inline.complete(score.get());
+            } catch (CompletionException failure) {
+                inline.completeExceptionally(failure.getCause());
+            }
+            return inline;
+        }
+    }
+
     /**
      * Determines the winner of the battle by comparing the final scores.
+     * Both players are rendered and scored concurrently.
      * @param battleId The ID of the battle.
      * @return The result object containing winner and loser information.
-     * @throws IOException if there are issues during image processing or file operations.
+     * @throws IOException if there are issues during rendering or image processing.
      */
     public Result getResult(Long battleId) throws IOException {
         System.out.println("Get result of CSS called.");
@@ -275,17 +256,12 @@ public class CssBattleHandlerService {
         String challengerUsername = battle.getChallenger().getUsername();
         String opponentUsername = battle.getOpponent().getUsername();
 
-        String challengerScreenshotPath = null;
-        String opponentScreenshotPath = null;
-
         try {
-            // Capture and store the screenshot paths
-            challengerScreenshotPath = captureScreenshot(battleId, challengerUsername);
-            opponentScreenshotPath = captureScreenshot(battleId, opponentUsername);
+            CompletableFuture<Double> challengerFuture = scoreAsync(battleId, challengerUsername);
+            CompletableFuture<Double> opponentFuture = scoreAsync(battleId, opponentUsername);
 
-            // Calculate final scores using the captured screenshot paths
-            double challengerScore = finalScore(battleId, challengerScreenshotPath);
-            double opponentScore = finalScore(battleId, opponentScreenshotPath);
+            double challengerScore = challengerFuture.join();
+            double opponentScore = opponentFuture.join();
 
             String winnerUsername, loserUsername;
             double winnerScore, loserScore;
@@ -312,27 +288,10 @@ public class CssBattleHandlerService {
                     .loserScore(String.format("%.2f", loserScore) + " Points")
                     .build();
 
-        } catch (Exception e) {
-            System.err.println("Error calculating battle results for battleId " + battleId + ": " + e.getMessage());
-            throw new IOException("Failed to process battle results.", e);
-        } finally {
-            // Clean up temporary screenshot files
-            if (challengerScreenshotPath != null) {
-                try {
-                    Files.deleteIfExists(Paths.get(challengerScreenshotPath));
-                    System.out.println("Deleted temporary screenshot file: " + challengerScreenshotPath);
-                } catch (IOException e) {
-                    System.err.println("Failed to delete screenshot file: " + challengerScreenshotPath + " - " + e.getMessage());
-                }
-            }
-            if (opponentScreenshotPath != null) {
-                try {
-                    Files.deleteIfExists(Paths.get(opponentScreenshotPath));
-                    System.out.println("Deleted temporary screenshot file: " + opponentScreenshotPath);
-                } catch (IOException e) {
-                    System.err.println("Failed to delete screenshot file: " + opponentScreenshotPath + " - " + e.getMessage());
-                }
-            }
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            System.err.println("Error calculating battle results for battleId " + battleId + ": " + cause.getMessage());
+            throw new IOException("Failed to process battle results.", cause);
         }
     }
-}
\ No newline at end of file
+}
@@ -1,11 +1,20 @@
 package com.hexplatoon.syncrift_backend.service.battle;
 
-import com.github.javafaker.Faker;
+import com.hexplatoon.syncrift_backend.dto.battle.BattleSession;
 import com.hexplatoon.syncrift_backend.dto.battle.Result;
 import com.hexplatoon.syncrift_backend.dto.battle.config.Config;
 import com.hexplatoon.syncrift_backend.dto.battle.config.TypingConfig;
+import com.hexplatoon.syncrift_backend.dto.battle.progress.TypingBattleProgress;
+import com.hexplatoon.syncrift_backend.dto.battle.websocket.TypingProgressFrameDto;
 import com.hexplatoon.syncrift_backend.entity.Battle;
+import com.hexplatoon.syncrift_backend.service.battle.replay.ReplayJournal;
+import com.hexplatoon.syncrift_backend.service.battle.typing.TypingAlignment;
+import com.hexplatoon.syncrift_backend.service.battle.typing.TypingCorpus;
+import com.hexplatoon.syncrift_backend.service.battle.typing.TypingTextService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -15,133 +24,179 @@ import java.util.concurrent.ConcurrentHashMap;
 public class TypingBattleHandlerService {
 
     private final Map<Long, Config> configMap = new ConcurrentHashMap<>();
-    private final Map<Long, Map<String, String>> userTextMap = new ConcurrentHashMap<>();
     private final BattleService battleService;
-    private final Faker faker = new Faker();
-    private final Random random = new Random();
-
-    TypingBattleHandlerService(@Lazy BattleService battleService){
+    private final TypingTextService typingTextService;
+    private final SimpMessagingTemplate simpMessagingTemplate;
+    private final ReplayJournal replayJournal;
+    private final int keyFrameInterval;
+    private final int wordCount;
+    private final TypingCorpus.Tier tier;
+
+    TypingBattleHandlerService(@Lazy BattleService battleService,
+                               TypingTextService typingTextService, SimpMessagingTemplate simpMessagingTemplate,
+                               ReplayJournal replayJournal,
+                               @Value("${typing.progress.key-frame-interval:20}") int keyFrameInterval,
+                               @Value("${typing.text.word-count:150}") int wordCount,
+                               @Value("${typing.text.difficulty:MEDIUM}") TypingCorpus.Tier tier){
         this.battleService = battleService;
+        this.typingTextService = typingTextService;
+        this.simpMessagingTemplate = simpMessagingTemplate;
+        this.replayJournal = replayJournal;
+        this.keyFrameInterval = keyFrameInterval;
+        this.wordCount = wordCount;
+        this.tier = tier;
     }
 
     public Config getConfig(Long battleId) {
 
-        String text = getRandomText(150);
         Integer duration = battleService.getActiveBattleById(battleId).getDuration();
 
-        Config config = TypingConfig.builder()
-                .text(text)
-                .duration(duration)
-                .build();
+        // Stored with its seed only, the text is rebuilt when the battle is read back
+        TypingConfig config = typingTextService.newConfig(wordCount, tier, duration);
+
+        // Both players are scored against the same split of the text as their words arrive
+        String[] words = config.getText().split(" ");
+        BattleSession session = battleService.getActiveSession(battleId);
+        session.setChallengerProgress(new TypingBattleProgress(words));
+        session.setOpponentProgress(new TypingBattleProgress(words));
 
         configMap.put(battleId, config);
         return config;
     }
 
-    public void saveUserText(Long battleId, String username, String text) {
-        userTextMap.putIfAbsent(battleId, new ConcurrentHashMap<>());
-        userTextMap.get(battleId).put(username, text);
+    /**
+     * Restores a battle running when the server stopped, from its stored config. Both
+     * players start with an empty progress.
+     * @return false if the text can not be rebuilt.
+     */
+    public boolean resume(Long battleId, Config storedConfig) {
+        if (!(storedConfig instanceof TypingConfig config)) return false;
+        typingTextService.restoreText(config);
+        if (config.getText() == null) return false;
+
+        String[] words = config.getText().split(" ");
+        BattleSession session = battleService.getActiveSession(battleId);
+        session.setChallengerProgress(new TypingBattleProgress(words));
+        session.setOpponentProgress(new TypingBattleProgress(words));
+        configMap.put(battleId, config);
+        return true;
     }
 
-    public Result getResult(Long battleId) {
-        System.out.println("getResult");
-        // TODO : Faulty result calculation. No accuracy check
-        // TODO : require error checks
-        Battle battle = battleService.findBattleById(battleId);
-        Config config = configMap.remove(battle.getId());
+    /**
+     * Applies the words a player committed since their last update.
+     * @param battleId The ID of the battle.
+     * @param username The player.
+     * @param startIndex Index in the text of the first word, earlier words are kept.
+     * @param words The committed words.
+     */
+    public void updateProgress(Long battleId, String username, int startIndex, List<String> words) {
+        // Late or stray updates are dropped, the result may already be computed. Not gated on
+        // the timer: it is gone before the end task runs, after the input queued before it
+        if (!battleService.isOngoing(battleId)) return;
+        TypingBattleProgress progress = getProgress(battleId, username);
+        if (progress != null) {
+            progress.replaceFrom(startIndex, words);
+            replayJournal.recordWords(battleId, username, startIndex, words);
+        }
+    }
 
-        String challengerUsername = battle.getChallenger().getUsername();
-        String opponentUsername = battle.getOpponent().getUsername();
-        Map<String, String> textMap = userTextMap.remove(battleId);
-        String challengerText = textMap.get(challengerUsername);
-        String opponentText = textMap.get(opponentUsername);
-        String originalText = ((TypingConfig)config).getText();
-        Integer durationInSeconds = ((TypingConfig)config).getDuration();
-
-        double challengerWPM = calculateWPM(challengerText, originalText, durationInSeconds);
-        double opponentWPM = calculateWPM(opponentText, originalText, durationInSeconds);
-        String winnerUsername, loserUsername;
-        double winnerScore, loserScore;
-
-        if (challengerWPM >= opponentWPM) {
-            winnerUsername = challengerUsername;
-            loserUsername = opponentUsername;
-            winnerScore = challengerWPM;
-            loserScore = opponentWPM;
-        } else {
-            winnerUsername = opponentUsername;
-            loserUsername = challengerUsername;
-            winnerScore = opponentWPM;
-            loserScore = challengerWPM;
+    /**
+     * Keystroke update: only records the caret, the opponent sees it on the next tick.
+     */
+    public void updateCaret(Long battleId, String username, int position) {
+        if (!battleService.isOngoing(battleId)) return;
+        TypingBattleProgress progress = getProgress(battleId, username);
+        if (progress != null) {
+            progress.setCaret(position);
+            replayJournal.recordCaret(battleId, username, position);
         }
+    }
 
-        return Result.builder()
-                .winnerUsername(winnerUsername)
-                .loserUsername(loserUsername)
-                .winnerScore((int)winnerScore + " WPM")
-                .loserScore((int)loserScore + " WPM")
-                .build();
+    /**
+     * Sends each player of a running typing battle the opponent's progress, one frame per
+     * player per tick and only when it changed. Outbound traffic is at most two messages per
+     * battle per tick, however many keystrokes arrive in between.
+     */
+    @Scheduled(fixedRateString = "${typing.progress.tick-ms:100}")
+    public void broadcastProgress() {
+        for (Long battleId : configMap.keySet()) {
+            Battle battle = battleService.getActiveBattleById(battleId);
+            BattleSession session = battleService.getActiveSession(battleId);
+            if (battle == null || session == null) continue;
+            sendFrame(battleId, (TypingBattleProgress) session.getChallengerProgress(), battle.getOpponent().getUsername());
+            sendFrame(battleId, (TypingBattleProgress) session.getOpponentProgress(), battle.getChallenger().getUsername());
+        }
     }
 
-    private double calculateWPM(String typedText, String originalText, int durationInSeconds) {
-        String[] typedWords = typedText.trim().split("\\s+");
-        String[] originalWords = originalText.trim().split("\\s+");
+    private void sendFrame(Long battleId, TypingBattleProgress progress, String recipient) {
+        TypingProgressFrameDto frame = progress == null ? null : progress.nextFrame(battleId, keyFrameInterval);
+        if (frame != null) {
+            simpMessagingTemplate.convertAndSendToUser(recipient, "/topic/battle/progress", frame);
+        }
+    }
 
-        int correctWords = 0;
-        int totalWords = Math.min(typedWords.length, originalWords.length);
+    /**
+     * Final text sent by a client at the end of the battle. It replaces every word received so
+     * far, so clients that do not stream their progress are scored the same way.
+     */
+    public void saveUserText(Long battleId, String username, String text) {
+        if (text == null) return;
+        String trimmed = text.trim();
+        updateProgress(battleId, username, 0, trimmed.isEmpty() ? List.of() : Arrays.asList(trimmed.split("\\s+")));
+    }
 
-        for (int i = 0; i < totalWords; i++) {
-            if (typedWords[i].equals(originalWords[i])) {
-                correctWords++;
-            }
-        }
+    public Result getResult(Long battleId) {
+        Battle battle = battleService.getActiveBattleById(battleId);
+        BattleSession session = battleService.getActiveSession(battleId);
+        TypingConfig config = (TypingConfig) configMap.remove(battleId);
 
-        System.out.println("correctWords: " + correctWords);
+        String challengerUsername = battle.getChallenger().getUsername();
+        String opponentUsername = battle.getOpponent().getUsername();
+        TypingBattleProgress challengerProgress = (TypingBattleProgress) session.getChallengerProgress();
+        TypingBattleProgress opponentProgress = (TypingBattleProgress) session.getOpponentProgress();
+        int durationInSeconds = config.getDuration();
+
+        // Aligned as the words arrived, input stopped once the battle left ONGOING
+        TypingAlignment challenger = challengerProgress.getAlignment();
+        TypingAlignment opponent = opponentProgress.getAlignment();
+
+        // Ranked by net WPM, then accuracy, then correctly typed characters
+        Comparator<TypingAlignment> ranking = Comparator
+                .comparingDouble((TypingAlignment alignment) -> alignment.netWpm(durationInSeconds))
+                .thenComparingDouble(TypingAlignment::accuracy)
+                .thenComparingInt(TypingAlignment::matches);
+        boolean challengerWins = ranking.compare(challenger, opponent) >= 0;
+        TypingAlignment winner = challengerWins ? challenger : opponent;
+        TypingAlignment loser = challengerWins ? opponent : challenger;
 
-        // WPM calculation
-        double minutes = durationInSeconds / 60.0;
-        return correctWords / minutes;
+        return Result.builder()
+                .winnerUsername(challengerWins ? challengerUsername : opponentUsername)
+                .loserUsername(challengerWins ? opponentUsername : challengerUsername)
+                .winnerScore(formatScore(winner, durationInSeconds))
+                .loserScore(formatScore(loser, durationInSeconds))
+                .build();
     }
 
+    /**
+     * Drops what is kept for a battle once it ended, scored or not.
+     */
+    public void release(Long battleId) {
+        configMap.remove(battleId);
+    }
 
-    public String getRandomText(int minWordCount) {
-        List<String> words = new ArrayList<>();
-
-        while (words.size() < minWordCount) {
-            String sentence;
-            switch (random.nextInt(15)) {
-                case 0 -> sentence = faker.hitchhikersGuideToTheGalaxy().quote();
-                case 1 -> sentence = faker.book().title() + " by " + faker.book().author();
-                case 2 -> sentence = faker.company().catchPhrase();
-                case 3 -> sentence = faker.shakespeare().kingRichardIIIQuote();
-                case 4 -> sentence = faker.shakespeare().asYouLikeItQuote();
-                case 5 -> sentence = faker.shakespeare().hamletQuote();
-                case 6 -> sentence = faker.shakespeare().romeoAndJulietQuote();
-                case 7 -> sentence = faker.yoda().quote();
-                case 8 -> sentence = faker.chuckNorris().fact();
-                case 9 -> sentence = faker.friends().quote();
-                case 10 -> sentence = faker.gameOfThrones().quote();
-                case 11 -> sentence = faker.harryPotter().quote();
-                case 12 -> sentence = faker.lordOfTheRings().character();
-                case 13 -> sentence = faker.artist().name() + " plays " + faker.music().instrument();
-                case 14 -> sentence = faker.superhero().name() + " can " + faker.superhero().power();
-                default -> sentence = faker.educator().course();
-            }
-
-            // Clean and split the sentence into words
-            String[] rawWords = sentence.replaceAll("[.,!?':\"’;+π/0123456789%=–…‘—#()\\-]", "")
-                    .toLowerCase()
-                    .split("\\s+");
-
-            // Filter and add words <= 7 characters
-            for (String word : rawWords) {
-                if (word.length() <= 7) {
-                    words.add(word);
-                    if (words.size() >= minWordCount) break;
-                }
-            }
+    private TypingBattleProgress getProgress(Long battleId, String username) {
+        Battle battle = battleService.getActiveBattleById(battleId);
+        BattleSession session = battleService.getActiveSession(battleId);
+        if (battle == null || session == null) return null;
+        if (username.equals(battle.getChallenger().getUsername())) {
+            return (TypingBattleProgress) session.getChallengerProgress();
+        } else if (username.equals(battle.getOpponent().getUsername())) {
+            return (TypingBattleProgress) session.getOpponentProgress();
         }
+        return null;
+    }
 
-        return String.join(" ", words).trim();
+    private static String formatScore(TypingAlignment alignment, int durationInSeconds) {
+        return (int) alignment.netWpm(durationInSeconds) + " WPM (" + Math.round(alignment.accuracy()) + "%)";
     }
 }
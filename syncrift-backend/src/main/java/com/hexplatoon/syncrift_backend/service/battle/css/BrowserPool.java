@@ -0,0 +1,261 @@
+package com.hexplatoon.syncrift_backend.service.battle.css;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.support.ui.WebDriverWait;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of warm headless Chrome sessions used to render CSS battle submissions.
+ * <p>
+ * Sessions are launched once and reused across renders. Each render borrows a session,
+ * waits on a real readiness signal (document.readyState plus two animation frames) and
+ * resets the page afterwards. Sessions that fail a health check or hit the render limit
+ * are quit and replaced.
+ */
+@Slf4j
+@Component
+public class BrowserPool implements MeterBinder {
+
+    public static final int VIEWPORT_WIDTH = 400;
+    public static final int VIEWPORT_HEIGHT = 600;
+
+    // Resolves once fonts are loaded and two frames have been painted after that
+    private static final String PAINT_COMPLETE_SCRIPT = """
+            const done = arguments[arguments.length - 1];
+            const fonts = document.fonts ? document.fonts.ready : Promise.resolve();
+            fonts.then(() => requestAnimationFrame(() => requestAnimationFrame(() => done(true))));
+            """;
+
+    private final int maxSize;
+    private final int warmSize;
+    private final long borrowTimeoutMillis;
+    private final int maxRendersPerBrowser;
+    private final Duration readyTimeout;
+
+    private final BlockingQueue<PooledBrowser> idle = new LinkedBlockingQueue<>();
+    private final Semaphore leases;
+    private final AtomicInteger liveBrowsers = new AtomicInteger();
+    private final AtomicInteger recycledBrowsers = new AtomicInteger();
+
+    private volatile boolean closed;
+    private volatile Timer waitTimer;
+    private volatile Counter recycleCounter;
+
+    public BrowserPool(@Value("${css.render.pool.max-size:4}") int maxSize,
+                       @Value("${css.render.pool.warm-size:1}") int warmSize,
+                       @Value("${css.render.pool.borrow-timeout-ms:10000}") long borrowTimeoutMillis,
+                       @Value("${css.render.pool.max-renders-per-browser:200}") int maxRendersPerBrowser,
+                       @Value("${css.render.ready-timeout-ms:3000}") long readyTimeoutMillis) {
+        this.maxSize = maxSize;
+        this.warmSize = Math.min(warmSize, maxSize);
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.maxRendersPerBrowser = maxRendersPerBrowser;
+        this.readyTimeout = Duration.ofMillis(readyTimeoutMillis);
+        this.leases = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Launches the warm sessions in the background so a missing Chrome install never blocks startup.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < warmSize && !closed; i++) {
+                try {
+                    idle.offer(launch());
+                } catch (WebDriverException e) {
+                    log.warn("Could not pre-launch headless browser: {}", e.getMessage());
+                    return;
+                }
+            }
+            log.info("Browser pool warmed with {} session(s)", idle.size());
+        });
+    }
+
+    /**
+     * Renders the given HTML document at the pool's viewport and captures the page.
+     *
+     * @param html       the HTML/CSS document to render
+     * @param outputType how the screenshot should be returned
+     * @return the screenshot
+     * @throws TimeoutException if no browser became free within the borrow timeout
+     */
+    public <X> X render(String html, OutputType<X> outputType) throws TimeoutException, InterruptedException {
+        PooledBrowser browser = borrow();
+        boolean reusable = false;
+        try {
+            WebDriver driver = browser.driver;
+            driver.get("data:text/html;base64," +
+                    Base64.getEncoder().encodeToString(html.getBytes(StandardCharsets.UTF_8)));
+            awaitPaint(driver);
+
+            X screenshot = ((TakesScreenshot) driver).getScreenshotAs(outputType);
+            reusable = true;
+            return screenshot;
+        } finally {
+            release(browser, reusable);
+        }
+    }
+
+    private PooledBrowser borrow() throws TimeoutException, InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("Browser pool is shut down");
+        }
+        long start = System.nanoTime();
+        if (!leases.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+            throw new TimeoutException("No headless browser available within " + borrowTimeoutMillis + " ms");
+        }
+        Timer timer = waitTimer;
+        if (timer != null) {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        try {
+            PooledBrowser browser;
+            while ((browser = idle.poll()) != null) {
+                if (browser.isHealthy()) {
+                    return browser;
+                }
+                log.warn("Discarding unhealthy headless browser after {} renders", browser.renders);
+                recycle(browser);
+            }
+            return launch();
+        } catch (RuntimeException e) {
+            leases.release();
+            throw e;
+        }
+    }
+
+    private void release(PooledBrowser browser, boolean reusable) {
+        try {
+            browser.renders++;
+            if (closed || !reusable || browser.renders >= maxRendersPerBrowser || !browser.reset()) {
+                recycle(browser);
+            } else {
+                idle.offer(browser);
+            }
+        } finally {
+            leases.release();
+        }
+    }
+
+    private void awaitPaint(WebDriver driver) {
+        JavascriptExecutor js = (JavascriptExecutor) driver;
+        new WebDriverWait(driver, readyTimeout)
+                .until(d -> "complete".equals(js.executeScript("return document.readyState")));
+        js.executeAsyncScript(PAINT_COMPLETE_SCRIPT);
+    }
+
+    private PooledBrowser launch() {
+        ChromeOptions options = new ChromeOptions();
+        options.addArguments("--headless", "--disable-gpu", "--window-size=" + VIEWPORT_WIDTH + "," + VIEWPORT_HEIGHT,
+                "--hide-scrollbars", "--disable-extensions", "--no-first-run");
+        WebDriver driver = new ChromeDriver(options);
+        driver.manage().timeouts().scriptTimeout(readyTimeout);
+        driver.manage().timeouts().pageLoadTimeout(readyTimeout);
+        liveBrowsers.incrementAndGet();
+        return new PooledBrowser(driver);
+    }
+
+    private void recycle(PooledBrowser browser) {
+        browser.quit();
+        liveBrowsers.decrementAndGet();
+        recycledBrowsers.incrementAndGet();
+        Counter counter = recycleCounter;
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+        PooledBrowser browser;
+        while ((browser = idle.poll()) != null) {
+            browser.quit();
+            liveBrowsers.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("syncrift.css.browser.pool.size", liveBrowsers, AtomicInteger::get)
+                .description("Headless browser sessions currently launched")
+                .register(registry);
+        Gauge.builder("syncrift.css.browser.pool.idle", idle, BlockingQueue::size)
+                .description("Headless browser sessions waiting for a render")
+                .register(registry);
+        Gauge.builder("syncrift.css.browser.pool.max", this, pool -> pool.maxSize)
+                .description("Upper bound on headless browser sessions")
+                .register(registry);
+        waitTimer = Timer.builder("syncrift.css.browser.pool.wait")
+                .description("Time spent waiting for a free headless browser")
+                .register(registry);
+        recycleCounter = Counter.builder("syncrift.css.browser.pool.recycled")
+                .description("Headless browser sessions quit and replaced")
+                .register(registry);
+    }
+
+    private static final class PooledBrowser {
+
+        private final WebDriver driver;
+        private int renders;
+
+        private PooledBrowser(WebDriver driver) {
+            this.driver = driver;
+        }
+
+        private boolean isHealthy() {
+            try {
+                driver.getWindowHandle();
+                return true;
+            } catch (WebDriverException e) {
+                return false;
+            }
+        }
+
+        private boolean reset() {
+            try {
+                driver.get("about:blank");
+                return true;
+            } catch (WebDriverException e) {
+                return false;
+            }
+        }
+
+        private void quit() {
+            try {
+                driver.quit();
+            } catch (WebDriverException e) {
+                log.warn("Failed to quit headless browser: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.hexplatoon.syncrift_backend.service.battle.css;
+
+import com.hexplatoon.syncrift_backend.entity.Image;
+import com.hexplatoon.syncrift_backend.event.ImageUploadedEvent;
+import com.hexplatoon.syncrift_backend.repository.ImageRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * In-memory index of the CSS battle target ids, by difficulty, so a battle start picks its
+ * target in O(1) instead of sorting the images table. Each image is drawn with a
+ * probability proportional to the weight of its difficulty, and targets either player saw
+ * in their last few CSS battles are avoided while the pool allows it.
+ * <p>
+ * The index is rebuilt from the database at startup and periodically, and new uploads are
+ * added as soon as their {@link ImageUploadedEvent} arrives.
+ */
+@Slf4j
+@Component
+public class CssTargetIndex implements MeterBinder {
+
+    private static final Image.Difficulty[] DIFFICULTIES = Image.Difficulty.values();
+    // Redraws before accepting a recently seen target, only tiny pools need them all
+    private static final int MAX_ATTEMPTS = 8;
+
+    private final ImageRepository imageRepository;
+    private final long[] weights = new long[DIFFICULTIES.length];
+    private final int recentWindow;
+    private final Map<String, RecentTargets> recentByUser = new ConcurrentHashMap<>();
+
+    // Immutable, replaced as a whole, so picks never lock
+    private volatile long[][] idsByDifficulty = new long[DIFFICULTIES.length][0];
+    private volatile boolean loaded;
+
+    public CssTargetIndex(ImageRepository imageRepository,
+                          @Value("${css.target.weight.easy:1}") long easyWeight,
+                          @Value("${css.target.weight.medium:1}") long mediumWeight,
+                          @Value("${css.target.weight.hard:1}") long hardWeight,
+                          @Value("${css.target.recent-window:10}") int recentWindow) {
+        this.imageRepository = imageRepository;
+        this.weights[Image.Difficulty.EASY.ordinal()] = Math.max(easyWeight, 0);
+        this.weights[Image.Difficulty.MEDIUM.ordinal()] = Math.max(mediumWeight, 0);
+        this.weights[Image.Difficulty.HARD.ordinal()] = Math.max(hardWeight, 0);
+        this.recentWindow = recentWindow;
+    }
+
+    /**
+     * Picks a target for the given players and records it as seen by them.
+     * @param difficulty Only pick targets of this difficulty, or null for a weighted pick over all of them.
+     * @param usernames The players of the battle.
+     * @return The target, empty if there is no image of that difficulty.
+     */
+    public Optional<Image> pick(Image.Difficulty difficulty, Collection<String> usernames) {
+        while (true) {
+            long[][] snapshot = idsByDifficulty;
+            long id = -1;
+            for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+                id = draw(snapshot, difficulty);
+                if (id < 0 || !seenByAny(usernames, id)) {
+                    break;
+                }
+            }
+            if (id < 0) {
+                return Optional.empty();
+            }
+            Optional<Image> image = imageRepository.findById(id);
+            if (image.isEmpty()) {
+                // Deleted since the last refresh
+                remove(id);
+                continue;
+            }
+            for (String username : usernames) {
+                recentByUser.computeIfAbsent(username, u -> new RecentTargets(recentWindow)).add(id);
+            }
+            return image;
+        }
+    }
+
+    /**
+     * Whether the index was built from the database at least once. Before that an empty
+     * pick says nothing about the images table.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public int size() {
+        int size = 0;
+        for (long[] ids : idsByDifficulty) {
+            size += ids.length;
+        }
+        return size;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${css.target.index.refresh-ms:300000}",
+            fixedDelayString = "${css.target.index.refresh-ms:300000}")
+    public synchronized void refresh() {
+        long[][] ids = new long[DIFFICULTIES.length][];
+        int[] counts = new int[DIFFICULTIES.length];
+        // Under the lock so an upload event cannot be overwritten by an older snapshot
+        List<ImageRepository.TargetRef> refs = imageRepository.findAllTargetRefs();
+        for (int d = 0; d < ids.length; d++) {
+            ids[d] = new long[refs.size()];
+        }
+        for (ImageRepository.TargetRef ref : refs) {
+            int d = ordinal(ref.getDifficulty());
+            ids[d][counts[d]++] = ref.getId();
+        }
+        for (int d = 0; d < ids.length; d++) {
+            ids[d] = Arrays.copyOf(ids[d], counts[d]);
+        }
+        idsByDifficulty = ids;
+        loaded = true;
+        log.debug("CSS target index refreshed with {} image(s)", refs.size());
+    }
+
+    @EventListener
+    public synchronized void onImageUploaded(ImageUploadedEvent event) {
+        int d = ordinal(event.difficulty());
+        long id = event.imageId();
+        long[][] current = idsByDifficulty;
+        for (long existing : current[d]) {
+            if (existing == id) return;
+        }
+        long[][] next = current.clone();
+        next[d] = Arrays.copyOf(current[d], current[d].length + 1);
+        next[d][current[d].length] = id;
+        idsByDifficulty = next;
+    }
+
+    private synchronized void remove(long id) {
+        long[][] next = idsByDifficulty.clone();
+        for (int d = 0; d < next.length; d++) {
+            next[d] = Arrays.stream(next[d]).filter(existing -> existing != id).toArray();
+        }
+        idsByDifficulty = next;
+    }
+
+    /**
+     * Draws an id: picks a difficulty with probability weight * count, then an id of it
+     * uniformly. Returns -1 if nothing can be drawn.
+     */
+    private long draw(long[][] snapshot, Image.Difficulty difficulty) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (difficulty != null) {
+            long[] ids = snapshot[difficulty.ordinal()];
+            return ids.length == 0 ? -1 : ids[random.nextInt(ids.length)];
+        }
+        long total = 0;
+        for (int d = 0; d < snapshot.length; d++) {
+            total += weights[d] * snapshot[d].length;
+        }
+        if (total <= 0) {
+            return -1;
+        }
+        long r = random.nextLong(total);
+        for (int d = 0; d < snapshot.length; d++) {
+            long bucket = weights[d] * snapshot[d].length;
+            if (r < bucket) {
+                return snapshot[d][(int) (r / weights[d])];
+            }
+            r -= bucket;
+        }
+        return -1;
+    }
+
+    private boolean seenByAny(Collection<String> usernames, long id) {
+        for (String username : usernames) {
+            RecentTargets recent = recentByUser.get(username);
+            if (recent != null && recent.contains(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int ordinal(Image.Difficulty difficulty) {
+        return (difficulty == null ? Image.Difficulty.MEDIUM : difficulty).ordinal();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("syncrift.css.target.index.size", this, CssTargetIndex::size)
+                .description("CSS battle targets available for selection")
+                .register(registry);
+    }
+
+    /**
+     * The last few targets a player got, as a ring buffer.
+     */
+    private static final class RecentTargets {
+
+        private final long[] ids;
+        private int next;
+
+        RecentTargets(int size) {
+            this.ids = new long[Math.max(size, 1)];
+            Arrays.fill(ids, -1);
+        }
+
+        synchronized boolean contains(long id) {
+            for (long seen : ids) {
+                if (seen == id) return true;
+            }
+            return false;
+        }
+
+        synchronized void add(long id) {
+            ids[next] = id;
+            next = (next + 1) % ids.length;
+        }
+    }
+}
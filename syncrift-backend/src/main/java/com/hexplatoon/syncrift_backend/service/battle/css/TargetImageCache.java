@@ -0,0 +1,252 @@
+package com.hexplatoon.syncrift_backend.service.battle.css;
+
+import com.hexplatoon.syncrift_backend.entity.Image;
+import com.hexplatoon.syncrift_backend.repository.ImageRepository;
+import com.hexplatoon.syncrift_backend.service.battle.css.similarity.GrayImage;
+import com.hexplatoon.syncrift_backend.service.image.TargetFeatureExtractor;
+import com.hexplatoon.syncrift_backend.service.image.TargetFeatureStore;
+import com.hexplatoon.syncrift_backend.service.image.TargetFeatures;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded LRU cache of decoded CSS battle targets, stored as grayscale images already
+ * resized to the render size they are compared at. Misses are served from the features
+ * stored at upload time; only images without stored features are downloaded, and their
+ * features are stored on the way. Concurrent misses for the same key share a single load.
+ */
+@Slf4j
+@Component
+public class TargetImageCache implements MeterBinder {
+
+    private final long maxBytes;
+    private final boolean prewarm;
+    private final int prewarmLimit;
+    private final ImageRepository imageRepository;
+    private final TargetFeatureStore featureStore;
+    private final TargetFeatureExtractor featureExtractor;
+
+    // Access ordered, guarded by this
+    private final LinkedHashMap<Key, GrayImage> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<Key, CompletableFuture<GrayImage>> loading = new ConcurrentHashMap<>();
+    private final AtomicLong cachedBytes = new AtomicLong();
+
+    private volatile Counter hitCounter;
+    private volatile Counter missCounter;
+
+    public TargetImageCache(ImageRepository imageRepository,
+                            TargetFeatureStore featureStore,
+                            TargetFeatureExtractor featureExtractor,
+                            @Value("${css.target-cache.max-mb:64}") long maxMegabytes,
+                            @Value("${css.target-cache.prewarm:false}") boolean prewarm,
+                            @Value("${css.target-cache.prewarm-limit:50}") int prewarmLimit) {
+        this.imageRepository = imageRepository;
+        this.featureStore = featureStore;
+        this.featureExtractor = featureExtractor;
+        this.maxBytes = maxMegabytes * 1024 * 1024;
+        this.prewarm = prewarm;
+        this.prewarmLimit = prewarmLimit;
+    }
+
+    /**
+     * Returns the grayscale target for the given image, resized to {@code width x height}.
+     * The returned image is shared and must not be modified.
+     *
+     * @param imageId  id of the target image, or null for images not known to the repository
+     * @param imageUrl URI the image is downloaded from on a miss
+     * @throws IOException if the image can not be downloaded or decoded
+     */
+    public GrayImage get(Long imageId, String imageUrl, int width, int height) throws IOException {
+        if (imageId == null) {
+            increment(missCounter);
+            return loadGray(null, imageUrl, width, height);
+        }
+
+        Key key = new Key(imageId, width, height);
+        synchronized (this) {
+            GrayImage cached = entries.get(key);
+            if (cached != null) {
+                increment(hitCounter);
+                return cached;
+            }
+        }
+
+        CompletableFuture<GrayImage> pending = new CompletableFuture<>();
+        CompletableFuture<GrayImage> inFlight = loading.putIfAbsent(key, pending);
+        if (inFlight != null) {
+            try {
+                GrayImage loaded = inFlight.join();
+                increment(hitCounter);
+                return loaded;
+            } catch (CompletionException e) {
+                throw new IOException("Failed to load target image " + imageId, e.getCause());
+            }
+        }
+        return load(key, imageUrl, pending);
+    }
+
+    private GrayImage load(Key key, String imageUrl, CompletableFuture<GrayImage> pending) throws IOException {
+        increment(missCounter);
+        try {
+            GrayImage image = loadGray(key.imageId(), imageUrl, key.width(), key.height());
+            synchronized (this) {
+                GrayImage previous = entries.put(key, image);
+                if (previous != null) {
+                    cachedBytes.addAndGet(-previous.sizeInBytes());
+                }
+                cachedBytes.addAndGet(image.sizeInBytes());
+                evictOverBudget();
+            }
+            pending.complete(image);
+            return image;
+        } catch (IOException | RuntimeException e) {
+            pending.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, pending);
+        }
+    }
+
+    // Caller holds the lock
+    private void evictOverBudget() {
+        Iterator<GrayImage> eldest = entries.values().iterator();
+        while (cachedBytes.get() > maxBytes && entries.size() > 1 && eldest.hasNext()) {
+            GrayImage image = eldest.next();
+            eldest.remove();
+            cachedBytes.addAndGet(-image.sizeInBytes());
+        }
+    }
+
+    /**
+     * Returns the target in grayscale at the given size, from the stored features when there
+     * are any, otherwise by downloading the image from its URI (local or web).
+     */
+    private GrayImage loadGray(Long imageId, String imageUrl, int width, int height) throws IOException {
+        if (imageId != null) {
+            Optional<TargetFeatures> stored = featureStore.find(imageId);
+            if (stored.isPresent()) {
+                return stored.get().grayAt(width, height);
+            }
+        }
+
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(download(imageUrl)));
+        if (decoded == null) {
+            throw new IOException("Failed to decode image from URL: " + imageUrl);
+        }
+        if (imageId == null) {
+            return GrayImage.of(decoded).resize(width, height);
+        }
+
+        // Backfill for images uploaded before features were stored
+        TargetFeatures features = featureExtractor.extract(decoded);
+        try {
+            featureStore.save(imageId, features);
+        } catch (RuntimeException e) {
+            log.warn("Could not store features of image {}: {}", imageId, e.getMessage());
+        }
+        return features.grayAt(width, height);
+    }
+
+    /**
+     * Downloads the encoded bytes of an image from a URI (local or web).
+     * @param imageUrl The URI of the image.
+     * @return The encoded image.
+     * @throws IOException if the image cannot be downloaded.
+     */
+    private byte[] download(String imageUrl) throws IOException {
+        if (imageUrl.startsWith("file://")) {
+            return Files.readAllBytes(Path.of(imageUrl.substring(7)));
+        } else if (imageUrl.startsWith("http://") || imageUrl.startsWith("https://")) {
+            HttpURLConnection connection = (HttpURLConnection) new URL(imageUrl).openConnection();
+            connection.setRequestProperty("User-Agent", "Mozilla/5.0");
+            try (InputStream in = connection.getInputStream()) {
+                return in.readAllBytes();
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported image URI scheme: " + imageUrl);
+        }
+    }
+
+    /**
+     * Loads the most recently uploaded targets at the canonical render size, off the startup thread.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void prewarm() {
+        if (!prewarm) return;
+        CompletableFuture.runAsync(() -> {
+            int warmed = 0;
+            for (Image image : imageRepository.findAll(
+                    PageRequest.of(0, prewarmLimit, Sort.by(Sort.Direction.DESC, "uploadedAt")))) {
+                try {
+                    get(image.getId(), image.getCloudinaryUrl(), BrowserPool.VIEWPORT_WIDTH, BrowserPool.VIEWPORT_HEIGHT);
+                    warmed++;
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Could not pre-warm target image {}: {}", image.getId(), e.getMessage());
+                }
+            }
+            log.info("Target image cache pre-warmed with {} image(s)", warmed);
+        });
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        cachedBytes.set(0);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        hitCounter = Counter.builder("syncrift.css.target.cache.hits")
+                .description("Target image lookups served from memory")
+                .register(registry);
+        missCounter = Counter.builder("syncrift.css.target.cache.misses")
+                .description("Target image lookups that had to download and decode")
+                .register(registry);
+        Gauge.builder("syncrift.css.target.cache.bytes", cachedBytes, AtomicLong::get)
+                .description("Memory held by cached target images")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("syncrift.css.target.cache.entries", this, TargetImageCache::size)
+                .description("Decoded target images currently cached")
+                .register(registry);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static void increment(Counter counter) {
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    public record Key(long imageId, int width, int height) {
+    }
+}
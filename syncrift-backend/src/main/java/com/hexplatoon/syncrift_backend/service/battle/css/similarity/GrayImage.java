@@ -0,0 +1,130 @@
+package com.hexplatoon.syncrift_backend.service.battle.css.similarity;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * 8-bit grayscale image on the Java heap, row major with no padding. This is the format
+ * every {@link ImageSimilarity} implementation scores, so decoding and scoring never need
+ * native memory.
+ */
+public final class GrayImage {
+
+    private final int width;
+    private final int height;
+    private final byte[] pixels;
+
+    public GrayImage(int width, int height, byte[] pixels) {
+        if (width <= 0 || height <= 0 || pixels.length != width * height) {
+            throw new IllegalArgumentException("Expected " + width + "x" + height + " pixels, got " + pixels.length);
+        }
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    /**
+     * Decodes a PNG/JPEG/... into grayscale.
+     *
+     * @throws IOException if the bytes are not an image ImageIO can read
+     */
+    public static GrayImage decode(byte[] encoded) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(encoded));
+        if (image == null) {
+            throw new IOException("Unsupported or corrupt image (" + encoded.length + " bytes)");
+        }
+        return of(image);
+    }
+
+    /**
+     * Converts to grayscale with the BT.601 weights OpenCV uses for COLOR_BGR2GRAY, alpha is ignored.
+     */
+    public static GrayImage of(BufferedImage image) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        byte[] gray = new byte[w * h];
+
+        if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            image.getRaster().getDataElements(0, 0, w, h, gray);
+            return new GrayImage(w, h, gray);
+        }
+
+        int[] row = new int[w];
+        for (int y = 0; y < h; y++) {
+            image.getRGB(0, y, w, 1, row, 0, w);
+            int offset = y * w;
+            for (int x = 0; x < w; x++) {
+                int rgb = row[x];
+                int r = (rgb >> 16) & 0xFF;
+                int g = (rgb >> 8) & 0xFF;
+                int b = rgb & 0xFF;
+                // Same 14-bit fixed point coefficients as cv::cvtColor
+                gray[offset + x] = (byte) ((r * 4899 + g * 9617 + b * 1868 + 8192) >> 14);
+            }
+        }
+        return new GrayImage(w, h, gray);
+    }
+
+    /**
+     * Bilinear resize with pixel-center alignment (equivalent to cv::resize with INTER_LINEAR).
+     * Returns this image if it already has the requested size.
+     */
+    public GrayImage resize(int newWidth, int newHeight) {
+        if (newWidth == width && newHeight == height) {
+            return this;
+        }
+        byte[] out = new byte[newWidth * newHeight];
+        double scaleX = (double) width / newWidth;
+        double scaleY = (double) height / newHeight;
+
+        // Horizontal source taps are the same for every row
+        int[] x0 = new int[newWidth];
+        int[] fx = new int[newWidth];
+        for (int x = 0; x < newWidth; x++) {
+            double sx = Math.min(Math.max((x + 0.5) * scaleX - 0.5, 0), width - 1);
+            x0[x] = (int) sx;
+            fx[x] = (int) Math.round((sx - x0[x]) * 256);
+        }
+
+        for (int y = 0; y < newHeight; y++) {
+            double sy = Math.min(Math.max((y + 0.5) * scaleY - 0.5, 0), height - 1);
+            int y0 = (int) sy;
+            int y1 = Math.min(y0 + 1, height - 1);
+            int fy = (int) Math.round((sy - y0) * 256);
+            int top = y0 * width;
+            int bottom = y1 * width;
+            int offset = y * newWidth;
+
+            for (int x = 0; x < newWidth; x++) {
+                int xa = x0[x];
+                int xb = Math.min(xa + 1, width - 1);
+                int f = fx[x];
+                int t = (pixels[top + xa] & 0xFF) * (256 - f) + (pixels[top + xb] & 0xFF) * f;
+                int b = (pixels[bottom + xa] & 0xFF) * (256 - f) + (pixels[bottom + xb] & 0xFF) * f;
+                out[offset + x] = (byte) ((t * (256 - fy) + b * fy + (1 << 15)) >> 16);
+            }
+        }
+        return new GrayImage(newWidth, newHeight, out);
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    /**
+     * Backing array, shared and not copied. Callers must treat it as read-only.
+     */
+    public byte[] pixels() {
+        return pixels;
+    }
+
+    public long sizeInBytes() {
+        return pixels.length;
+    }
+}
@@ -0,0 +1,15 @@
+package com.hexplatoon.syncrift_backend.service.battle.css.similarity;
+
+/**
+ * Scores how closely a rendered CSS submission matches the battle target.
+ * Implementations must be thread safe, both players of a battle are scored concurrently.
+ */
+public interface ImageSimilarity {
+
+    /**
+     * @param rendered screenshot of the submission
+     * @param target   battle target, already resized to the size of {@code rendered}
+     * @return similarity between 0 (unrelated) and 100 (identical)
+     */
+    double score(GrayImage rendered, GrayImage target);
+}
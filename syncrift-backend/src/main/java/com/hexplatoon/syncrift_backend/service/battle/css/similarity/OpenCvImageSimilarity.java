@@ -0,0 +1,31 @@
+package com.hexplatoon.syncrift_backend.service.battle.css.similarity;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Scalar;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC1;
+
+/**
+ * Legacy score: 100 minus the mean absolute gray level difference, computed with OpenCV.
+ * Kept as a fallback for JVMs started without the Vector API module.
+ */
+public class OpenCvImageSimilarity implements ImageSimilarity {
+
+    @Override
+    public double score(GrayImage rendered, GrayImage target) {
+        if (rendered.width() != target.width() || rendered.height() != target.height()) {
+            throw new IllegalArgumentException("Images must have the same size");
+        }
+        try (BytePointer renderedData = new BytePointer(rendered.pixels());
+             BytePointer targetData = new BytePointer(target.pixels());
+             Mat gray1 = new Mat(rendered.height(), rendered.width(), CV_8UC1, renderedData);
+             Mat gray2 = new Mat(target.height(), target.width(), CV_8UC1, targetData);
+             Mat diff = new Mat()) {
+            opencv_core.absdiff(gray1, gray2, diff);
+            Scalar mean = opencv_core.mean(diff);
+            return Math.max(100 - mean.get(0), 0);
+        }
+    }
+}
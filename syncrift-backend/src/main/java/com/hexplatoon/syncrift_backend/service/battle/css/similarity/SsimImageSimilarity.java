@@ -0,0 +1,249 @@
+package com.hexplatoon.syncrift_backend.service.battle.css.similarity;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Pure-Java SSIM / multi-scale SSIM on the Vector API.
+ * <p>
+ * Each scale is split into bands of output rows that are scored independently on a
+ * ForkJoinPool; small scales are scored on the calling thread. The pyramid and the band
+ * scratch planes live in thread-local buffers, so after warm-up a score allocates only a
+ * handful of task objects.
+ */
+public class SsimImageSimilarity implements ImageSimilarity, AutoCloseable {
+
+    // Wang, Simoncelli & Bovik 2003, weights for 5 scales
+    private static final double[] MS_SSIM_WEIGHTS = {0.0448, 0.2856, 0.3001, 0.2363, 0.1333};
+
+    private static final int BAND_ROWS = 64;
+    // Below this many output pixels forking costs more than it saves
+    private static final int PARALLEL_THRESHOLD = 128 * 128;
+
+    private static final ThreadLocal<Pyramid> PYRAMID = ThreadLocal.withInitial(Pyramid::new);
+
+    private final ForkJoinPool pool;
+    private final boolean multiScale;
+
+    /**
+     * @param parallelism worker threads for band scoring, 0 for the number of cores
+     * @param multiScale  score with MS-SSIM instead of single-scale SSIM
+     */
+    public SsimImageSimilarity(int parallelism, boolean multiScale) {
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.multiScale = multiScale;
+    }
+
+    @Override
+    public double score(GrayImage rendered, GrayImage target) {
+        double similarity = multiScale ? msSsim(rendered, target) : ssim(rendered, target);
+        return Math.max(0, Math.min(100, similarity * 100));
+    }
+
+    /**
+     * Mean structural similarity at full resolution, in [-1, 1].
+     */
+    public double ssim(GrayImage a, GrayImage b) {
+        checkSameSize(a, b);
+        int width = a.width();
+        int height = a.height();
+        if (width < SsimKernel.WINDOW || height < SsimKernel.WINDOW) {
+            return meanAbsoluteSimilarity(a, b);
+        }
+        Pyramid pyramid = PYRAMID.get();
+        pyramid.load(a, b, 1);
+        return scoreLevel(pyramid.x[0], pyramid.y[0], width, height, pyramid.sums)[0];
+    }
+
+    /**
+     * Multi-scale SSIM over up to five dyadic scales, in [0, 1]. Scales smaller than the
+     * window are dropped and the remaining weights renormalised.
+     */
+    public double msSsim(GrayImage a, GrayImage b) {
+        checkSameSize(a, b);
+        int levels = 0;
+        for (int w = a.width(), h = a.height();
+             levels < MS_SSIM_WEIGHTS.length && w >= SsimKernel.WINDOW && h >= SsimKernel.WINDOW;
+             w /= 2, h /= 2) {
+            levels++;
+        }
+        if (levels == 0) {
+            return meanAbsoluteSimilarity(a, b);
+        }
+
+        Pyramid pyramid = PYRAMID.get();
+        pyramid.load(a, b, levels);
+
+        double weightSum = 0;
+        for (int i = 0; i < levels; i++) {
+            weightSum += MS_SSIM_WEIGHTS[i];
+        }
+
+        double result = 1;
+        int width = a.width();
+        int height = a.height();
+        for (int level = 0; level < levels; level++) {
+            double[] means = scoreLevel(pyramid.x[level], pyramid.y[level], width, height, pyramid.sums);
+            double weight = MS_SSIM_WEIGHTS[level] / weightSum;
+            // Contrast-structure on every scale, luminance only on the coarsest one
+            double value = level == levels - 1 ? means[0] : means[1];
+            result *= Math.pow(Math.max(value, 0), weight);
+            width /= 2;
+            height /= 2;
+        }
+        return result;
+    }
+
+    /**
+     * Returns {mean SSIM, mean contrast-structure} of one scale, written into {@code sums}.
+     */
+    private double[] scoreLevel(float[] x, float[] y, int width, int height, double[] sums) {
+        int outRows = height - SsimKernel.WINDOW + 1;
+        int outWidth = width - SsimKernel.WINDOW + 1;
+        int bands = (outRows + BAND_ROWS - 1) / BAND_ROWS;
+
+        double[] partial = PYRAMID.get().partial(bands * 2);
+        if ((long) outRows * outWidth < PARALLEL_THRESHOLD || bands == 1) {
+            for (int band = 0; band < bands; band++) {
+                scoreBand(x, y, width, outRows, band, partial);
+            }
+        } else {
+            pool.invoke(new BandTask(x, y, width, outRows, 0, bands, partial));
+        }
+
+        // Summed in band order so the result does not depend on scheduling
+        double ssimSum = 0;
+        double csSum = 0;
+        for (int band = 0; band < bands; band++) {
+            ssimSum += partial[band * 2];
+            csSum += partial[band * 2 + 1];
+        }
+        double count = (double) outRows * outWidth;
+        sums[0] = ssimSum / count;
+        sums[1] = csSum / count;
+        return sums;
+    }
+
+    private static void scoreBand(float[] x, float[] y, int width, int outRows, int band, double[] partial) {
+        int rowFrom = band * BAND_ROWS;
+        int rowTo = Math.min(rowFrom + BAND_ROWS, outRows);
+        partial[band * 2] = 0;
+        partial[band * 2 + 1] = 0;
+        SsimKernel.accumulate(x, y, width, rowFrom, rowTo, partial, band * 2);
+    }
+
+    private static double meanAbsoluteSimilarity(GrayImage a, GrayImage b) {
+        byte[] pa = a.pixels();
+        byte[] pb = b.pixels();
+        long diff = 0;
+        for (int i = 0; i < pa.length; i++) {
+            diff += Math.abs((pa[i] & 0xFF) - (pb[i] & 0xFF));
+        }
+        return 1 - (double) diff / (255.0 * pa.length);
+    }
+
+    private static void checkSameSize(GrayImage a, GrayImage b) {
+        if (a.width() != b.width() || a.height() != b.height()) {
+            throw new IllegalArgumentException("Images must have the same size: "
+                    + a.width() + "x" + a.height() + " vs " + b.width() + "x" + b.height());
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Splits a range of bands in halves until single bands remain.
+     */
+    private static final class BandTask extends RecursiveAction {
+        private final float[] x;
+        private final float[] y;
+        private final int width;
+        private final int outRows;
+        private final int from;
+        private final int to;
+        private final double[] partial;
+
+        private BandTask(float[] x, float[] y, int width, int outRows, int from, int to, double[] partial) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.outRows = outRows;
+            this.from = from;
+            this.to = to;
+            this.partial = partial;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                scoreBand(x, y, width, outRows, from, partial);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BandTask(x, y, width, outRows, from, mid, partial),
+                    new BandTask(x, y, width, outRows, mid, to, partial));
+        }
+    }
+
+    /**
+     * Float planes of both images at every scale, reused by the calling thread.
+     */
+    private static final class Pyramid {
+        private final float[][] x = new float[MS_SSIM_WEIGHTS.length][];
+        private final float[][] y = new float[MS_SSIM_WEIGHTS.length][];
+        private final double[] sums = new double[2];
+        private double[] partial = new double[0];
+
+        private void load(GrayImage a, GrayImage b, int levels) {
+            int width = a.width();
+            int height = a.height();
+            x[0] = toFloat(a.pixels(), x[0]);
+            y[0] = toFloat(b.pixels(), y[0]);
+            for (int level = 1; level < levels; level++) {
+                x[level] = halve(x[level - 1], width, height, x[level]);
+                y[level] = halve(y[level - 1], width, height, y[level]);
+                width /= 2;
+                height /= 2;
+            }
+        }
+
+        private double[] partial(int size) {
+            if (partial.length < size) {
+                partial = new double[size];
+            }
+            return partial;
+        }
+
+        private static float[] toFloat(byte[] pixels, float[] dst) {
+            if (dst == null || dst.length < pixels.length) {
+                dst = new float[pixels.length];
+            }
+            for (int i = 0; i < pixels.length; i++) {
+                dst[i] = pixels[i] & 0xFF;
+            }
+            return dst;
+        }
+
+        // 2x2 box filter and decimation, odd trailing rows and columns are dropped
+        private static float[] halve(float[] src, int width, int height, float[] dst) {
+            int w = width / 2;
+            int h = height / 2;
+            if (dst == null || dst.length < w * h) {
+                dst = new float[w * h];
+            }
+            for (int r = 0; r < h; r++) {
+                int top = 2 * r * width;
+                int bottom = top + width;
+                int out = r * w;
+                for (int c = 0; c < w; c++) {
+                    int i = 2 * c;
+                    dst[out + c] = 0.25f * (src[top + i] + src[top + i + 1] + src[bottom + i] + src[bottom + i + 1]);
+                }
+            }
+            return dst;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.hexplatoon.syncrift_backend.service.battle.css.similarity;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vectorised inner loops of SSIM (Wang et al. 2004): an 11x11 Gaussian window with
+ * sigma 1.5, separable, evaluated over the "valid" region only.
+ * <p>
+ * Work is done in horizontal bands of output rows so callers can split an image into
+ * independent tiles. The five local moments (mean x, mean y, E[x^2], E[y^2], E[xy]) are
+ * filtered horizontally into per-thread scratch planes, then filtered vertically and
+ * reduced straight into the SSIM and contrast-structure sums without storing the maps.
+ */
+final class SsimKernel {
+
+    static final int WINDOW = 11;
+
+    private static final float C1 = (0.01f * 255) * (0.01f * 255);
+    private static final float C2 = (0.03f * 255) * (0.03f * 255);
+    private static final float[] GAUSSIAN = gaussian(WINDOW, 1.5);
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    // Grown on demand and reused, so steady state scoring does not allocate
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private SsimKernel() {
+    }
+
+    /**
+     * Adds the SSIM and contrast-structure sums of output rows {@code [rowFrom, rowTo)} to
+     * {@code sums[offset]} and {@code sums[offset + 1]}. Output row {@code r} covers input rows
+     * {@code r .. r + WINDOW - 1}.
+     */
+    static void accumulate(float[] x, float[] y, int width, int rowFrom, int rowTo, double[] sums, int offset) {
+        int outWidth = width - WINDOW + 1;
+        int inRows = rowTo - rowFrom + WINDOW - 1;
+        Scratch s = SCRATCH.get();
+        s.ensure(outWidth * inRows);
+
+        for (int r = 0; r < inRows; r++) {
+            filterRow(x, y, (rowFrom + r) * width, outWidth, s, r * outWidth);
+        }
+
+        double ssimSum = 0;
+        double csSum = 0;
+        float[] partial = s.partial;
+        for (int r = 0; r < rowTo - rowFrom; r++) {
+            filterColumnsAndReduce(s, r * outWidth, outWidth, partial);
+            ssimSum += partial[0];
+            csSum += partial[1];
+        }
+        sums[offset] += ssimSum;
+        sums[offset + 1] += csSum;
+    }
+
+    /**
+     * Horizontal pass of one input row into the five moment planes.
+     */
+    private static void filterRow(float[] x, float[] y, int in, int outWidth, Scratch s, int out) {
+        int bound = SPECIES.loopBound(outWidth);
+        int c = 0;
+        for (; c < bound; c += SPECIES.length()) {
+            FloatVector mx = FloatVector.zero(SPECIES);
+            FloatVector my = FloatVector.zero(SPECIES);
+            FloatVector xx = FloatVector.zero(SPECIES);
+            FloatVector yy = FloatVector.zero(SPECIES);
+            FloatVector xy = FloatVector.zero(SPECIES);
+            for (int k = 0; k < WINDOW; k++) {
+                FloatVector g = FloatVector.broadcast(SPECIES, GAUSSIAN[k]);
+                FloatVector a = FloatVector.fromArray(SPECIES, x, in + c + k);
+                FloatVector b = FloatVector.fromArray(SPECIES, y, in + c + k);
+                FloatVector ga = a.mul(g);
+                FloatVector gb = b.mul(g);
+                mx = mx.add(ga);
+                my = my.add(gb);
+                xx = a.fma(ga, xx);
+                yy = b.fma(gb, yy);
+                xy = a.fma(gb, xy);
+            }
+            mx.intoArray(s.mx, out + c);
+            my.intoArray(s.my, out + c);
+            xx.intoArray(s.xx, out + c);
+            yy.intoArray(s.yy, out + c);
+            xy.intoArray(s.xy, out + c);
+        }
+        for (; c < outWidth; c++) {
+            float mx = 0, my = 0, xx = 0, yy = 0, xy = 0;
+            for (int k = 0; k < WINDOW; k++) {
+                float g = GAUSSIAN[k];
+                float a = x[in + c + k];
+                float b = y[in + c + k];
+                mx += g * a;
+                my += g * b;
+                xx += g * a * a;
+                yy += g * b * b;
+                xy += g * a * b;
+            }
+            s.mx[out + c] = mx;
+            s.my[out + c] = my;
+            s.xx[out + c] = xx;
+            s.yy[out + c] = yy;
+            s.xy[out + c] = xy;
+        }
+    }
+
+    /**
+     * Vertical pass for one output row, starting at plane offset {@code top}, reduced into
+     * {@code result[0]} (SSIM sum) and {@code result[1]} (contrast-structure sum).
+     */
+    private static void filterColumnsAndReduce(Scratch s, int top, int outWidth, float[] result) {
+        FloatVector c1 = FloatVector.broadcast(SPECIES, C1);
+        FloatVector c2 = FloatVector.broadcast(SPECIES, C2);
+        FloatVector ssimAcc = FloatVector.zero(SPECIES);
+        FloatVector csAcc = FloatVector.zero(SPECIES);
+
+        int bound = SPECIES.loopBound(outWidth);
+        int c = 0;
+        for (; c < bound; c += SPECIES.length()) {
+            FloatVector mx = FloatVector.zero(SPECIES);
+            FloatVector my = FloatVector.zero(SPECIES);
+            FloatVector xx = FloatVector.zero(SPECIES);
+            FloatVector yy = FloatVector.zero(SPECIES);
+            FloatVector xy = FloatVector.zero(SPECIES);
+            for (int k = 0; k < WINDOW; k++) {
+                FloatVector g = FloatVector.broadcast(SPECIES, GAUSSIAN[k]);
+                int i = top + k * outWidth + c;
+                mx = FloatVector.fromArray(SPECIES, s.mx, i).fma(g, mx);
+                my = FloatVector.fromArray(SPECIES, s.my, i).fma(g, my);
+                xx = FloatVector.fromArray(SPECIES, s.xx, i).fma(g, xx);
+                yy = FloatVector.fromArray(SPECIES, s.yy, i).fma(g, yy);
+                xy = FloatVector.fromArray(SPECIES, s.xy, i).fma(g, xy);
+            }
+            FloatVector mx2 = mx.mul(mx);
+            FloatVector my2 = my.mul(my);
+            FloatVector mxy = mx.mul(my);
+            FloatVector variance = xx.sub(mx2).add(yy.sub(my2)).add(c2);
+            FloatVector covariance = xy.sub(mxy).mul(2f).add(c2);
+            FloatVector cs = covariance.div(variance);
+            FloatVector luminance = mxy.mul(2f).add(c1).div(mx2.add(my2).add(c1));
+            csAcc = csAcc.add(cs);
+            ssimAcc = luminance.fma(cs, ssimAcc);
+        }
+
+        float ssimSum = ssimAcc.reduceLanes(VectorOperators.ADD);
+        float csSum = csAcc.reduceLanes(VectorOperators.ADD);
+        for (; c < outWidth; c++) {
+            float mx = 0, my = 0, xx = 0, yy = 0, xy = 0;
+            for (int k = 0; k < WINDOW; k++) {
+                float g = GAUSSIAN[k];
+                int i = top + k * outWidth + c;
+                mx += g * s.mx[i];
+                my += g * s.my[i];
+                xx += g * s.xx[i];
+                yy += g * s.yy[i];
+                xy += g * s.xy[i];
+            }
+            float mxy = mx * my;
+            float cs = (2 * (xy - mxy) + C2) / ((xx - mx * mx) + (yy - my * my) + C2);
+            float luminance = (2 * mxy + C1) / (mx * mx + my * my + C1);
+            csSum += cs;
+            ssimSum += luminance * cs;
+        }
+        result[0] = ssimSum;
+        result[1] = csSum;
+    }
+
+    private static float[] gaussian(int size, double sigma) {
+        float[] kernel = new float[size];
+        int radius = size / 2;
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            double d = i - radius;
+            double v = Math.exp(-(d * d) / (2 * sigma * sigma));
+            kernel[i] = (float) v;
+            sum += v;
+        }
+        for (int i = 0; i < size; i++) {
+            kernel[i] /= (float) sum;
+        }
+        return kernel;
+    }
+
+    /**
+     * Horizontally filtered moment planes for one band.
+     */
+    private static final class Scratch {
+        private float[] mx = new float[0];
+        private float[] my = new float[0];
+        private float[] xx = new float[0];
+        private float[] yy = new float[0];
+        private float[] xy = new float[0];
+        private final float[] partial = new float[2];
+
+        private void ensure(int size) {
+            if (mx.length >= size) return;
+            mx = new float[size];
+            my = new float[size];
+            xx = new float[size];
+            yy = new float[size];
+            xy = new float[size];
+        }
+    }
+}
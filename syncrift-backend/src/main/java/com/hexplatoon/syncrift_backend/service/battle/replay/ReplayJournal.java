@@ -0,0 +1,431 @@
+package com.hexplatoon.syncrift_backend.service.battle.replay;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Records the input events of every battle for replays. Events are encoded in memory while
+ * the battle runs and appended as one record to this node's current segment file when it
+ * ends, so a replay is a single contiguous slice that can be sent without copying. The
+ * append is made by a single writer off the battle threads, which forces every record
+ * queued meanwhile to disk at once.
+ * <p>
+ * A record is a header (magic, battle id, end time, payload length) followed by the payload:
+ * a version byte, the start time, the player names, then the events. Each event starts with
+ * a varint of {@code millisSincePreviousEvent << 3 | type << 1 | player}, followed by:
+ * <ul>
+ *   <li>caret: zigzag varint of the caret movement, one per typing keystroke</li>
+ *   <li>words: varint start index, varint count, the committed words</li>
+ *   <li>edit: varint offset, varint deleted length, the inserted text (CSS code edits)</li>
+ * </ul>
+ * Strings are a varint byte length followed by UTF-8.
+ * <p>
+ * A record is forced to disk before its replay is indexed, so a replay can be found a few
+ * milliseconds after its battle ended. The battle id to slice index is
+ * rebuilt by scanning the segments at startup. Expired records are dropped periodically, and
+ * sealed segments that are mostly dead have their live records moved to the current
+ * segment. Such a segment is deleted only after a grace period and once no transfer reads
+ * it, since a replay looked up just before the move may still be sent from it, by Tomcat's
+ * sendfile after the request returned or by {@link #transferTo}.
+ */
+@Slf4j
+@Component
+public class ReplayJournal {
+
+    static final int RECORD_MAGIC = 0x53524A31;
+    static final int HEADER_BYTES = 4 + 8 + 8 + 4;
+    private static final String SUFFIX = ".seg";
+
+    private final Path dir;
+    private final String nodeId;
+    private final long segmentBytes;
+    private final int maxBattleBytes;
+    private final Duration retention;
+    private final double compactLiveRatio;
+    private final Duration deleteGrace;
+    private final Executor replayWriteExecutor;
+
+    // Ended battles waiting for the writer
+    private final BlockingQueue<PendingRecord> queue;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private volatile boolean running = true;
+
+    private final Map<Long, ReplayRecorder> recording = new ConcurrentHashMap<>();
+    private final Map<Long, Slice> index = new ConcurrentHashMap<>();
+    // Segment -> transfers reading it
+    private final Map<Integer, AtomicInteger> readers = new ConcurrentHashMap<>();
+    // Compacted segment -> when it was retired, deleted once the grace period is over
+    private final Map<Integer, Long> retired = new ConcurrentHashMap<>();
+
+    // Guards the current segment
+    private final Object writeLock = new Object();
+    private int activeSegment;
+    private FileChannel active;
+    private long activeSize;
+
+    /**
+     * Where the payload of a battle's replay lives.
+     * @param offset Position of the payload in the segment, after the record header.
+     */
+    public record Slice(int segment, long offset, int length, long endedAt) {
+    }
+
+    private record PendingRecord(long battleId, ByteBuffer record, long endedAt) {
+    }
+
+    public ReplayJournal(@Value("${replay.journal.dir:./replay-journal}") String dir,
+                         @Value("${replay.journal.node-id:node-0}") String nodeId,
+                         @Value("${replay.journal.segment-bytes:67108864}") long segmentBytes,
+                         @Value("${replay.journal.max-battle-bytes:4194304}") int maxBattleBytes,
+                         @Value("${replay.journal.retention-days:30}") int retentionDays,
+                         @Value("${replay.journal.compact-live-ratio:0.5}") double compactLiveRatio,
+                         @Value("${replay.journal.delete-grace-ms:300000}") long deleteGraceMillis,
+                         @Value("${replay.journal.queue-capacity:10000}") int queueCapacity,
+                         @Qualifier("replayWriteExecutor") Executor replayWriteExecutor) {
+        this.dir = Paths.get(dir);
+        this.nodeId = nodeId;
+        this.segmentBytes = segmentBytes;
+        this.maxBattleBytes = maxBattleBytes;
+        this.retention = Duration.ofDays(retentionDays);
+        this.compactLiveRatio = compactLiveRatio;
+        this.deleteGrace = Duration.ofMillis(deleteGraceMillis);
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.replayWriteExecutor = replayWriteExecutor;
+    }
+
+    @PostConstruct
+    void open() throws IOException {
+        Files.createDirectories(dir);
+        List<Integer> segments = listSegments();
+        long end = 0;
+        for (int segment : segments) {
+            end = scan(segment);
+        }
+        synchronized (writeLock) {
+            activeSegment = segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+            active = FileChannel.open(segmentPath(activeSegment),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            // A record cut short by a crash is dropped
+            active.truncate(end);
+            activeSize = end;
+        }
+        log.info("Replay journal opened with {} replays in {} segments", index.size(), segments.size());
+        replayWriteExecutor.execute(this::drain);
+    }
+
+    /**
+     * Writes what is queued, then closes the current segment.
+     */
+    @PreDestroy
+    void close() throws IOException, InterruptedException {
+        running = false;
+        if (!stopped.await(10, TimeUnit.SECONDS)) {
+            log.warn("Replays still queued at shutdown: {}", queue.size());
+        }
+        synchronized (writeLock) {
+            active.force(true);
+            active.close();
+        }
+    }
+
+    /**
+     * Starts recording a battle.
+     * @param players Challenger first, then opponent.
+     */
+    public void start(long battleId, List<String> players) {
+        recording.put(battleId, new ReplayRecorder(System.currentTimeMillis(), players, maxBattleBytes));
+    }
+
+    public void recordCaret(long battleId, String player, int position) {
+        ReplayRecorder recorder = recording.get(battleId);
+        if (recorder != null) {
+            recorder.caret(player, System.currentTimeMillis(), position);
+        }
+    }
+
+    public void recordWords(long battleId, String player, int startIndex, List<String> words) {
+        ReplayRecorder recorder = recording.get(battleId);
+        if (recorder != null) {
+            recorder.words(player, System.currentTimeMillis(), startIndex, words);
+        }
+    }
+
+    public void recordEdit(long battleId, String player, int offset, int deleted, String inserted) {
+        ReplayRecorder recorder = recording.get(battleId);
+        if (recorder != null) {
+            recorder.edit(player, System.currentTimeMillis(), offset, deleted, inserted);
+        }
+    }
+
+    /**
+     * Queues the battle's events for the writer and returns, battle threads never wait for
+     * the disk. A failure only loses the replay, it is logged and never fails the battle.
+     */
+    public void finish(long battleId) {
+        ReplayRecorder recorder = recording.remove(battleId);
+        if (recorder == null) return;
+        long endedAt = System.currentTimeMillis();
+        PendingRecord pending = new PendingRecord(battleId, recorder.toRecord(battleId, endedAt), endedAt);
+        if (!running) {
+            // Nothing drains the queue any more
+            write(List.of(pending));
+        } else if (!queue.offer(pending)) {
+            log.warn("Replay writer is behind, dropping the replay of battle {}", battleId);
+        }
+    }
+
+    private void drain() {
+        List<PendingRecord> batch = new ArrayList<>();
+        try {
+            while (running || !queue.isEmpty()) {
+                PendingRecord first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                // Whatever ended while the previous batch was forced shares this one
+                queue.drainTo(batch);
+                write(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Replay writer interrupted with {} replays queued", queue.size() + batch.size());
+        } finally {
+            stopped.countDown();
+        }
+    }
+
+    /**
+     * Appends the records and forces them to disk once, then indexes them.
+     */
+    private void write(List<PendingRecord> batch) {
+        List<Map.Entry<Long, Slice>> written = new ArrayList<>(batch.size());
+        try {
+            synchronized (writeLock) {
+                for (PendingRecord pending : batch) {
+                    ByteBuffer record = pending.record();
+                    if (activeSize > 0 && activeSize + record.remaining() > segmentBytes) {
+                        roll();
+                    }
+                    long position = activeSize;
+                    int length = record.remaining() - HEADER_BYTES;
+                    active.position(position);
+                    while (record.hasRemaining()) {
+                        active.write(record);
+                    }
+                    activeSize = active.position();
+                    written.add(Map.entry(pending.battleId(),
+                            new Slice(activeSegment, position + HEADER_BYTES, length, pending.endedAt())));
+                }
+                // Durable before the replays can be served
+                active.force(false);
+            }
+        } catch (IOException e) {
+            log.warn("Could not write the replays of battles {}",
+                    batch.stream().map(PendingRecord::battleId).toList(), e);
+            return;
+        }
+        for (Map.Entry<Long, Slice> entry : written) {
+            index.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public void discard(long battleId) {
+        recording.remove(battleId);
+    }
+
+    public Optional<Slice> find(long battleId) {
+        return Optional.ofNullable(index.get(battleId));
+    }
+
+    public Path segmentPath(Slice slice) {
+        return segmentPath(slice.segment());
+    }
+
+    /**
+     * Sends a replay with {@link FileChannel#transferTo}, which the OS does without copying
+     * through the heap when the target is a file or socket.
+     */
+    public void transferTo(Slice slice, WritableByteChannel target) throws IOException {
+        AtomicInteger count = readers.computeIfAbsent(slice.segment(), segment -> new AtomicInteger());
+        count.incrementAndGet();
+        try (FileChannel channel = FileChannel.open(segmentPath(slice), StandardOpenOption.READ)) {
+            long position = slice.offset();
+            long remaining = slice.length();
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, target);
+                position += sent;
+                remaining -= sent;
+            }
+        } finally {
+            count.decrementAndGet();
+        }
+    }
+
+    /**
+     * Drops expired replays, retires sealed segments with nothing live and moves the live
+     * records out of those below the live ratio. Segments retired by an earlier run are
+     * deleted once their grace period is over.
+     */
+    @Scheduled(fixedDelayString = "${replay.journal.compact-interval-ms:3600000}",
+            initialDelayString = "${replay.journal.compact-interval-ms:3600000}")
+    public void compact() {
+        long cutoff = System.currentTimeMillis() - retention.toMillis();
+        index.values().removeIf(slice -> slice.endedAt() < cutoff);
+
+        int current;
+        synchronized (writeLock) {
+            current = activeSegment;
+        }
+        Map<Integer, Long> liveBytes = new HashMap<>();
+        for (Slice slice : index.values()) {
+            liveBytes.merge(slice.segment(), (long) HEADER_BYTES + slice.length(), Long::sum);
+        }
+        try {
+            deleteRetired();
+            for (int segment : listSegments()) {
+                if (segment >= current || retired.containsKey(segment)) continue;
+                Path path = segmentPath(segment);
+                long live = liveBytes.getOrDefault(segment, 0L);
+                if (live >= Files.size(path) * compactLiveRatio) continue;
+                if (live > 0) {
+                    moveLiveRecords(segment);
+                }
+                retired.put(segment, System.currentTimeMillis());
+                log.info("Compacted replay segment {}, deleted after {}", path.getFileName(), deleteGrace);
+            }
+        } catch (IOException e) {
+            log.warn("Replay journal compaction failed", e);
+        }
+    }
+
+    private void deleteRetired() throws IOException {
+        long cutoff = System.currentTimeMillis() - deleteGrace.toMillis();
+        for (Map.Entry<Integer, Long> entry : retired.entrySet()) {
+            int segment = entry.getKey();
+            AtomicInteger count = readers.get(segment);
+            if (entry.getValue() > cutoff || (count != null && count.get() > 0)) continue;
+            Files.deleteIfExists(segmentPath(segment));
+            retired.remove(segment);
+            readers.remove(segment);
+        }
+    }
+
+    private void moveLiveRecords(int segment) throws IOException {
+        Map<Long, Slice[]> moved = new HashMap<>();
+        try (FileChannel source = FileChannel.open(segmentPath(segment), StandardOpenOption.READ)) {
+            for (Map.Entry<Long, Slice> entry : index.entrySet()) {
+                Slice slice = entry.getValue();
+                if (slice.segment() != segment) continue;
+                synchronized (writeLock) {
+                    long recordBytes = HEADER_BYTES + (long) slice.length();
+                    if (activeSize > 0 && activeSize + recordBytes > segmentBytes) {
+                        roll();
+                    }
+                    long position = activeSize;
+                    long copied = 0;
+                    while (copied < recordBytes) {
+                        copied += source.transferTo(slice.offset() - HEADER_BYTES + copied, recordBytes - copied,
+                                active.position(position + copied));
+                    }
+                    activeSize = position + recordBytes;
+                    moved.put(entry.getKey(), new Slice[]{slice,
+                            new Slice(activeSegment, position + HEADER_BYTES, slice.length(), slice.endedAt())});
+                }
+            }
+        }
+        // The copies are durable before the index points at them
+        synchronized (writeLock) {
+            active.force(false);
+        }
+        moved.forEach((battleId, slices) -> index.replace(battleId, slices[0], slices[1]));
+    }
+
+    private void roll() throws IOException {
+        active.force(true);
+        active.close();
+        activeSegment++;
+        active = FileChannel.open(segmentPath(activeSegment),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        activeSize = 0;
+    }
+
+    /**
+     * Indexes the records of a segment. Later records of the same battle win, which is what
+     * compaction relies on when it moves a record.
+     * @return The end of the last complete record.
+     */
+    private long scan(int segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (position + HEADER_BYTES <= size) {
+                header.clear();
+                while (header.hasRemaining()) {
+                    channel.read(header, position + header.position());
+                }
+                header.flip();
+                if (header.getInt() != RECORD_MAGIC) break;
+                long battleId = header.getLong();
+                long endedAt = header.getLong();
+                int length = header.getInt();
+                if (length < 0 || position + HEADER_BYTES + length > size) break;
+                index.put(battleId, new Slice(segment, position + HEADER_BYTES, length, endedAt));
+                position += HEADER_BYTES + length;
+            }
+            if (position < size) {
+                log.warn("Replay segment {} has {} trailing bytes that are not a record", segment, size - position);
+            }
+            return position;
+        }
+    }
+
+    private List<Integer> listSegments() throws IOException {
+        String prefix = nodeId + "-";
+        List<Integer> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix) && name.endsWith(SUFFIX))
+                    .forEach(name -> {
+                        try {
+                            segments.add(Integer.parseInt(name.substring(prefix.length(), name.length() - SUFFIX.length())));
+                        } catch (NumberFormatException ignored) {
+                        }
+                    });
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    private Path segmentPath(int segment) {
+        return dir.resolve(String.format("%s-%08d%s", nodeId, segment, SUFFIX));
+    }
+}
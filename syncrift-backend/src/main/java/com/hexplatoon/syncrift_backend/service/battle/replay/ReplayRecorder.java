@@ -0,0 +1,143 @@
+package com.hexplatoon.syncrift_backend.service.battle.replay;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes the input events of one running battle into a growable buffer, in the payload
+ * format described on {@link ReplayJournal}. Events of both players arrive on different
+ * inbound threads, every method is synchronized.
+ */
+final class ReplayRecorder {
+
+    static final int VERSION = 1;
+    static final int CARET = 0;
+    static final int WORDS = 1;
+    static final int EDIT = 2;
+
+    private final String[] players;
+    private final int[] carets;
+    private final int maxBytes;
+    private byte[] buf = new byte[1024];
+    private int size;
+    // Start of the event being written, restored when it does not fit
+    private int mark;
+    private long lastMillis;
+    private boolean full;
+
+    ReplayRecorder(long startedAt, List<String> players, int maxBytes) {
+        this.players = players.toArray(String[]::new);
+        this.carets = new int[this.players.length];
+        this.maxBytes = maxBytes;
+        this.lastMillis = startedAt;
+        writeByte(VERSION);
+        writeLong(startedAt);
+        writeVarint(this.players.length);
+        for (String player : this.players) {
+            writeString(player);
+        }
+    }
+
+    synchronized void caret(String player, long now, int position) {
+        int p = begin(player, now, CARET);
+        if (p < 0) return;
+        int delta = position - carets[p];
+        // Zigzag, backspaces are small negative deltas
+        writeVarint((delta << 1) ^ (delta >> 31));
+        carets[p] = position;
+        end();
+    }
+
+    synchronized void words(String player, long now, int startIndex, List<String> words) {
+        if (begin(player, now, WORDS) < 0) return;
+        writeVarint(startIndex);
+        writeVarint(words.size());
+        for (String word : words) {
+            writeString(word == null ? "" : word);
+        }
+        end();
+    }
+
+    synchronized void edit(String player, long now, int offset, int deleted, String inserted) {
+        if (begin(player, now, EDIT) < 0) return;
+        writeVarint(offset);
+        writeVarint(deleted);
+        writeString(inserted == null ? "" : inserted);
+        end();
+    }
+
+    /**
+     * The journal record: header followed by the encoded events.
+     */
+    synchronized ByteBuffer toRecord(long battleId, long endedAt) {
+        ByteBuffer record = ByteBuffer.allocate(ReplayJournal.HEADER_BYTES + size);
+        record.putInt(ReplayJournal.RECORD_MAGIC)
+                .putLong(battleId)
+                .putLong(endedAt)
+                .putInt(size)
+                .put(buf, 0, size)
+                .flip();
+        return record;
+    }
+
+    /**
+     * Writes the event head: time since the previous event, type and player.
+     * @return The player index, or -1 if the event is not recorded.
+     */
+    private int begin(String player, long now, int type) {
+        if (full) return -1;
+        int p = Arrays.asList(players).indexOf(player);
+        // The event head has one bit for the player
+        if (p < 0 || p > 1) return -1;
+        mark = size;
+        long delta = Math.max(0, now - lastMillis);
+        lastMillis = Math.max(lastMillis, now);
+        writeVarint((delta << 3) | ((long) type << 1) | p);
+        return p;
+    }
+
+    private void end() {
+        if (size > maxBytes) {
+            // The replay keeps the events up to the cap, later ones are dropped
+            size = mark;
+            full = true;
+        }
+    }
+
+    private void writeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length);
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buf, size, bytes.length);
+        size += bytes.length;
+    }
+
+    private void writeVarint(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buf[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[size++] = (byte) value;
+    }
+
+    private void writeLong(long value) {
+        ensure(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buf[size++] = (byte) (value >>> shift);
+        }
+    }
+
+    private void writeByte(int value) {
+        ensure(1);
+        buf[size++] = (byte) value;
+    }
+
+    private void ensure(int bytes) {
+        if (size + bytes > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + bytes));
+        }
+    }
+}
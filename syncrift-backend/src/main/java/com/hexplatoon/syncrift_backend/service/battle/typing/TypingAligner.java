@@ -0,0 +1,195 @@
+package com.hexplatoon.syncrift_backend.service.battle.typing;
+
+import java.util.Arrays;
+
+/**
+ * Aligns a typed text with the start of the expected text using Myers' bit-parallel edit
+ * distance, blocked in 64-row words (Hyyrö's formulation for Levenshtein distance). The
+ * typed text is the pattern, one bit per character, and every expected character advances
+ * all blocks by one column, so a 900-character battle text costs about 15 word operations
+ * per column instead of 900 cell updates.
+ * <p>
+ * The column vectors are kept so the alignment can be traced back, which gives the error
+ * positions. All working memory lives in per-thread buffers that only grow, an alignment
+ * allocates nothing once they fit the largest text seen.
+ */
+public final class TypingAligner {
+
+    // Longer inputs are truncated, no battle text comes near this
+    public static final int MAX_LENGTH = 8192;
+    // Characters outside ASCII never match, the typing corpus is plain ASCII
+    private static final int ALPHABET = 128;
+
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    private TypingAligner() {
+    }
+
+    /**
+     * Aligns {@code typed} against the prefix of {@code expected} it is closest to.
+     * @param out Receives the alignment, its previous content is discarded.
+     * @return {@code out}
+     */
+    public static TypingAlignment align(CharSequence expected, CharSequence typed, TypingAlignment out) {
+        int m = Math.min(typed.length(), MAX_LENGTH);
+        // Past 2m columns D[m][j] >= j - m > m = D[m][0], no longer prefix can be closest
+        int n = Math.min(Math.min(expected.length(), MAX_LENGTH), 2 * m);
+        out.reset(m);
+        if (m == 0) {
+            return out;
+        }
+        int blocks = (m + 63) >>> 6;
+        Buffers buffers = BUFFERS.get();
+        buffers.ensure(blocks, n);
+        long[] peq = buffers.peq;
+        long[] pv = buffers.pv;
+        long[] mv = buffers.mv;
+        int[] score = buffers.score;
+
+        for (int i = 0; i < m; i++) {
+            char c = typed.charAt(i);
+            if (c < ALPHABET) {
+                peq[c * blocks + (i >>> 6)] |= 1L << (i & 63);
+            }
+        }
+
+        // Column 0: D[i][0] = i
+        Arrays.fill(pv, 0, blocks, -1L);
+        Arrays.fill(mv, 0, blocks, 0L);
+        for (int b = 0; b < blocks; b++) {
+            score[b] = Math.min((b + 1) << 6, m);
+        }
+        long lastRowBit = 1L << ((m - 1) & 63);
+        int best = m;
+        int bestColumn = 0;
+
+        for (int j = 1; j <= n; j++) {
+            char c = expected.charAt(j - 1);
+            int eqBase = c < ALPHABET ? c * blocks : -1;
+            int prev = (j - 1) * blocks;
+            int cur = j * blocks;
+            // Global alignment: the top row is D[0][j] = j, every column enters with +1
+            int hin = 1;
+            for (int b = 0; b < blocks; b++) {
+                long eq = eqBase < 0 ? 0 : peq[eqBase + b];
+                long pvb = pv[prev + b];
+                long mvb = mv[prev + b];
+                long xv = eq | mvb;
+                if (hin < 0) eq |= 1;
+                long xh = (((eq & pvb) + pvb) ^ pvb) | eq;
+                long ph = mvb | ~(xh | pvb);
+                long mh = pvb & xh;
+                long highBit = b == blocks - 1 ? lastRowBit : 1L << 63;
+                int hout = (ph & highBit) != 0 ? 1 : (mh & highBit) != 0 ? -1 : 0;
+                ph <<= 1;
+                mh <<= 1;
+                if (hin < 0) mh |= 1;
+                else if (hin > 0) ph |= 1;
+                pv[cur + b] = mh | ~(xv | ph);
+                mv[cur + b] = ph & xv;
+                score[cur + b] = score[prev + b] + hout;
+                hin = hout;
+            }
+            // Ties go to the longer prefix: "abx" against "abcd" is one substitution
+            if (score[cur + blocks - 1] <= best) {
+                best = score[cur + blocks - 1];
+                bestColumn = j;
+            }
+        }
+
+        for (int i = 0; i < m; i++) {
+            char c = typed.charAt(i);
+            if (c < ALPHABET) {
+                peq[c * blocks + (i >>> 6)] = 0;
+            }
+        }
+
+        out.distance = best;
+        out.expectedLength = bestColumn;
+        traceBack(expected, typed, m, bestColumn, blocks, pv, mv, score, out);
+        return out;
+    }
+
+    /**
+     * Walks from D[m][column] back to D[0][0], preferring matches and substitutions, and
+     * records the edits. Positions are collected backwards and reversed at the end.
+     */
+    private static void traceBack(CharSequence expected, CharSequence typed, int m, int column, int blocks,
+                                  long[] pv, long[] mv, int[] score, TypingAlignment out) {
+        int i = m;
+        int j = column;
+        while (i > 0 || j > 0) {
+            int d = cell(i, j, blocks, pv, mv, score);
+            if (i > 0 && j > 0) {
+                char c = typed.charAt(i - 1);
+                // Same rule as the distance, characters outside ASCII never match
+                boolean match = c == expected.charAt(j - 1) && c < ALPHABET;
+                if (cell(i - 1, j - 1, blocks, pv, mv, score) + (match ? 0 : 1) == d) {
+                    if (match) {
+                        out.matches++;
+                    } else {
+                        out.substitutions++;
+                        out.addError(i - 1);
+                    }
+                    i--;
+                    j--;
+                    continue;
+                }
+            }
+            if (i > 0 && cell(i - 1, j, blocks, pv, mv, score) + 1 == d) {
+                out.insertions++;
+                out.addError(i - 1);
+                i--;
+            } else {
+                out.deletions++;
+                out.addSkipped(j - 1);
+                j--;
+            }
+        }
+        reverse(out.errorPositions, out.errorCount);
+        reverse(out.skippedPositions, out.skippedCount);
+    }
+
+    /**
+     * D[i][j] from the stored vectors: the score at the bottom of the previous block plus
+     * the vertical deltas of this block down to row i.
+     */
+    private static int cell(int i, int j, int blocks, long[] pv, long[] mv, int[] score) {
+        if (i == 0) return j;
+        if (j == 0) return i;
+        int b = (i - 1) >>> 6;
+        int base = b == 0 ? j : score[j * blocks + b - 1];
+        int bit = (i - 1) & 63;
+        long mask = bit == 63 ? -1L : (1L << (bit + 1)) - 1;
+        return base + Long.bitCount(pv[j * blocks + b] & mask) - Long.bitCount(mv[j * blocks + b] & mask);
+    }
+
+    private static void reverse(int[] values, int count) {
+        for (int lo = 0, hi = count - 1; lo < hi; lo++, hi--) {
+            int tmp = values[lo];
+            values[lo] = values[hi];
+            values[hi] = tmp;
+        }
+    }
+
+    private static final class Buffers {
+        long[] peq = new long[0];
+        long[] pv = new long[0];
+        long[] mv = new long[0];
+        int[] score = new int[0];
+
+        void ensure(int blocks, int columns) {
+            if (peq.length < ALPHABET * blocks) {
+                peq = new long[ALPHABET * blocks];
+            }
+            int cells = (columns + 1) * blocks;
+            if (pv.length < cells) {
+                // Some headroom so a slightly longer text does not reallocate again
+                int size = cells + (cells >>> 2);
+                pv = new long[size];
+                mv = new long[size];
+                score = new int[size];
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.hexplatoon.syncrift_backend.service.battle.typing;
+
+import java.util.Arrays;
+
+/**
+ * Character alignment of a typed text against the start of the expected text, filled by
+ * {@link TypingAligner}. Instances are reusable: every alignment overwrites the previous one
+ * and the position arrays only grow.
+ */
+public final class TypingAlignment {
+
+    int typedLength;
+    int expectedLength;
+    int distance;
+    int matches;
+    int substitutions;
+    int insertions;
+    int deletions;
+    // Typed positions that are wrong (substituted or extra), ascending
+    int[] errorPositions = new int[64];
+    int errorCount;
+    // Expected positions the player skipped, ascending
+    int[] skippedPositions = new int[16];
+    int skippedCount;
+
+    void reset(int typedLength) {
+        this.typedLength = typedLength;
+        expectedLength = distance = matches = substitutions = insertions = deletions = 0;
+        errorCount = skippedCount = 0;
+    }
+
+    void addError(int typedPosition) {
+        if (errorCount == errorPositions.length) {
+            errorPositions = Arrays.copyOf(errorPositions, errorCount * 2);
+        }
+        errorPositions[errorCount++] = typedPosition;
+    }
+
+    void addSkipped(int expectedPosition) {
+        if (skippedCount == skippedPositions.length) {
+            skippedPositions = Arrays.copyOf(skippedPositions, skippedCount * 2);
+        }
+        skippedPositions[skippedCount++] = expectedPosition;
+    }
+
+    /** Characters typed. */
+    public int typedLength() {
+        return typedLength;
+    }
+
+    /** Length of the expected prefix the typed text is aligned to. */
+    public int expectedLength() {
+        return expectedLength;
+    }
+
+    /** Levenshtein distance between the typed text and that prefix. */
+    public int distance() {
+        return distance;
+    }
+
+    public int matches() {
+        return matches;
+    }
+
+    public int substitutions() {
+        return substitutions;
+    }
+
+    public int insertions() {
+        return insertions;
+    }
+
+    public int deletions() {
+        return deletions;
+    }
+
+    public int errorCount() {
+        return errorCount;
+    }
+
+    public int errorPosition(int i) {
+        return errorPositions[i];
+    }
+
+    public int skippedCount() {
+        return skippedCount;
+    }
+
+    public int skippedPosition(int i) {
+        return skippedPositions[i];
+    }
+
+    /**
+     * Share of typed characters that are correct, in percent. 0 when nothing was typed.
+     */
+    public double accuracy() {
+        return typedLength == 0 ? 0 : 100.0 * matches / typedLength;
+    }
+
+    /**
+     * Gross WPM (a word is five typed characters) minus uncorrected errors per minute.
+     */
+    public double netWpm(int durationInSeconds) {
+        double minutes = durationInSeconds / 60.0;
+        return Math.max(0, (typedLength / 5.0 - distance) / minutes);
+    }
+}
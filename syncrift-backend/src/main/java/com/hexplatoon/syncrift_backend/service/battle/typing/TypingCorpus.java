@@ -0,0 +1,253 @@
+package com.hexplatoon.syncrift_backend.service.battle.typing;
+
+import com.github.javafaker.Faker;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Word table for typing battles, built once at startup. Words are cleaned (lowercase a-z),
+ * deduplicated and sorted by length, so a difficulty tier is just a prefix of the sampling
+ * table and a text is a run of random indices into it.
+ * <p>
+ * The table comes from {@code typing.corpus.file} when set (one word per line, optionally
+ * followed by a tab and its frequency), otherwise from Faker sentences with a fixed seed.
+ * Either way the same table always has the same {@link #version()}, and
+ * {@link #generate(long, int, Tier)} always returns the same text for the same arguments.
+ */
+@Slf4j
+@Component
+public class TypingCorpus {
+
+    public enum Tier {
+        /** Short lowercase words. */
+        EASY(5),
+        /** Lowercase words of up to seven letters, the original typing battle text. */
+        MEDIUM(7),
+        /** Longer words with capitals, punctuation and numbers. */
+        HARD(12);
+
+        private final int maxWordLength;
+
+        Tier(int maxWordLength) {
+            this.maxWordLength = maxWordLength;
+        }
+    }
+
+    // A word appears at most this many times in the sampling table, common words stay common
+    // without a text turning into "the of the a"
+    private static final int FREQUENCY_CAP = 8;
+    private static final int FAKER_SENTENCES = 6000;
+    private static final char[] PUNCTUATION = {',', ',', '.', '.', ';', '!', '?'};
+
+    private final String[] words;
+    // Word indices, each repeated by its capped frequency, sorted by word length
+    private final int[] samples;
+    // samples[0, tierEnd[tier]) holds the words of the tier
+    private final int[] tierEnd = new int[Tier.values().length];
+    private final int version;
+
+    public TypingCorpus(@Value("${typing.corpus.file:}") String corpusFile,
+                        @Value("${typing.corpus.seed:20240601}") long seed) throws IOException {
+        long start = System.nanoTime();
+        Map<String, Integer> counts = corpusFile.isBlank()
+                ? countWords(fakerSentences(seed), FAKER_SENTENCES)
+                : readWordFile(Path.of(corpusFile));
+        if (counts.isEmpty()) {
+            throw new IllegalStateException("Typing corpus is empty");
+        }
+
+        words = counts.keySet().stream()
+                .filter(word -> word.length() <= Tier.HARD.maxWordLength)
+                .sorted(Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder()))
+                .toArray(String[]::new);
+        int total = 0;
+        for (String word : words) {
+            total += Math.min(counts.get(word), FREQUENCY_CAP);
+        }
+        samples = new int[total];
+        CRC32 crc = new CRC32();
+        int next = 0;
+        for (int i = 0; i < words.length; i++) {
+            int repeat = Math.min(counts.get(words[i]), FREQUENCY_CAP);
+            Arrays.fill(samples, next, next + repeat, i);
+            next += repeat;
+            for (Tier tier : Tier.values()) {
+                if (words[i].length() <= tier.maxWordLength) {
+                    tierEnd[tier.ordinal()] = next;
+                }
+            }
+            crc.update((words[i] + '\t' + repeat + '\n').getBytes(StandardCharsets.UTF_8));
+        }
+        version = (int) crc.getValue();
+        log.info("Typing corpus {} loaded: {} words, {} samples in {} ms", Integer.toHexString(version),
+                words.length, samples.length, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Identifies the word table; a seed only reproduces its text under the same version.
+     */
+    public int version() {
+        return version;
+    }
+
+    /**
+     * Builds a text of {@code wordCount} words, a pure function of its arguments.
+     */
+    public String generate(long seed, int wordCount, Tier tier) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int end = tierEnd[tier.ordinal()];
+        if (end == 0) {
+            // A corpus file without short words, fall back to every word
+            end = samples.length;
+        }
+        StringBuilder text = new StringBuilder(wordCount * (tier.maxWordLength / 2 + 2));
+        for (int i = 0; i < wordCount; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            if (tier == Tier.HARD) {
+                appendHardWord(text, random, end);
+            } else {
+                text.append(words[samples[random.nextInt(end)]]);
+            }
+        }
+        return text.toString();
+    }
+
+    public int size() {
+        return words.length;
+    }
+
+    private void appendHardWord(StringBuilder text, SplittableRandom random, int end) {
+        int roll = random.nextInt(100);
+        if (roll < 6) {
+            text.append(random.nextInt(2, 2100));
+        } else {
+            String word = words[samples[random.nextInt(end)]];
+            if (roll < 20) {
+                text.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+            } else {
+                text.append(word);
+            }
+        }
+        if (random.nextInt(100) < 12) {
+            text.append(PUNCTUATION[random.nextInt(PUNCTUATION.length)]);
+        }
+    }
+
+    /**
+     * Counts the typeable words of the given sentences: whitespace separated tokens stripped
+     * to letters and lowercased. Tokens with letters outside a-z are dropped.
+     */
+    static Map<String, Integer> countWords(Supplier<String> sentences, int sentenceCount) {
+        Map<String, Integer> counts = new HashMap<>();
+        StringBuilder word = new StringBuilder(16);
+        for (int s = 0; s < sentenceCount; s++) {
+            String sentence = sentences.get();
+            boolean typeable = true;
+            for (int i = 0, n = sentence.length(); i <= n; i++) {
+                char c = i < n ? sentence.charAt(i) : ' ';
+                if (Character.isWhitespace(c)) {
+                    if (typeable && !word.isEmpty()) {
+                        counts.merge(word.toString(), 1, Integer::sum);
+                    }
+                    word.setLength(0);
+                    typeable = true;
+                } else if (Character.isLetter(c)) {
+                    char lower = Character.toLowerCase(c);
+                    if (lower < 'a' || lower > 'z') {
+                        typeable = false;
+                    }
+                    word.append(lower);
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Reads a word file through a read-only mapping, line by line, so only one line at a time
+     * is copied on the heap. Lines with a malformed frequency are skipped.
+     */
+    private static Map<String, Integer> readWordFile(Path file) throws IOException {
+        Map<String, Integer> counts = new HashMap<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            byte[] line = new byte[64];
+            int lineNumber = 0;
+            for (int start = 0, limit = buffer.limit(); start < limit; ) {
+                int end = start;
+                while (end < limit && buffer.get(end) != '\n') {
+                    end++;
+                }
+                int length = end - start;
+                if (length > line.length) {
+                    line = new byte[Math.max(length, line.length * 2)];
+                }
+                buffer.get(start, line, 0, length);
+                lineNumber++;
+                start = end + 1;
+
+                String[] fields = new String(line, 0, length, StandardCharsets.UTF_8).trim().split("\t");
+                String word = fields[0].toLowerCase(Locale.ROOT);
+                if (word.isEmpty() || !word.chars().allMatch(c -> c >= 'a' && c <= 'z')) {
+                    continue;
+                }
+                int count = 1;
+                if (fields.length > 1) {
+                    try {
+                        count = Integer.parseInt(fields[1].trim());
+                    } catch (NumberFormatException e) {
+                        log.warn("Skipping line {} of {}: bad frequency '{}'", lineNumber, file, fields[1]);
+                        continue;
+                    }
+                }
+                counts.merge(word, Math.max(count, 1), Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * The sentence mix the typing battles always used, from a seeded Faker so the table is
+     * the same on every node.
+     */
+    private static Supplier<String> fakerSentences(long seed) {
+        Faker faker = new Faker(new Random(seed));
+        Random pick = new Random(seed);
+        return () -> switch (pick.nextInt(15)) {
+            case 0 -> faker.hitchhikersGuideToTheGalaxy().quote();
+            case 1 -> faker.book().title() + " by " + faker.book().author();
+            case 2 -> faker.company().catchPhrase();
+            case 3 -> faker.shakespeare().kingRichardIIIQuote();
+            case 4 -> faker.shakespeare().asYouLikeItQuote();
+            case 5 -> faker.shakespeare().hamletQuote();
+            case 6 -> faker.shakespeare().romeoAndJulietQuote();
+            case 7 -> faker.yoda().quote();
+            case 8 -> faker.chuckNorris().fact();
+            case 9 -> faker.friends().quote();
+            case 10 -> faker.gameOfThrones().quote();
+            case 11 -> faker.harryPotter().quote();
+            case 12 -> faker.lordOfTheRings().character();
+            case 13 -> faker.artist().name() + " plays " + faker.music().instrument();
+            default -> faker.superhero().name() + " can " + faker.superhero().power();
+        };
+    }
+}
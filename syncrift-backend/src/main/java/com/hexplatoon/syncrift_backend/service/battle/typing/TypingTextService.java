@@ -0,0 +1,82 @@
+package com.hexplatoon.syncrift_backend.service.battle.typing;
+
+import com.hexplatoon.syncrift_backend.dto.battle.config.Config;
+import com.hexplatoon.syncrift_backend.dto.battle.config.TypingConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Creates typing battle configs from a seed and rebuilds their text when a stored battle is
+ * read. Recently rebuilt texts are kept in a small LRU, history pages tend to be reopened.
+ */
+@Slf4j
+@Service
+public class TypingTextService {
+
+    private record Key(int corpusVersion, long seed, int wordCount, TypingCorpus.Tier tier) {
+    }
+
+    private final TypingCorpus typingCorpus;
+    private final Map<Key, String> recentTexts;
+
+    public TypingTextService(TypingCorpus typingCorpus,
+                             @Value("${typing.text.cache-size:256}") int cacheSize) {
+        this.typingCorpus = typingCorpus;
+        this.recentTexts = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, String> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * A config with a fresh seed and its text.
+     */
+    public TypingConfig newConfig(int wordCount, TypingCorpus.Tier tier, Integer duration) {
+        long seed = ThreadLocalRandom.current().nextLong();
+        return TypingConfig.builder()
+                .text(typingCorpus.generate(seed, wordCount, tier))
+                .duration(duration)
+                .corpusVersion(typingCorpus.version())
+                .seed(seed)
+                .wordCount(wordCount)
+                .difficulty(tier.name())
+                .build();
+    }
+
+    /**
+     * Fills in the text of a stored typing config. Other configs, and typing configs that
+     * already carry their text, are left as they are.
+     */
+    public void restoreText(Config config) {
+        if (!(config instanceof TypingConfig typingConfig) || typingConfig.getText() != null
+                || !typingConfig.isRegenerable()) {
+            return;
+        }
+        if (typingConfig.getCorpusVersion() != typingCorpus.version()) {
+            log.warn("Typing text of corpus {} cannot be rebuilt with corpus {}",
+                    Integer.toHexString(typingConfig.getCorpusVersion()), Integer.toHexString(typingCorpus.version()));
+            return;
+        }
+        Key key = new Key(typingConfig.getCorpusVersion(), typingConfig.getSeed(), typingConfig.getWordCount(),
+                TypingCorpus.Tier.valueOf(typingConfig.getDifficulty()));
+        String text;
+        synchronized (recentTexts) {
+            text = recentTexts.get(key);
+        }
+        if (text == null) {
+            // Generated outside the lock, it only takes microseconds and is deterministic
+            text = typingCorpus.generate(key.seed(), key.wordCount(), key.tier());
+            synchronized (recentTexts) {
+                recentTexts.put(key, text);
+            }
+        }
+        typingConfig.setText(text);
+    }
+}
@@ -0,0 +1,280 @@
+package com.hexplatoon.syncrift_backend.service.friend;
+
+import com.hexplatoon.syncrift_backend.entity.Friend.FriendshipStatus;
+import com.hexplatoon.syncrift_backend.event.FriendshipChangedEvent;
+import com.hexplatoon.syncrift_backend.repository.FriendRepository;
+import com.hexplatoon.syncrift_backend.repository.UserRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Every relation between users, by user id, so friendship and block checks need no query.
+ * Each user has one node with the ids of its friends, sent and received requests, and the
+ * users it blocked or is blocked by, plus its friends as a sorted array for
+ * {@link MutualFriendIndex}, rebuilt on first use after a change. A node is guarded by its
+ * own monitor; a change between two users locks both nodes in id order, a lookup only the
+ * asking user's node.
+ * <p>
+ * Built from the {@code friends} table in one streaming scan at startup and kept up to date
+ * by {@link FriendshipChangedEvent} once the change is committed. Usernames are resolved to
+ * ids from a cache that is loaded at startup as well, so users registered later cost one
+ * query on first use.
+ */
+@Slf4j
+@Component
+public class FriendGraph implements MeterBinder {
+
+    /**
+     * The relation from one user's point of view.
+     */
+    public enum Relation {
+        NONE, FRIENDS, REQUEST_SENT, REQUEST_RECEIVED, BLOCKED, BLOCKED_BY;
+
+        /**
+         * Wire code of the batch status API: 0 NOT_FRIENDS, 1 FRIENDS, 2 REQUEST_SENT,
+         * 3 REQUEST_RECEIVED, 4 BLOCKED. Being blocked reads as NOT_FRIENDS, like the text status.
+         */
+        public byte code() {
+            return this == BLOCKED_BY ? 0 : (byte) ordinal();
+        }
+
+        public FriendshipStatus toStatus() {
+            return switch (this) {
+                case NONE -> FriendshipStatus.UNRELATED;
+                case FRIENDS -> FriendshipStatus.ACCEPTED;
+                case REQUEST_SENT, REQUEST_RECEIVED -> FriendshipStatus.PENDING;
+                case BLOCKED, BLOCKED_BY -> FriendshipStatus.BLOCKED;
+            };
+        }
+    }
+
+    private static final class Node {
+        final LongHashSet friends = new LongHashSet();
+        final LongHashSet sent = new LongHashSet();
+        final LongHashSet received = new LongHashSet();
+        final LongHashSet blocked = new LongHashSet();
+        final LongHashSet blockedBy = new LongHashSet();
+        // friends as an ascending array, null until asked for after a change
+        long[] sortedFriends;
+    }
+
+    private final FriendRepository friendRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<Long, Node> nodes = new ConcurrentHashMap<>();
+    private final Map<String, Long> userIds = new ConcurrentHashMap<>();
+
+    public FriendGraph(FriendRepository friendRepository, UserRepository userRepository,
+                       PlatformTransactionManager transactionManager) {
+        this.friendRepository = friendRepository;
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    @PostConstruct
+    void load() {
+        long start = System.nanoTime();
+        int edges = transactionTemplate.execute(tx -> {
+            userRepository.findAllUserRefs().forEach(ref -> userIds.put(ref.getUsername(), ref.getId()));
+            int count = 0;
+            try (Stream<FriendRepository.FriendEdge> rows = friendRepository.streamAllEdges()) {
+                for (FriendRepository.FriendEdge edge : (Iterable<FriendRepository.FriendEdge>) rows::iterator) {
+                    // Rows only add, the reciprocal ACCEPTED row of a friendship is a no-op
+                    update(edge.getUserId(), edge.getFriendId(), edge.getStatus(), false);
+                    count++;
+                }
+            }
+            return count;
+        });
+        log.info("Friend graph loaded: {} users, {} friendship rows in {} ms",
+                userIds.size(), edges, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * @return the id of the user, or null if there is no such user.
+     */
+    public Long userId(String username) {
+        Long id = userIds.get(username);
+        if (id != null) return id;
+        // Registered since startup, ids never change so the answer is cached for good
+        id = userRepository.findIdByUsername(username).orElse(null);
+        if (id != null) userIds.put(username, id);
+        return id;
+    }
+
+    /**
+     * Ids of several users in the same order, 0 where there is no such user. Users missing
+     * from the cache are looked up in one query.
+     */
+    public long[] userIds(List<String> usernames) {
+        long[] ids = new long[usernames.size()];
+        Set<String> missing = null;
+        for (int i = 0; i < ids.length; i++) {
+            Long id = userIds.get(usernames.get(i));
+            if (id != null) {
+                ids[i] = id;
+            } else {
+                if (missing == null) missing = new HashSet<>();
+                missing.add(usernames.get(i));
+            }
+        }
+        if (missing == null) return ids;
+        for (UserRepository.UserRef ref : userRepository.findUserRefsByUsernameIn(missing)) {
+            userIds.put(ref.getUsername(), ref.getId());
+        }
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == 0) {
+                Long id = userIds.get(usernames.get(i));
+                if (id != null) ids[i] = id;
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * The relation of {@code userId} to {@code otherUserId}.
+     */
+    public Relation relation(long userId, long otherUserId) {
+        Node node = nodes.get(userId);
+        if (node == null) return Relation.NONE;
+        synchronized (node) {
+            if (node.blocked.contains(otherUserId)) return Relation.BLOCKED;
+            if (node.blockedBy.contains(otherUserId)) return Relation.BLOCKED_BY;
+            if (node.friends.contains(otherUserId)) return Relation.FRIENDS;
+            if (node.sent.contains(otherUserId)) return Relation.REQUEST_SENT;
+            if (node.received.contains(otherUserId)) return Relation.REQUEST_RECEIVED;
+            return Relation.NONE;
+        }
+    }
+
+    /**
+     * The user's friends in ascending id order. The array is shared, callers must not modify it.
+     */
+    public long[] friendIds(long userId) {
+        Node node = nodes.get(userId);
+        if (node == null) return SortedLongs.EMPTY;
+        synchronized (node) {
+            if (node.sortedFriends == null) {
+                node.sortedFriends = node.friends.toSortedArray();
+            }
+            return node.sortedFriends;
+        }
+    }
+
+    public int friendCount(long userId) {
+        Node node = nodes.get(userId);
+        if (node == null) return 0;
+        synchronized (node) {
+            return node.friends.size();
+        }
+    }
+
+    /**
+     * Number of pending requests sent to the user.
+     */
+    public int receivedCount(long userId) {
+        Node node = nodes.get(userId);
+        if (node == null) return 0;
+        synchronized (node) {
+            return node.received.size();
+        }
+    }
+
+    public boolean areFriends(long userId, long otherUserId) {
+        return relation(userId, otherUserId) == Relation.FRIENDS;
+    }
+
+    /**
+     * True if either user blocked the other.
+     */
+    public boolean isBlocked(long userId, long otherUserId) {
+        Relation relation = relation(userId, otherUserId);
+        return relation == Relation.BLOCKED || relation == Relation.BLOCKED_BY;
+    }
+
+    /**
+     * Applies a committed change, fallback for changes made outside a transaction. Runs
+     * before the listeners that cache what they derived from the graph.
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFriendshipChanged(FriendshipChangedEvent event) {
+        update(event.userId(), event.otherUserId(), event.status(), true);
+    }
+
+    private void update(long userId, long otherUserId, FriendshipStatus status, boolean replace) {
+        if (userId == otherUserId) return;
+        Node node = node(userId);
+        Node other = node(otherUserId);
+        Node first = userId < otherUserId ? node : other;
+        Node second = first == node ? other : node;
+        synchronized (first) {
+            synchronized (second) {
+                if (replace) {
+                    removeFrom(node, otherUserId);
+                    removeFrom(other, userId);
+                }
+                link(node, userId, other, otherUserId, status);
+            }
+        }
+    }
+
+    private Node node(long userId) {
+        return nodes.computeIfAbsent(userId, id -> new Node());
+    }
+
+    private static void link(Node node, long userId, Node other, long otherUserId, FriendshipStatus status) {
+        switch (status) {
+            case ACCEPTED -> {
+                node.friends.add(otherUserId);
+                other.friends.add(userId);
+                node.sortedFriends = null;
+                other.sortedFriends = null;
+            }
+            case PENDING -> {
+                node.sent.add(otherUserId);
+                other.received.add(userId);
+            }
+            case BLOCKED -> {
+                node.blocked.add(otherUserId);
+                other.blockedBy.add(userId);
+            }
+            case UNRELATED -> {
+            }
+        }
+    }
+
+    private static void removeFrom(Node node, long id) {
+        if (node.friends.remove(id)) node.sortedFriends = null;
+        node.sent.remove(id);
+        node.received.remove(id);
+        node.blocked.remove(id);
+        node.blockedBy.remove(id);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("syncrift.friend.graph.users", nodes, Map::size)
+                .description("Users with at least one relation in the friend graph")
+                .register(registry);
+    }
+}
@@ -0,0 +1,115 @@
+package com.hexplatoon.syncrift_backend.service.friend;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing set of positive longs (database ids), linear probing with backward shift
+ * deletion so no tombstones build up. Not thread safe.
+ */
+final class LongHashSet {
+
+    private static final long[] EMPTY = new long[0];
+    // Ids start at 1, 0 marks a free slot
+    private static final long FREE = 0;
+
+    private long[] slots = EMPTY;
+    private int size;
+
+    boolean contains(long value) {
+        long[] table = slots;
+        if (size == 0) return false;
+        int mask = table.length - 1;
+        for (int i = mix(value) & mask; ; i = (i + 1) & mask) {
+            long slot = table[i];
+            if (slot == value) return true;
+            if (slot == FREE) return false;
+        }
+    }
+
+    /**
+     * @return false if it was already there.
+     */
+    boolean add(long value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("Only positive ids can be stored: " + value);
+        }
+        // Kept at most half full
+        if ((size + 1) * 2 > slots.length) {
+            resize(Math.max(4, slots.length * 2));
+        }
+        int mask = slots.length - 1;
+        for (int i = mix(value) & mask; ; i = (i + 1) & mask) {
+            long slot = slots[i];
+            if (slot == value) return false;
+            if (slot == FREE) {
+                slots[i] = value;
+                size++;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return false if it was not there.
+     */
+    boolean remove(long value) {
+        if (size == 0) return false;
+        int mask = slots.length - 1;
+        int i = mix(value) & mask;
+        while (slots[i] != value) {
+            if (slots[i] == FREE) return false;
+            i = (i + 1) & mask;
+        }
+        // Shift back the following entries that probed past the freed slot
+        int free = i;
+        for (int j = (i + 1) & mask; slots[j] != FREE; j = (j + 1) & mask) {
+            int home = mix(slots[j]) & mask;
+            // Movable unless its home lies cyclically in (free, j]
+            if (free <= j ? (home <= free || home > j) : (home <= free && home > j)) {
+                slots[free] = slots[j];
+                free = j;
+            }
+        }
+        slots[free] = FREE;
+        size--;
+        if (size == 0) slots = EMPTY;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * The values in ascending order.
+     */
+    long[] toSortedArray() {
+        long[] values = new long[size];
+        int n = 0;
+        for (long slot : slots) {
+            if (slot != FREE) values[n++] = slot;
+        }
+        Arrays.sort(values);
+        return values;
+    }
+
+    private void resize(int capacity) {
+        long[] old = slots;
+        slots = new long[capacity];
+        int mask = capacity - 1;
+        for (long value : old) {
+            if (value == FREE) continue;
+            int i = mix(value) & mask;
+            while (slots[i] != FREE) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = value;
+        }
+    }
+
+    private static int mix(long value) {
+        // Sequential ids would otherwise fill one run of slots
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
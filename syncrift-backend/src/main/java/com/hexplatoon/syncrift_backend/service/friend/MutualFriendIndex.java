@@ -0,0 +1,136 @@
+package com.hexplatoon.syncrift_backend.service.friend;
+
+import com.hexplatoon.syncrift_backend.event.FriendshipChangedEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mutual friends and "people you may know", from the sorted friend arrays of the
+ * {@link FriendGraph}. Mutual friends of two users are the galloping intersection of their
+ * arrays. Suggestions are the friends of friends the user has no relation with, ranked by
+ * how many friends they share, and are cached per user until a change touches them.
+ */
+@Component
+public class MutualFriendIndex implements MeterBinder {
+
+    /**
+     * A suggested user and the number of friends they share with the asking user.
+     */
+    public record Suggestion(long userId, int mutualFriends) {
+    }
+
+    // Most mutual friends first, then the oldest account
+    private static final Comparator<Suggestion> RANKING = Comparator
+            .comparingInt(Suggestion::mutualFriends).reversed()
+            .thenComparingLong(Suggestion::userId);
+
+    private final FriendGraph friendGraph;
+    private final int maxSuggestions;
+    private final Map<Long, List<Suggestion>> suggestions = new ConcurrentHashMap<>();
+
+    public MutualFriendIndex(FriendGraph friendGraph,
+                             @Value("${friends.suggestions.max:20}") int maxSuggestions) {
+        this.friendGraph = friendGraph;
+        this.maxSuggestions = maxSuggestions;
+    }
+
+    public long[] mutualFriendIds(long userId, long otherUserId) {
+        return SortedLongs.intersect(friendGraph.friendIds(userId), friendGraph.friendIds(otherUserId));
+    }
+
+    public int mutualFriendCount(long userId, long otherUserId) {
+        return SortedLongs.intersectionSize(friendGraph.friendIds(userId), friendGraph.friendIds(otherUserId));
+    }
+
+    /**
+     * The best suggestions for the user, at most {@code friends.suggestions.max}.
+     */
+    public List<Suggestion> suggestions(long userId, int limit) {
+        // Computed under the map's bin lock, an invalidation waits for it and drops the result
+        List<Suggestion> ranked = suggestions.computeIfAbsent(userId, this::rank);
+        return ranked.subList(0, Math.min(Math.max(limit, 0), ranked.size()));
+    }
+
+    private List<Suggestion> rank(long userId) {
+        long[] friends = friendGraph.friendIds(userId);
+        if (friends.length == 0) return List.of();
+
+        // Every friend of a friend once per friend in common, counted by sorting
+        long[][] lists = new long[friends.length][];
+        int total = 0;
+        for (int i = 0; i < friends.length; i++) {
+            lists[i] = friendGraph.friendIds(friends[i]);
+            total += lists[i].length;
+        }
+        long[] candidates = new long[total];
+        int n = 0;
+        for (long[] list : lists) {
+            System.arraycopy(list, 0, candidates, n, list.length);
+            n += list.length;
+        }
+        Arrays.sort(candidates);
+
+        // Worst of the kept suggestions at the head
+        PriorityQueue<Suggestion> best = new PriorityQueue<>(maxSuggestions + 1, RANKING.reversed());
+        for (int i = 0; i < n; ) {
+            long candidate = candidates[i];
+            int j = i;
+            while (j < n && candidates[j] == candidate) j++;
+            int mutual = j - i;
+            i = j;
+            // Friends, pending requests and blocks in either direction are not suggested
+            if (candidate == userId || friendGraph.relation(userId, candidate) != FriendGraph.Relation.NONE) {
+                continue;
+            }
+            Suggestion suggestion = new Suggestion(candidate, mutual);
+            if (best.size() < maxSuggestions) {
+                best.add(suggestion);
+            } else if (RANKING.compare(suggestion, best.peek()) < 0) {
+                best.poll();
+                best.add(suggestion);
+            }
+        }
+        List<Suggestion> ranked = new ArrayList<>(best);
+        ranked.sort(RANKING);
+        return List.copyOf(ranked);
+    }
+
+    /**
+     * Drops the suggestions the change can affect: those of both users, and of their friends
+     * who gained or lost a friend of a friend. Runs after the graph applied the change.
+     */
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFriendshipChanged(FriendshipChangedEvent event) {
+        invalidate(event.userId());
+        invalidate(event.otherUserId());
+    }
+
+    private void invalidate(long userId) {
+        suggestions.remove(userId);
+        for (long friendId : friendGraph.friendIds(userId)) {
+            suggestions.remove(friendId);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("syncrift.friend.suggestions.cached", suggestions, Map::size)
+                .description("Users with cached friend suggestions")
+                .register(registry);
+    }
+}
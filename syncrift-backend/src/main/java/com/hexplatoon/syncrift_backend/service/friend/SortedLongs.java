@@ -0,0 +1,77 @@
+package com.hexplatoon.syncrift_backend.service.friend;
+
+import java.util.Arrays;
+
+/**
+ * Set operations on ascending arrays of distinct longs. The intersections walk the shorter
+ * array and gallop through the longer one, O(m log(n / m)), so a user with a handful of
+ * friends against one with thousands costs a handful of short searches, and two lists of
+ * similar size degrade gracefully to a merge.
+ */
+final class SortedLongs {
+
+    static final long[] EMPTY = new long[0];
+
+    private SortedLongs() {
+    }
+
+    static long[] intersect(long[] a, long[] b) {
+        long[] small = a.length <= b.length ? a : b;
+        long[] large = small == a ? b : a;
+        long[] common = new long[small.length];
+        int n = 0;
+        int j = 0;
+        for (long value : small) {
+            j = gallop(large, j, value);
+            if (j == large.length) break;
+            if (large[j] == value) {
+                common[n++] = value;
+                j++;
+            }
+        }
+        return n == 0 ? EMPTY : Arrays.copyOf(common, n);
+    }
+
+    static int intersectionSize(long[] a, long[] b) {
+        long[] small = a.length <= b.length ? a : b;
+        long[] large = small == a ? b : a;
+        int n = 0;
+        int j = 0;
+        for (long value : small) {
+            j = gallop(large, j, value);
+            if (j == large.length) break;
+            if (large[j] == value) {
+                n++;
+                j++;
+            }
+        }
+        return n;
+    }
+
+    static boolean contains(long[] values, long value) {
+        return Arrays.binarySearch(values, value) >= 0;
+    }
+
+    /**
+     * Index of the first element of {@code values} from {@code from} on that is not below
+     * {@code key}, {@code values.length} if there is none.
+     */
+    static int gallop(long[] values, int from, long key) {
+        int bound = 1;
+        while (from + bound < values.length && values[from + bound] < key) {
+            bound <<= 1;
+        }
+        // values[from + bound / 2] < key unless bound is 1, values[from + bound] >= key if it exists
+        int low = from + (bound >>> 1);
+        int high = Math.min(from + bound, values.length);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
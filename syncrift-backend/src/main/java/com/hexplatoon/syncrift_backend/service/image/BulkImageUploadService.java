@@ -0,0 +1,278 @@
+package com.hexplatoon.syncrift_backend.service.image;
+
+import com.hexplatoon.syncrift_backend.dto.image.BulkUploadItemDto;
+import com.hexplatoon.syncrift_backend.dto.image.BulkUploadJobDto;
+import com.hexplatoon.syncrift_backend.entity.Image;
+import com.hexplatoon.syncrift_backend.exception.ImageUploadRejectedException;
+import com.hexplatoon.syncrift_backend.service.ImageUploadService;
+import com.hexplatoon.syncrift_backend.service.image.BulkUploadJob.Item;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Seeds CSS battle targets in bulk. A batch (multipart files and/or a ZIP archive) is
+ * spooled to temp files, hashed on the way, then every image is read back and goes through
+ * {@link ImageUploadService} on a bounded worker pool, so the heap only ever holds the items
+ * being processed. Content already stored, or repeated inside the batch, is not uploaded
+ * again. Jobs are kept for a while so their failed items can be retried on their own.
+ */
+@Slf4j
+@Service
+public class BulkImageUploadService {
+
+    private static final long MAX_ITEM_BYTES = 10L * 1024 * 1024;
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of("png", "jpg", "jpeg", "gif", "bmp", "webp");
+
+    /**
+     * Receives the progress of a run, from worker threads.
+     */
+    public interface Listener {
+        void onItem(BulkUploadItemDto item);
+
+        /** Called once every item of the run has finished, successfully or not. */
+        void onComplete(BulkUploadJobDto job);
+    }
+
+    private final ImageUploadService imageUploadService;
+    private final Executor bulkUploadExecutor;
+    private final int maxItems;
+    private final long maxBatchBytes;
+    private final long retentionMillis;
+    private final Map<String, BulkUploadJob> jobs = new ConcurrentHashMap<>();
+
+    public BulkImageUploadService(ImageUploadService imageUploadService,
+                                  @Qualifier("bulkUploadExecutor") Executor bulkUploadExecutor,
+                                  @Value("${image.bulk.max-items:500}") int maxItems,
+                                  @Value("${image.bulk.max-batch-mb:200}") int maxBatchMegabytes,
+                                  @Value("${image.bulk.job-retention-minutes:60}") long retentionMinutes) {
+        this.imageUploadService = imageUploadService;
+        this.bulkUploadExecutor = bulkUploadExecutor;
+        this.maxItems = maxItems;
+        this.maxBatchBytes = maxBatchMegabytes * 1024L * 1024;
+        this.retentionMillis = TimeUnit.MINUTES.toMillis(retentionMinutes);
+    }
+
+    /**
+     * Reads the batch and starts processing it. Items rejected while reading (too large, not
+     * an image) are reported as failed right away.
+     *
+     * @throws IllegalArgumentException if the batch is empty or over the item or size limits
+     */
+    public BulkUploadJob submit(List<MultipartFile> images, MultipartFile archive, Image.Difficulty difficulty,
+                                Listener listener) throws IOException {
+        List<Item> items = new ArrayList<>();
+        long[] totalBytes = {0};
+        try {
+            if (images != null) {
+                for (MultipartFile image : images) {
+                    if (image.isEmpty()) {
+                        continue;
+                    }
+                    try (InputStream in = image.getInputStream()) {
+                        addItem(items, totalBytes, image.getOriginalFilename(), in);
+                    }
+                }
+            }
+            if (archive != null && !archive.isEmpty()) {
+                try (ZipInputStream zip = new ZipInputStream(archive.getInputStream())) {
+                    ZipEntry entry;
+                    while ((entry = zip.getNextEntry()) != null) {
+                        if (!entry.isDirectory() && isImageEntry(entry.getName())) {
+                            addItem(items, totalBytes, entry.getName(), zip);
+                        }
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            items.forEach(Item::discardContent);
+            throw e;
+        }
+        if (items.isEmpty()) {
+            throw new IllegalArgumentException("No images in the batch");
+        }
+
+        BulkUploadJob job = new BulkUploadJob(items, difficulty);
+        jobs.put(job.getId(), job);
+        log.info("Bulk upload {} started with {} items ({} KB)", job.getId(), items.size(), totalBytes[0] >> 10);
+
+        List<Item> runnable = items.stream().filter(Item::hasContent).toList();
+        for (Item item : items) {
+            if (!item.hasContent()) {
+                listener.onItem(item.toDto(job.getId()));
+            }
+        }
+        run(job, runnable, listener);
+        return job;
+    }
+
+    /**
+     * Processes the failed items of a job again, from the files spooled by the first run.
+     *
+     * @return empty if the job is unknown or expired
+     * @throws IllegalStateException if the job is still running
+     */
+    public Optional<BulkUploadJob> retry(String jobId, Listener listener) {
+        BulkUploadJob job = jobs.get(jobId);
+        if (job == null) {
+            return Optional.empty();
+        }
+        List<Item> retry = job.resetFailed();
+        log.info("Bulk upload {}: retrying {} items", jobId, retry.size());
+        run(job, retry, listener);
+        return Optional.of(job);
+    }
+
+    public Optional<BulkUploadJobDto> find(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId)).map(job -> job.toDto(true));
+    }
+
+    private void run(BulkUploadJob job, List<Item> items, Listener listener) {
+        if (items.isEmpty()) {
+            listener.onComplete(job.toDto(false));
+            return;
+        }
+        AtomicInteger remaining = new AtomicInteger(items.size());
+        for (Item item : items) {
+            try {
+                bulkUploadExecutor.execute(() -> process(job, item, listener, remaining));
+            } catch (TaskRejectedException e) {
+                item.failed("Server busy, retry later");
+                finish(job, item, listener, remaining);
+            }
+        }
+    }
+
+    private void process(BulkUploadJob job, Item item, Listener listener, AtomicInteger remaining) {
+        try {
+            item.processing();
+            String contentHash = item.contentHash();
+            Item owner = job.claim(item, contentHash);
+            if (owner != item) {
+                item.duplicateOf(owner);
+                return;
+            }
+            // Only referenced from this frame, the bytes are dropped as soon as the item is done
+            byte[] content = item.readContent();
+            ImageUploadService.IngestResult result = imageUploadService.uploadImage(content, contentHash, job.difficulty());
+            item.stored(result.image(), result.duplicate());
+        } catch (IllegalArgumentException | ImageUploadRejectedException | IOException e) {
+            item.failed(e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Bulk upload {}: item {} failed", job.getId(), item.index(), e);
+            item.failed("Unexpected error: " + e.getMessage());
+        } finally {
+            finish(job, item, listener, remaining);
+        }
+    }
+
+    private static void finish(BulkUploadJob job, Item item, Listener listener, AtomicInteger remaining) {
+        job.touch();
+        listener.onItem(item.toDto(job.getId()));
+        if (remaining.decrementAndGet() == 0) {
+            BulkUploadJobDto summary = job.toDto(false);
+            log.info("Bulk upload {} run finished: {} uploaded, {} duplicates, {} failed",
+                    job.getId(), summary.getUploaded(), summary.getDuplicates(), summary.getFailed());
+            listener.onComplete(summary);
+        }
+    }
+
+    private void addItem(List<Item> items, long[] totalBytes, String name, InputStream in) throws IOException {
+        if (items.size() >= maxItems) {
+            throw new IllegalArgumentException("A batch can hold at most " + maxItems + " images");
+        }
+        int index = items.size();
+        Path spool = Files.createTempFile("syncrift-bulk-", ".upload");
+        MessageDigest digest = ContentHash.newDigest();
+        long size;
+        try (OutputStream out = new DigestOutputStream(Files.newOutputStream(spool), digest)) {
+            // Copy one byte past the limit to tell an oversized item from one exactly at it
+            size = copy(in, out, MAX_ITEM_BYTES + 1);
+        } catch (IOException e) {
+            Files.deleteIfExists(spool);
+            throw e;
+        }
+        if (size == 0 || size > MAX_ITEM_BYTES) {
+            Files.deleteIfExists(spool);
+            items.add(Item.rejected(index, name, size == 0 ? "Cannot upload empty file" : "File size must be less than 10MB"));
+            return;
+        }
+        Item item = new Item(index, name, spool, ContentHash.toHex(digest.digest()));
+        items.add(item);
+        totalBytes[0] += size;
+        if (totalBytes[0] > maxBatchBytes) {
+            throw new IllegalArgumentException("A batch can hold at most " + (maxBatchBytes >> 20) + " MB of images");
+        }
+    }
+
+    /**
+     * Copies at most {@code limit} bytes, the input is left open.
+     * @return The number of bytes copied.
+     */
+    private static long copy(InputStream in, OutputStream out, long limit) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long copied = 0;
+        int read;
+        while (copied < limit && (read = in.read(buffer, 0, (int) Math.min(buffer.length, limit - copied))) != -1) {
+            out.write(buffer, 0, read);
+            copied += read;
+        }
+        return copied;
+    }
+
+    private static boolean isImageEntry(String name) {
+        String fileName = name.substring(name.lastIndexOf('/') + 1);
+        // Skip hidden files and the resource forks macOS adds to archives
+        if (fileName.startsWith(".") || name.startsWith("__MACOSX/")) {
+            return false;
+        }
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 && IMAGE_EXTENSIONS.contains(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Drops the finished jobs idle for longer than the retention, with their spooled files.
+     */
+    @Scheduled(fixedDelayString = "${image.bulk.purge-interval-ms:60000}",
+            initialDelayString = "${image.bulk.purge-interval-ms:60000}")
+    public void purgeExpiredJobs() {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        for (BulkUploadJob job : jobs.values()) {
+            if (!job.isRunning() && job.lastActivityMillis() < cutoff && jobs.remove(job.getId(), job)) {
+                job.discard();
+                log.info("Bulk upload {} expired", job.getId());
+            }
+        }
+    }
+
+    @PreDestroy
+    void discardAll() {
+        jobs.values().forEach(BulkUploadJob::discard);
+        jobs.clear();
+    }
+}
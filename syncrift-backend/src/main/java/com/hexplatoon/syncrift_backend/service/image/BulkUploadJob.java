@@ -0,0 +1,252 @@
+package com.hexplatoon.syncrift_backend.service.image;
+
+import com.hexplatoon.syncrift_backend.dto.image.BulkUploadItemDto;
+import com.hexplatoon.syncrift_backend.dto.image.BulkUploadItemDto.Status;
+import com.hexplatoon.syncrift_backend.dto.image.BulkUploadJobDto;
+import com.hexplatoon.syncrift_backend.entity.Image;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * State of one bulk upload. The encoded bytes of an item are spooled to a temp file that is
+ * kept only until the item succeeds, so a failed item can be retried without the client
+ * sending the batch again.
+ */
+public class BulkUploadJob {
+
+    private final String id = UUID.randomUUID().toString();
+    private final List<Item> items;
+    private final Image.Difficulty difficulty;
+    // Content hash -> first item of the batch with that content
+    private final Map<String, Item> byHash = new ConcurrentHashMap<>();
+    private volatile long lastActivityMillis = System.currentTimeMillis();
+
+    BulkUploadJob(List<Item> items, Image.Difficulty difficulty) {
+        this.items = Collections.unmodifiableList(items);
+        this.difficulty = difficulty;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    Image.Difficulty difficulty() {
+        return difficulty;
+    }
+
+    List<Item> items() {
+        return items;
+    }
+
+    long lastActivityMillis() {
+        return lastActivityMillis;
+    }
+
+    void touch() {
+        lastActivityMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the item that owns this content in the batch: {@code item} itself if it is
+     * the first one to claim the hash.
+     */
+    Item claim(Item item, String contentHash) {
+        Item owner = byHash.putIfAbsent(contentHash, item);
+        return owner == null ? item : owner;
+    }
+
+    /**
+     * Moves the retryable failed items back to pending and returns them.
+     *
+     * @throws IllegalStateException if items of the job are still being processed
+     */
+    synchronized List<Item> resetFailed() {
+        if (isRunning()) {
+            throw new IllegalStateException("Bulk upload " + id + " is still running");
+        }
+        List<Item> retry = new ArrayList<>();
+        for (Item item : items) {
+            if (item.isRetryable()) {
+                item.pending();
+                retry.add(item);
+            }
+        }
+        touch();
+        return retry;
+    }
+
+    /**
+     * Deletes the spooled files of every item, once the job is dropped.
+     */
+    void discard() {
+        for (Item item : items) {
+            item.discardContent();
+        }
+    }
+
+    public boolean isRunning() {
+        for (Item item : items) {
+            if (item.status() == Status.PENDING || item.status() == Status.PROCESSING) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param withItems whether to list every item, the NDJSON summary line omits them
+     */
+    public BulkUploadJobDto toDto(boolean withItems) {
+        int uploaded = 0, duplicates = 0, failed = 0, pending = 0;
+        List<BulkUploadItemDto> itemDtos = withItems ? new ArrayList<>(items.size()) : null;
+        for (Item item : items) {
+            BulkUploadItemDto dto = item.toDto(id);
+            switch (dto.getStatus()) {
+                case UPLOADED -> uploaded++;
+                case DUPLICATE -> duplicates++;
+                case FAILED -> failed++;
+                default -> pending++;
+            }
+            if (withItems) {
+                itemDtos.add(dto);
+            }
+        }
+        return BulkUploadJobDto.builder()
+                .jobId(id)
+                .done(pending == 0)
+                .total(items.size())
+                .uploaded(uploaded)
+                .duplicates(duplicates)
+                .failed(failed)
+                .pending(pending)
+                .items(itemDtos)
+                .build();
+    }
+
+    static final class Item {
+
+        private final int index;
+        private final String name;
+        private final String contentHash;
+        private Path spool;
+        private Status status;
+        private Long imageId;
+        private String cloudinaryUrl;
+        private String message;
+
+        /**
+         * @param spool File holding the encoded image, deleted once the item is done.
+         * @param contentHash {@link ContentHash} of the file.
+         */
+        Item(int index, String name, Path spool, String contentHash) {
+            this.index = index;
+            this.name = name;
+            this.spool = spool;
+            this.contentHash = contentHash;
+            this.status = Status.PENDING;
+        }
+
+        /** An item rejected while reading the batch, it has no content to retry with. */
+        static Item rejected(int index, String name, String message) {
+            Item item = new Item(index, name, null, null);
+            item.status = Status.FAILED;
+            item.message = message;
+            return item;
+        }
+
+        int index() {
+            return index;
+        }
+
+        synchronized Status status() {
+            return status;
+        }
+
+        synchronized boolean hasContent() {
+            return spool != null;
+        }
+
+        /**
+         * Reads the spooled image back into memory.
+         */
+        byte[] readContent() throws IOException {
+            Path file;
+            synchronized (this) {
+                file = spool;
+            }
+            if (file == null) {
+                throw new IOException("Content of item " + index + " was discarded");
+            }
+            return Files.readAllBytes(file);
+        }
+
+        synchronized boolean isRetryable() {
+            return status == Status.FAILED && spool != null;
+        }
+
+        String contentHash() {
+            return contentHash;
+        }
+
+        synchronized void pending() {
+            status = Status.PENDING;
+            message = null;
+        }
+
+        synchronized void processing() {
+            status = Status.PROCESSING;
+        }
+
+        synchronized void stored(Image image, boolean duplicate) {
+            status = duplicate ? Status.DUPLICATE : Status.UPLOADED;
+            imageId = image.getId();
+            cloudinaryUrl = image.getCloudinaryUrl();
+            message = duplicate ? "Already uploaded" : null;
+            discardContent();
+        }
+
+        synchronized void duplicateOf(Item owner) {
+            status = Status.DUPLICATE;
+            message = "Same content as item " + owner.index;
+            discardContent();
+        }
+
+        synchronized void discardContent() {
+            if (spool == null) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(spool);
+            } catch (IOException e) {
+                // Left to the temp directory cleanup
+            }
+            spool = null;
+        }
+
+        synchronized void failed(String reason) {
+            status = Status.FAILED;
+            message = reason;
+        }
+
+        synchronized BulkUploadItemDto toDto(String jobId) {
+            return BulkUploadItemDto.builder()
+                    .jobId(jobId)
+                    .index(index)
+                    .name(name)
+                    .status(status)
+                    .imageId(imageId)
+                    .cloudinaryUrl(cloudinaryUrl)
+                    .message(message)
+                    .retryable(status == Status.FAILED ? spool != null : null)
+                    .build();
+        }
+    }
+}
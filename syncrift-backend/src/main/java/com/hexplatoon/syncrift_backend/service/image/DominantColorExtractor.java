@@ -0,0 +1,357 @@
+package com.hexplatoon.syncrift_backend.service.image;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Finds the dominant colors of an image without boxing a single pixel.
+ * <p>
+ * Colors are quantized to 5 bits per channel, which turns the histogram into a flat
+ * {@code int[32768]} indexed by the quantized color. Row bands are histogrammed in parallel
+ * straight from the raster's {@link DataBuffer} and merged. Every bin also keeps the sum of
+ * the exact colors that fell into it, so the reported colors are the real colors of the
+ * image rather than bin centers. Median cut then merges near-duplicate bins (anti-aliasing,
+ * gradients, JPEG noise) so the palette contains visibly distinct colors.
+ */
+@Component
+public class DominantColorExtractor {
+
+    private static final int BITS = 5;
+    private static final int BINS = 1 << (3 * BITS);
+    // Each band allocates its own histogram, so bands are few and large
+    private static final int MIN_ROWS_PER_BAND = 64;
+
+    private final boolean medianCut;
+
+    public DominantColorExtractor(@Value("${image.palette.median-cut:true}") boolean medianCut) {
+        this.medianCut = medianCut;
+    }
+
+    /**
+     * @return up to {@code maxColors} colors as {@code #RRGGBB}, most frequent first
+     */
+    public List<String> extract(BufferedImage image, int maxColors) {
+        Histogram histogram = histogram(image);
+        List<Integer> colors = medianCut
+                ? histogram.medianCut(maxColors)
+                : histogram.mostFrequent(maxColors);
+
+        List<String> hexCodes = new ArrayList<>(colors.size());
+        for (int rgb : colors) {
+            hexCodes.add(String.format("#%06X", rgb & 0xFFFFFF));
+        }
+        return hexCodes;
+    }
+
+    Histogram histogram(BufferedImage image) {
+        int height = image.getHeight();
+        int bands = Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism() + 1, height / MIN_ROWS_PER_BAND));
+        RowReader reader = RowReader.of(image);
+        return IntStream.range(0, bands)
+                .parallel()
+                .mapToObj(band -> {
+                    Histogram partial = new Histogram();
+                    int to = (int) ((long) height * (band + 1) / bands);
+                    for (int y = (int) ((long) height * band / bands); y < to; y++) {
+                        reader.readRow(y, partial);
+                    }
+                    return partial;
+                })
+                .reduce(Histogram::merge)
+                .orElseGet(Histogram::new);
+    }
+
+    /**
+     * Reads one row of pixels into a histogram, specialised on the raster layout.
+     */
+    private interface RowReader {
+
+        void readRow(int y, Histogram histogram);
+
+        static RowReader of(BufferedImage image) {
+            Raster raster = image.getRaster();
+            ColorModel colorModel = image.getColorModel();
+            DataBuffer buffer = raster.getDataBuffer();
+            boolean rgb = colorModel.getColorSpace().getType() == ColorSpace.TYPE_RGB;
+            boolean untranslated = raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0;
+
+            if (rgb && untranslated && buffer instanceof DataBufferInt ints && buffer.getNumBanks() == 1
+                    && colorModel instanceof DirectColorModel
+                    && raster.getSampleModel() instanceof SinglePixelPackedSampleModel packed) {
+                return intPackedReader(image, ints.getData(), ints.getOffset(), packed);
+            }
+            if (rgb && untranslated && buffer instanceof DataBufferByte bytes && buffer.getNumBanks() == 1
+                    && colorModel instanceof ComponentColorModel && colorModel.getComponentSize(0) == 8
+                    && raster.getSampleModel() instanceof ComponentSampleModel interleaved
+                    && raster.getNumBands() >= 3) {
+                return byteInterleavedReader(image, bytes.getData(), bytes.getOffset(), interleaved);
+            }
+            return genericReader(image);
+        }
+
+        // TYPE_INT_RGB, TYPE_INT_ARGB, TYPE_INT_BGR...
+        private static RowReader intPackedReader(BufferedImage image, int[] data, int offset,
+                                                 SinglePixelPackedSampleModel model) {
+            int width = image.getWidth();
+            int stride = model.getScanlineStride();
+            int[] shifts = model.getBitOffsets();
+            int rShift = shifts[0];
+            int gShift = shifts[1];
+            int bShift = shifts[2];
+            int aShift = image.getColorModel().hasAlpha() && shifts.length > 3 ? shifts[3] : -1;
+            return (y, histogram) -> {
+                int row = offset + y * stride;
+                for (int x = 0; x < width; x++) {
+                    int pixel = data[row + x];
+                    if (aShift >= 0 && ((pixel >>> aShift) & 0xFF) == 0) continue;
+                    histogram.add((pixel >>> rShift) & 0xFF, (pixel >>> gShift) & 0xFF, (pixel >>> bShift) & 0xFF);
+                }
+            };
+        }
+
+        // TYPE_3BYTE_BGR, TYPE_4BYTE_ABGR and the interleaved rasters ImageIO returns for PNG
+        private static RowReader byteInterleavedReader(BufferedImage image, byte[] data, int offset,
+                                                       ComponentSampleModel model) {
+            int width = image.getWidth();
+            int stride = model.getScanlineStride();
+            int pixelStride = model.getPixelStride();
+            int[] bandOffsets = model.getBandOffsets();
+            int[] banks = model.getBankIndices();
+            for (int bank : banks) {
+                if (bank != 0) return genericReader(image);
+            }
+            int r = bandOffsets[0];
+            int g = bandOffsets[1];
+            int b = bandOffsets[2];
+            int a = image.getColorModel().hasAlpha() && bandOffsets.length > 3 ? bandOffsets[3] : -1;
+            return (y, histogram) -> {
+                int i = offset + y * stride;
+                for (int x = 0; x < width; x++, i += pixelStride) {
+                    if (a >= 0 && data[i + a] == 0) continue;
+                    histogram.add(data[i + r] & 0xFF, data[i + g] & 0xFF, data[i + b] & 0xFF);
+                }
+            };
+        }
+
+        // Indexed, gray, 16 bit... converted by Java2D one row at a time
+        private static RowReader genericReader(BufferedImage image) {
+            int width = image.getWidth();
+            boolean alpha = image.getColorModel().hasAlpha();
+            ThreadLocal<int[]> rows = ThreadLocal.withInitial(() -> new int[width]);
+            return (y, histogram) -> {
+                int[] row = rows.get();
+                image.getRGB(0, y, width, 1, row, 0, width);
+                for (int pixel : row) {
+                    if (alpha && (pixel >>> 24) == 0) continue;
+                    histogram.add((pixel >> 16) & 0xFF, (pixel >> 8) & 0xFF, pixel & 0xFF);
+                }
+            };
+        }
+    }
+
+    /**
+     * Quantized color counts plus the per-bin sums of the exact channel values.
+     */
+    static final class Histogram {
+
+        private static final int SHIFT = 8 - BITS;
+
+        private final int[] counts = new int[BINS];
+        // r, g, b sums interleaved per bin
+        private final long[] sums = new long[BINS * 3];
+
+        void add(int r, int g, int b) {
+            int bin = ((r >> SHIFT) << (2 * BITS)) | ((g >> SHIFT) << BITS) | (b >> SHIFT);
+            counts[bin]++;
+            int s = bin * 3;
+            sums[s] += r;
+            sums[s + 1] += g;
+            sums[s + 2] += b;
+        }
+
+        Histogram merge(Histogram other) {
+            for (int i = 0; i < BINS; i++) {
+                counts[i] += other.counts[i];
+            }
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] += other.sums[i];
+            }
+            return this;
+        }
+
+        /**
+         * Mean exact color of a bin.
+         */
+        private int color(int bin) {
+            int count = counts[bin];
+            int s = bin * 3;
+            int r = (int) ((sums[s] + count / 2) / count);
+            int g = (int) ((sums[s + 1] + count / 2) / count);
+            int b = (int) ((sums[s + 2] + count / 2) / count);
+            return (r << 16) | (g << 8) | b;
+        }
+
+        List<Integer> mostFrequent(int maxColors) {
+            List<Integer> bins = new ArrayList<>();
+            for (int bin = 0; bin < BINS; bin++) {
+                if (counts[bin] > 0) bins.add(bin);
+            }
+            bins.sort(Comparator.comparingInt((Integer bin) -> counts[bin]).reversed());
+            List<Integer> colors = new ArrayList<>(Math.min(maxColors, bins.size()));
+            for (int i = 0; i < bins.size() && i < maxColors; i++) {
+                colors.add(color(bins.get(i)));
+            }
+            return colors;
+        }
+
+        /**
+         * Splits the occupied bins into at most {@code maxColors} boxes, always cutting the box
+         * with the largest weighted color variance at the weighted median of its most varying
+         * channel. Variance rather than extent keeps thin anti-aliased edges from winning a
+         * palette slot. Each box is represented by its most populated bin, so flat regions keep
+         * their exact color.
+         */
+        List<Integer> medianCut(int maxColors) {
+            int occupied = 0;
+            for (int count : counts) {
+                if (count > 0) occupied++;
+            }
+            if (occupied == 0 || maxColors <= 0) {
+                return List.of();
+            }
+
+            int[] bins = new int[occupied];
+            for (int bin = 0, i = 0; bin < BINS; bin++) {
+                if (counts[bin] > 0) bins[i++] = bin;
+            }
+
+            List<Box> boxes = new ArrayList<>();
+            boxes.add(new Box(bins, 0, occupied));
+            while (boxes.size() < maxColors) {
+                Box worst = null;
+                for (Box box : boxes) {
+                    if (box.to - box.from > 1 && box.error > 0 && (worst == null || box.error > worst.error)) {
+                        worst = box;
+                    }
+                }
+                if (worst == null) {
+                    break;
+                }
+                boxes.remove(worst);
+                boxes.addAll(worst.split());
+            }
+
+            boxes.sort(Comparator.comparingLong((Box box) -> box.population).reversed());
+            List<Integer> colors = new ArrayList<>(boxes.size());
+            for (Box box : boxes) {
+                colors.add(color(box.peak()));
+            }
+            return colors;
+        }
+
+        private static int channel(int bin, int channel) {
+            return (bin >> ((2 - channel) * BITS)) & ((1 << BITS) - 1);
+        }
+
+        /**
+         * Contiguous slice of the shared bin array.
+         */
+        private final class Box {
+            private final int[] bins;
+            private final int from;
+            private final int to;
+            private final long population;
+            // Weighted sum of squared distances to the box mean, in bin units
+            private final double error;
+            private final int splitChannel;
+
+            private Box(int[] bins, int from, int to) {
+                this.bins = bins;
+                this.from = from;
+                this.to = to;
+                long total = 0;
+                double[] sum = new double[3];
+                double[] sumSquares = new double[3];
+                for (int i = from; i < to; i++) {
+                    int bin = bins[i];
+                    long count = counts[bin];
+                    total += count;
+                    for (int c = 0; c < 3; c++) {
+                        int v = channel(bin, c);
+                        sum[c] += (double) count * v;
+                        sumSquares[c] += (double) count * v * v;
+                    }
+                }
+                this.population = total;
+
+                double error = 0;
+                int channel = 0;
+                double channelError = -1;
+                for (int c = 0; c < 3; c++) {
+                    double e = sumSquares[c] - sum[c] * sum[c] / total;
+                    error += e;
+                    if (e > channelError) {
+                        channelError = e;
+                        channel = c;
+                    }
+                }
+                this.error = error;
+                this.splitChannel = channel;
+            }
+
+            private List<Box> split() {
+                int c = splitChannel;
+                // Counting sort of the slice on the chosen channel, 32 buckets
+                int[] bucketCounts = new int[1 << BITS];
+                for (int i = from; i < to; i++) {
+                    bucketCounts[channel(bins[i], c)]++;
+                }
+                int[] starts = new int[1 << BITS];
+                for (int v = 1; v < starts.length; v++) {
+                    starts[v] = starts[v - 1] + bucketCounts[v - 1];
+                }
+                int[] sorted = new int[to - from];
+                for (int i = from; i < to; i++) {
+                    sorted[starts[channel(bins[i], c)]++] = bins[i];
+                }
+                System.arraycopy(sorted, 0, bins, from, sorted.length);
+
+                // Weighted median, never leaving one side empty
+                long half = population / 2;
+                long seen = 0;
+                int cut = from + 1;
+                for (int i = from; i < to - 1; i++) {
+                    seen += counts[bins[i]];
+                    cut = i + 1;
+                    if (seen >= half) break;
+                }
+                return List.of(new Box(bins, from, cut), new Box(bins, cut, to));
+            }
+
+            private int peak() {
+                int peak = bins[from];
+                for (int i = from + 1; i < to; i++) {
+                    if (counts[bins[i]] > counts[peak]) peak = bins[i];
+                }
+                return peak;
+            }
+        }
+    }
+}
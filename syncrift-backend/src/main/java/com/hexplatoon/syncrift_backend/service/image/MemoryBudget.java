@@ -0,0 +1,84 @@
+package com.hexplatoon.syncrift_backend.service.image;
+
+import com.hexplatoon.syncrift_backend.exception.ImageUploadRejectedException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hard cap on the heap held by in-flight image uploads. Every upload reserves its estimated
+ * footprint before decoding and waits, up to a limit, while other uploads hold the budget.
+ */
+@Component
+public class MemoryBudget implements MeterBinder {
+
+    // Permits are KiB so budgets of several GiB still fit in an int
+    private static final int UNIT = 1024;
+
+    private final int capacityUnits;
+    private final long waitMillis;
+    private final Semaphore permits;
+
+    public MemoryBudget(@Value("${image.upload.memory-budget-mb:256}") int budgetMegabytes,
+                        @Value("${image.upload.budget-wait-ms:30000}") long waitMillis) {
+        this.capacityUnits = budgetMegabytes * 1024;
+        this.waitMillis = waitMillis;
+        this.permits = new Semaphore(capacityUnits, true);
+    }
+
+    /**
+     * Reserves {@code bytes} of the budget until the returned reservation is closed.
+     *
+     * @throws IllegalArgumentException      if the request alone exceeds the whole budget
+     * @throws ImageUploadRejectedException if the budget did not free up in time
+     */
+    public Reservation reserve(long bytes) throws InterruptedException {
+        long units = (bytes + UNIT - 1) / UNIT;
+        if (units > capacityUnits) {
+            throw new IllegalArgumentException("Image is too large to process (needs ~"
+                    + (bytes >> 20) + " MB, budget is " + (capacityUnits >> 10) + " MB)");
+        }
+        if (!permits.tryAcquire((int) units, waitMillis, TimeUnit.MILLISECONDS)) {
+            throw new ImageUploadRejectedException("Image processing is busy, try again later");
+        }
+        return new Reservation((int) units);
+    }
+
+    public long availableBytes() {
+        return (long) permits.availablePermits() * UNIT;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("syncrift.image.upload.budget.available", this, MemoryBudget::availableBytes)
+                .description("Unreserved image processing memory")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("syncrift.image.upload.budget.capacity", this, budget -> (double) budget.capacityUnits * UNIT)
+                .description("Total image processing memory budget")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    public final class Reservation implements AutoCloseable {
+
+        private final int units;
+        private boolean released;
+
+        private Reservation(int units) {
+            this.units = units;
+        }
+
+        @Override
+        public void close() {
+            if (released) return;
+            released = true;
+            permits.release(units);
+        }
+    }
+}
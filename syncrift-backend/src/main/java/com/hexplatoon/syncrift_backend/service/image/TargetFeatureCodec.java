@@ -0,0 +1,81 @@
+package com.hexplatoon.syncrift_backend.service.image;
+
+import com.hexplatoon.syncrift_backend.service.battle.css.similarity.GrayImage;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary layout of {@link TargetFeatures}, big endian:
+ * <pre>
+ * int   magic "SRTF"
+ * byte  version
+ * byte  pyramid levels
+ * per level: short width, short height, width * height gray bytes
+ * short histogram bins, then one int count per bin
+ * </pre>
+ * Planes are stored raw so decoding is a bounds check and an array copy.
+ */
+final class TargetFeatureCodec {
+
+    static final short VERSION = 1;
+
+    private static final int MAGIC = ('S' << 24) | ('R' << 16) | ('T' << 8) | 'F';
+
+    private TargetFeatureCodec() {
+    }
+
+    static byte[] encode(TargetFeatures features) {
+        List<GrayImage> pyramid = features.pyramid();
+        int size = 4 + 1 + 1 + 2 + 4 * features.histogram().length;
+        for (GrayImage level : pyramid) {
+            size += 4 + level.pixels().length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC);
+        buffer.put((byte) VERSION);
+        buffer.put((byte) pyramid.size());
+        for (GrayImage level : pyramid) {
+            buffer.putShort((short) level.width());
+            buffer.putShort((short) level.height());
+            buffer.put(level.pixels());
+        }
+        buffer.putShort((short) features.histogram().length);
+        for (int count : features.histogram()) {
+            buffer.putInt(count);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the blob is not a supported feature blob
+     */
+    static TargetFeatures decode(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        if (data.length < 6 || buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a target feature blob");
+        }
+        int version = buffer.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported target feature version " + version);
+        }
+
+        int levels = buffer.get();
+        List<GrayImage> pyramid = new ArrayList<>(levels);
+        for (int i = 0; i < levels; i++) {
+            int width = Short.toUnsignedInt(buffer.getShort());
+            int height = Short.toUnsignedInt(buffer.getShort());
+            byte[] pixels = new byte[width * height];
+            buffer.get(pixels);
+            pyramid.add(new GrayImage(width, height, pixels));
+        }
+
+        int[] histogram = new int[Short.toUnsignedInt(buffer.getShort())];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = buffer.getInt();
+        }
+        return new TargetFeatures(pyramid, histogram);
+    }
+}
@@ -0,0 +1,70 @@
+package com.hexplatoon.syncrift_backend.service.image;
+
+import com.hexplatoon.syncrift_backend.service.battle.css.BrowserPool;
+import com.hexplatoon.syncrift_backend.service.battle.css.similarity.GrayImage;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds {@link TargetFeatures} from a decoded upload, at the size submissions are rendered at.
+ */
+@Component
+public class TargetFeatureExtractor {
+
+    // Matches the scales MS-SSIM scores, a level smaller than the SSIM window is useless
+    private static final int MAX_LEVELS = 5;
+    private static final int MIN_LEVEL_SIZE = 11;
+
+    public TargetFeatures extract(BufferedImage image) {
+        GrayImage level = GrayImage.of(image).resize(BrowserPool.VIEWPORT_WIDTH, BrowserPool.VIEWPORT_HEIGHT);
+        List<GrayImage> pyramid = new ArrayList<>(MAX_LEVELS);
+        pyramid.add(level);
+        while (pyramid.size() < MAX_LEVELS
+                && level.width() / 2 >= MIN_LEVEL_SIZE && level.height() / 2 >= MIN_LEVEL_SIZE) {
+            level = halve(level);
+            pyramid.add(level);
+        }
+        return new TargetFeatures(pyramid, histogram(image));
+    }
+
+    // 2x2 box filter and decimation, odd trailing rows and columns are dropped
+    private static GrayImage halve(GrayImage image) {
+        int width = image.width() / 2;
+        int height = image.height() / 2;
+        byte[] src = image.pixels();
+        byte[] dst = new byte[width * height];
+        int stride = image.width();
+        for (int y = 0; y < height; y++) {
+            int top = 2 * y * stride;
+            int bottom = top + stride;
+            for (int x = 0; x < width; x++) {
+                int i = 2 * x;
+                int sum = (src[top + i] & 0xFF) + (src[top + i + 1] & 0xFF)
+                        + (src[bottom + i] & 0xFF) + (src[bottom + i + 1] & 0xFF);
+                dst[y * width + x] = (byte) ((sum + 2) >> 2);
+            }
+        }
+        return new GrayImage(width, height, dst);
+    }
+
+    private static int[] histogram(BufferedImage image) {
+        int shift = 8 - TargetFeatures.HISTOGRAM_BITS;
+        int bits = TargetFeatures.HISTOGRAM_BITS;
+        int[] histogram = new int[TargetFeatures.HISTOGRAM_BINS];
+        int width = image.getWidth();
+        int[] row = new int[width];
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int rgb : row) {
+                int r = ((rgb >> 16) & 0xFF) >> shift;
+                int g = ((rgb >> 8) & 0xFF) >> shift;
+                int b = (rgb & 0xFF) >> shift;
+                histogram[(r << (2 * bits)) | (g << bits) | b]++;
+            }
+        }
+        return histogram;
+    }
+}
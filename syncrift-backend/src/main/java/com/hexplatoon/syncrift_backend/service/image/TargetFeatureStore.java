@@ -0,0 +1,45 @@
+package com.hexplatoon.syncrift_backend.service.image;
+
+import com.hexplatoon.syncrift_backend.entity.ImageFeatures;
+import com.hexplatoon.syncrift_backend.repository.ImageFeaturesRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+/**
+ * Persists {@link TargetFeatures} as a compact blob next to the image row.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TargetFeatureStore {
+
+    private final ImageFeaturesRepository imageFeaturesRepository;
+
+    public void save(Long imageId, TargetFeatures features) {
+        imageFeaturesRepository.save(ImageFeatures.builder()
+                .imageId(imageId)
+                .formatVersion(TargetFeatureCodec.VERSION)
+                .data(TargetFeatureCodec.encode(features))
+                .build());
+    }
+
+    /**
+     * Returns the stored features, or empty if there are none or they were written in an
+     * older format (callers then rebuild them from the original image).
+     */
+    public Optional<TargetFeatures> find(Long imageId) {
+        Optional<ImageFeatures> stored = imageFeaturesRepository.findById(imageId);
+        if (stored.isEmpty() || stored.get().getFormatVersion() != TargetFeatureCodec.VERSION) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(TargetFeatureCodec.decode(stored.get().getData()));
+        } catch (RuntimeException e) {
+            log.warn("Discarding unreadable features of image {}: {}", imageId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+}
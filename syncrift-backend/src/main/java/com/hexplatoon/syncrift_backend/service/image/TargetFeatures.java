@@ -0,0 +1,60 @@
+package com.hexplatoon.syncrift_backend.service.image;
+
+import com.hexplatoon.syncrift_backend.service.battle.css.similarity.GrayImage;
+
+import java.util.List;
+
+/**
+ * Scoring-ready view of a CSS battle target: grayscale planes at the canonical render size
+ * and a dyadic pyramid below it, plus a coarse RGB histogram.
+ */
+public final class TargetFeatures {
+
+    // 3 bits per channel, bin index is (r << 6) | (g << 3) | b
+    public static final int HISTOGRAM_BITS = 3;
+    public static final int HISTOGRAM_BINS = 1 << (3 * HISTOGRAM_BITS);
+
+    private final List<GrayImage> pyramid;
+    private final int[] histogram;
+
+    public TargetFeatures(List<GrayImage> pyramid, int[] histogram) {
+        if (pyramid.isEmpty()) {
+            throw new IllegalArgumentException("Pyramid needs at least the full size level");
+        }
+        if (histogram.length != HISTOGRAM_BINS) {
+            throw new IllegalArgumentException("Expected " + HISTOGRAM_BINS + " histogram bins, got " + histogram.length);
+        }
+        this.pyramid = List.copyOf(pyramid);
+        this.histogram = histogram;
+    }
+
+    /**
+     * Grayscale plane at the canonical render size.
+     */
+    public GrayImage gray() {
+        return pyramid.get(0);
+    }
+
+    public List<GrayImage> pyramid() {
+        return pyramid;
+    }
+
+    public int[] histogram() {
+        return histogram;
+    }
+
+    /**
+     * Grayscale plane at an arbitrary size, resized from the smallest pyramid level that is
+     * still at least as large. No resize happens for the canonical size.
+     */
+    public GrayImage grayAt(int width, int height) {
+        GrayImage source = pyramid.get(0);
+        for (GrayImage level : pyramid) {
+            if (level.width() < width || level.height() < height) {
+                break;
+            }
+            source = level;
+        }
+        return source.resize(width, height);
+    }
+}
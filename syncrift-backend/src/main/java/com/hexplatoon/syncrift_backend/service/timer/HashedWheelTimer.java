@@ -0,0 +1,304 @@
+package com.hexplatoon.syncrift_backend.service.timer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hashed timing wheel (Varghese &amp; Lauck) for large numbers of coarse-grained deadlines.
+ * <p>
+ * Scheduling and cancelling are O(1): new timeouts are pushed onto a lock-free queue and
+ * moved into their bucket by the single worker thread on the next tick. The worker never
+ * runs the tasks itself, expired timeouts are handed to {@code taskExecutor} so a slow
+ * callback can not delay the expiry of any other deadline.
+ */
+@Slf4j
+public class HashedWheelTimer implements MeterBinder {
+
+    private static final int WORKER_INIT = 0;
+    private static final int WORKER_STARTED = 1;
+    private static final int WORKER_SHUTDOWN = 2;
+
+    // Upper bound on timeouts moved from the pending queue per tick, so a burst can not stall the wheel
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private final String name;
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Executor taskExecutor;
+    private final Thread workerThread;
+
+    private final Queue<WheelTimeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+    private final Queue<WheelTimeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicLong scheduledCount = new AtomicLong();
+    private final AtomicInteger workerState = new AtomicInteger(WORKER_INIT);
+    private final CountDownLatch startTimeInitialized = new CountDownLatch(1);
+
+    private volatile long startTime;
+    private volatile Timer expiryLag;
+
+    public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int ticksPerWheel, Executor taskExecutor) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be greater than 0: " + tickDuration);
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+            throw new IllegalArgumentException("ticksPerWheel must be in (0, 2^30]: " + ticksPerWheel);
+        }
+        this.name = name;
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.taskExecutor = taskExecutor;
+
+        int size = Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        if (size == 0) size = 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+
+        this.workerThread = new Thread(new Worker(), name + "-wheel");
+        this.workerThread.setDaemon(true);
+    }
+
+    /**
+     * Schedules {@code task} to run on the task executor once {@code delay} has elapsed.
+     * The actual expiry is rounded up to the next tick.
+     */
+    public WheelTimeout schedule(Runnable task, long delay, TimeUnit unit) {
+        start();
+        long deadline = System.nanoTime() + unit.toNanos(Math.max(delay, 0)) - startTime;
+        WheelTimeout timeout = new WheelTimeout(this, task, deadline);
+        scheduledCount.incrementAndGet();
+        pendingTimeouts.add(timeout);
+        return timeout;
+    }
+
+    public void start() {
+        switch (workerState.get()) {
+            case WORKER_INIT -> {
+                if (workerState.compareAndSet(WORKER_INIT, WORKER_STARTED)) {
+                    workerThread.start();
+                }
+            }
+            case WORKER_STARTED -> {
+            }
+            default -> throw new IllegalStateException("Timer " + name + " has been stopped");
+        }
+
+        while (startTime == 0) {
+            try {
+                startTimeInitialized.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public void stop() {
+        if (workerState.getAndSet(WORKER_SHUTDOWN) != WORKER_STARTED) {
+            return;
+        }
+        workerThread.interrupt();
+        try {
+            workerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Timer {} stopped with {} deadlines still scheduled", name, scheduledCount.get());
+    }
+
+    /**
+     * Number of deadlines that are scheduled and neither expired nor cancelled.
+     */
+    public long pendingTimeouts() {
+        return scheduledCount.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("syncrift.timer.pending", scheduledCount, AtomicLong::get)
+                .description("Deadlines currently held by the timing wheel")
+                .tag("timer", name)
+                .register(registry);
+        Gauge.builder("syncrift.timer.wheel.size", wheel, w -> w.length)
+                .description("Number of buckets in the timing wheel")
+                .tag("timer", name)
+                .register(registry);
+        expiryLag = Timer.builder("syncrift.timer.expiry.lag")
+                .description("Delay between a deadline and its hand-off to the task executor")
+                .tag("timer", name)
+                .register(registry);
+    }
+
+    void onCancelled(WheelTimeout timeout) {
+        scheduledCount.decrementAndGet();
+        cancelledTimeouts.add(timeout);
+    }
+
+    private void expire(WheelTimeout timeout, long now) {
+        if (!timeout.markExpired()) {
+            return;
+        }
+        scheduledCount.decrementAndGet();
+
+        Timer lag = expiryLag;
+        if (lag != null) {
+            lag.record(Math.max(now - timeout.deadline, 0), TimeUnit.NANOSECONDS);
+        }
+
+        try {
+            taskExecutor.execute(() -> {
+                try {
+                    timeout.task().run();
+                } catch (Throwable t) {
+                    log.error("Timer {} task failed", name, t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.error("Timer {} task rejected by executor", name, e);
+        }
+    }
+
+    private final class Worker implements Runnable {
+
+        private long tick;
+
+        @Override
+        public void run() {
+            long now = System.nanoTime();
+            // 0 is used as the "not started" marker
+            startTime = now == 0 ? 1 : now;
+            startTimeInitialized.countDown();
+
+            while (workerState.get() == WORKER_STARTED) {
+                long deadline = waitForNextTick();
+                if (deadline > 0) {
+                    processCancelledTimeouts();
+                    transferPendingTimeouts();
+                    wheel[(int) (tick & mask)].expireTimeouts(deadline);
+                    tick++;
+                }
+            }
+        }
+
+        private void transferPendingTimeouts() {
+            for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+                WheelTimeout timeout = pendingTimeouts.poll();
+                if (timeout == null) {
+                    break;
+                }
+                if (timeout.isCancelled()) {
+                    continue;
+                }
+
+                long calculated = timeout.deadline / tickNanos;
+                timeout.remainingRounds = (calculated - tick) / wheel.length;
+
+                // Deadlines already in the past go into the current bucket
+                long ticks = Math.max(calculated, tick);
+                wheel[(int) (ticks & mask)].add(timeout);
+            }
+        }
+
+        private void processCancelledTimeouts() {
+            WheelTimeout timeout;
+            while ((timeout = cancelledTimeouts.poll()) != null) {
+                timeout.unlink();
+            }
+        }
+
+        private long waitForNextTick() {
+            long deadline = tickNanos * (tick + 1);
+
+            for (;;) {
+                long currentTime = System.nanoTime() - startTime;
+                long sleepMillis = (deadline - currentTime + 999_999) / 1_000_000;
+
+                if (sleepMillis <= 0) {
+                    return currentTime;
+                }
+
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch (InterruptedException e) {
+                    if (workerState.get() == WORKER_SHUTDOWN) {
+                        return Long.MIN_VALUE;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Intrusive doubly linked list of timeouts sharing one wheel slot. Worker thread only.
+     */
+    final class Bucket {
+
+        private WheelTimeout head;
+        private WheelTimeout tail;
+
+        void add(WheelTimeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expireTimeouts(long deadline) {
+            WheelTimeout timeout = head;
+            while (timeout != null) {
+                WheelTimeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    expire(timeout, deadline);
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(WheelTimeout timeout) {
+            WheelTimeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+
+            if (timeout == head) {
+                if (timeout == tail) {
+                    tail = null;
+                    head = null;
+                } else {
+                    head = next;
+                }
+            } else if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.hexplatoon.syncrift_backend.service.timer;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Handle for a single deadline registered with a {@link HashedWheelTimer}.
+ * Instances are linked directly into the wheel buckets, so scheduling and
+ * cancelling never allocate anything besides the handle itself.
+ */
+public final class WheelTimeout {
+
+    private static final int ST_INIT = 0;
+    private static final int ST_CANCELLED = 1;
+    private static final int ST_EXPIRED = 2;
+
+    private static final AtomicIntegerFieldUpdater<WheelTimeout> STATE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(WheelTimeout.class, "state");
+
+    private final HashedWheelTimer timer;
+    private final Runnable task;
+    final long deadline;
+
+    private volatile int state = ST_INIT;
+
+    // Only touched by the worker thread
+    long remainingRounds;
+    WheelTimeout next;
+    WheelTimeout prev;
+    HashedWheelTimer.Bucket bucket;
+
+    WheelTimeout(HashedWheelTimer timer, Runnable task, long deadline) {
+        this.timer = timer;
+        this.task = task;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Cancels the deadline. The bucket slot is reclaimed by the worker on its next tick.
+     *
+     * @return true if this call cancelled the timeout, false if it had already expired or been cancelled
+     */
+    public boolean cancel() {
+        if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+            return false;
+        }
+        timer.onCancelled(this);
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return state == ST_CANCELLED;
+    }
+
+    public boolean isExpired() {
+        return state == ST_EXPIRED;
+    }
+
+    Runnable task() {
+        return task;
+    }
+
+    boolean markExpired() {
+        return STATE_UPDATER.compareAndSet(this, ST_INIT, ST_EXPIRED);
+    }
+
+    void unlink() {
+        if (bucket != null) {
+            bucket.remove(this);
+        }
+    }
+}
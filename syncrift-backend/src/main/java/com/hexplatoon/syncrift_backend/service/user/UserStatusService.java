@@ -1,6 +1,6 @@
 package com.hexplatoon.syncrift_backend.service.user;
 
-import com.hexplatoon.syncrift_backend.dto.user.ProfileDto;
+import com.hexplatoon.syncrift_backend.dto.user.MiniProfileDto;
 import com.hexplatoon.syncrift_backend.dto.user.UserStatusDto;
 import com.hexplatoon.syncrift_backend.entity.User;
 import com.hexplatoon.syncrift_backend.repository.UserRepository;
@@ -93,10 +93,10 @@ public class UserStatusService {
      * @param user the user whose status changed
      */
     private void broadcastStatusUpdate(User user) {
-        List<ProfileDto> friends = friendService.listFriends(user.getUsername());
+        List<MiniProfileDto> friends = friendService.listFriendMiniProfiles(user.getUsername());
         UserStatusDto statusUpdate = UserStatusDto.fromUser(user);
         // TODO : change the subscription channel path
-        for (ProfileDto friend : friends) {
+        for (MiniProfileDto friend : friends) {
             simpMessagingTemplate.convertAndSendToUser(
                 friend.getUsername(),
                 "/topic/user/status",
@@ -0,0 +1,106 @@
+package com.hexplatoon.syncrift_backend.benchmark;
+
+import com.hexplatoon.syncrift_backend.dto.battle.progress.TypingBattleProgress;
+import com.hexplatoon.syncrift_backend.service.battle.BattleShardExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Battle messages per second through the shard executor as the shard count grows. Each
+ * message applies a word update to its battle's progress and re-aligns the typed text, the
+ * work a live score preview costs. Throughput should scale with the shards up to the number
+ * of cores; run with {@code -p shards=1,2,4,8} on a machine with at least 8.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BattleShardExecutorBenchmark {
+
+    private static final int BATTLES = 512;
+    private static final int MESSAGES = 8192;
+    private static final int WORDS = 60;
+
+    @Param({"1", "2", "4", "8"})
+    private int shards;
+
+    private BattleShardExecutor executor;
+    private TypingBattleProgress[] progress;
+    private List<List<String>> updates;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        executor = new BattleShardExecutor(shards, MESSAGES, 1000);
+        SplittableRandom random = new SplittableRandom(11);
+        String[] words = new String[WORDS];
+        for (int i = 0; i < WORDS; i++) {
+            char[] word = new char[random.nextInt(2, 8)];
+            for (int j = 0; j < word.length; j++) {
+                word[j] = (char) ('a' + random.nextInt(26));
+            }
+            words[i] = new String(word);
+        }
+        progress = new TypingBattleProgress[BATTLES];
+        for (int i = 0; i < BATTLES; i++) {
+            progress[i] = new TypingBattleProgress(words);
+        }
+        updates = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            // A few words with the occasional typo
+            List<String> update = new ArrayList<>(Arrays.asList(words).subList(0, random.nextInt(10, WORDS)));
+            if (random.nextBoolean()) update.set(random.nextInt(update.size()), "typo");
+            updates.add(update);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void typingProgress() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(MESSAGES);
+        for (int i = 0; i < MESSAGES; i++) {
+            int battle = i % BATTLES;
+            List<String> update = updates.get(i % updates.size());
+            executor.execute(battle, () -> {
+                // Re-aligns the typed text as part of the update
+                progress[battle].replaceFrom(0, update);
+                done.countDown();
+            });
+        }
+        done.await();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BattleShardExecutorBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,136 @@
+package com.hexplatoon.syncrift_backend.benchmark;
+
+import com.hexplatoon.syncrift_backend.service.image.DominantColorExtractor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dominant colors of a 4000x2500 upload (the size of a 10 MB PNG): the previous
+ * per-pixel {@code getRGB} + {@code HashMap} method against the quantized histogram.
+ * "shapes" is a typical flat CSS target, "photo" has a distinct color in almost every pixel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class DominantColorBenchmark {
+
+    private static final int WIDTH = 4000;
+    private static final int HEIGHT = 2500;
+
+    @Param({"shapes", "photo"})
+    private String content;
+
+    @Param({"TYPE_3BYTE_BGR", "TYPE_INT_ARGB"})
+    private String layout;
+
+    private BufferedImage image;
+    private DominantColorExtractor medianCut;
+    private DominantColorExtractor topBins;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int type = "TYPE_INT_ARGB".equals(layout) ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_3BYTE_BGR;
+        image = "photo".equals(content) ? photo(type) : shapes(type);
+        medianCut = new DominantColorExtractor(true);
+        topBins = new DominantColorExtractor(false);
+    }
+
+    @Benchmark
+    public List<String> legacyGetRgbHashMap() {
+        return legacyDominantHexColors(image, 4);
+    }
+
+    @Benchmark
+    public List<String> quantizedMedianCut() {
+        return medianCut.extract(image, 4);
+    }
+
+    @Benchmark
+    public List<String> quantizedTopBins() {
+        return topBins.extract(image, 4);
+    }
+
+    // Previous ImageUploadService.getDominantHexColors, minus the file read
+    private static List<String> legacyDominantHexColors(BufferedImage image, int maxColors) {
+        Map<Integer, Integer> colorFrequency = new HashMap<>();
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int rgb = image.getRGB(x, y);
+                colorFrequency.put(rgb, colorFrequency.getOrDefault(rgb, 0) + 1);
+            }
+        }
+        List<Map.Entry<Integer, Integer>> sortedColors = new ArrayList<>(colorFrequency.entrySet());
+        sortedColors.sort((o1, o2) -> o2.getValue().compareTo(o1.getValue()));
+
+        List<String> hexCodes = new ArrayList<>();
+        for (int i = 0; i < sortedColors.size() && i < maxColors; i++) {
+            hexCodes.add(String.format("#%06X", (0xFFFFFF & sortedColors.get(i).getKey())));
+        }
+        return hexCodes;
+    }
+
+    private static BufferedImage shapes(int type) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, type);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(new Color(0x2B2D42));
+        g.fillRect(0, 0, WIDTH, HEIGHT);
+        g.setColor(new Color(0xEF233C));
+        g.fillOval(500, 300, 2000, 1800);
+        g.setColor(new Color(0x8D99AE));
+        g.fillRect(2600, 200, 1200, 900);
+        g.setColor(new Color(0xEDF2F4));
+        g.fillRoundRect(2700, 1500, 900, 600, 100, 100);
+        g.dispose();
+        return image;
+    }
+
+    private static BufferedImage photo(int type) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, type);
+        SplittableRandom random = new SplittableRandom(42);
+        int[] row = new int[WIDTH];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int r = Math.min(255, x * 255 / WIDTH + random.nextInt(16));
+                int g = Math.min(255, y * 255 / HEIGHT + random.nextInt(16));
+                int b = Math.min(255, (x + y) * 255 / (WIDTH + HEIGHT) + random.nextInt(16));
+                row[x] = 0xFF000000 | (r << 16) | (g << 8) | b;
+            }
+            image.setRGB(0, y, WIDTH, 1, row, 0, WIDTH);
+        }
+        return image;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DominantColorBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
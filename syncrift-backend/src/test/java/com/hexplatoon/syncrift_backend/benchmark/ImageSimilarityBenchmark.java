@@ -0,0 +1,144 @@
+package com.hexplatoon.syncrift_backend.benchmark;
+
+import com.hexplatoon.syncrift_backend.service.battle.css.similarity.GrayImage;
+import com.hexplatoon.syncrift_backend.service.battle.css.similarity.OpenCvImageSimilarity;
+import com.hexplatoon.syncrift_backend.service.battle.css.similarity.SsimImageSimilarity;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgcodecs;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.bytedeco.opencv.global.opencv_imgproc.COLOR_BGR2GRAY;
+
+/**
+ * Scoring a 400x600 CSS battle screenshot against its target: the previous
+ * {@code compareImages} path (OpenCV grayscale + absdiff + mean on BGR Mats) against
+ * the pure-Java engines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class ImageSimilarityBenchmark {
+
+    private Mat renderedBgr;
+    private Mat targetBgr;
+    private GrayImage rendered;
+    private GrayImage target;
+
+    private OpenCvImageSimilarity openCv;
+    private SsimImageSimilarity ssim;
+    private SsimImageSimilarity msSsim;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BufferedImage targetImage = draw(0);
+        BufferedImage renderedImage = draw(6);
+
+        targetBgr = decodeBgr(targetImage);
+        renderedBgr = decodeBgr(renderedImage);
+        target = GrayImage.of(targetImage);
+        rendered = GrayImage.of(renderedImage);
+
+        openCv = new OpenCvImageSimilarity();
+        ssim = new SsimImageSimilarity(0, false);
+        msSsim = new SsimImageSimilarity(0, true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        renderedBgr.release();
+        targetBgr.release();
+        ssim.close();
+        msSsim.close();
+    }
+
+    @Benchmark
+    public double legacyCompareImages() {
+        Mat gray1 = new Mat();
+        Mat gray2 = new Mat();
+        Mat diff = new Mat();
+        try {
+            opencv_imgproc.cvtColor(renderedBgr, gray1, COLOR_BGR2GRAY);
+            opencv_imgproc.cvtColor(targetBgr, gray2, COLOR_BGR2GRAY);
+            opencv_core.absdiff(gray1, gray2, diff);
+            return Math.max(100 - opencv_core.mean(diff).get(0), 0);
+        } finally {
+            gray1.release();
+            gray2.release();
+            diff.release();
+        }
+    }
+
+    @Benchmark
+    public double openCvAbsDiff() {
+        return openCv.score(rendered, target);
+    }
+
+    @Benchmark
+    public double vectorSsim() {
+        return ssim.score(rendered, target);
+    }
+
+    @Benchmark
+    public double vectorMsSsim() {
+        return msSsim.score(rendered, target);
+    }
+
+    // A typical target: flat background with a few solid shapes, shifted by offset pixels
+    private static BufferedImage draw(int offset) {
+        BufferedImage image = new BufferedImage(400, 600, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(new Color(0x2B2D42));
+        g.fillRect(0, 0, 400, 600);
+        g.setColor(new Color(0xEF233C));
+        g.fillOval(100 + offset, 150, 200, 200);
+        g.setColor(new Color(0x8D99AE));
+        g.fillRect(50, 420 + offset, 300, 80);
+        g.setColor(new Color(0xEDF2F4));
+        g.fillRoundRect(160, 60 - offset / 2, 80, 40, 16, 16);
+        g.dispose();
+        return image;
+    }
+
+    private static Mat decodeBgr(BufferedImage image) throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        try (BytePointer bytes = new BytePointer(png.toByteArray());
+             Mat encoded = new Mat(bytes)) {
+            return opencv_imgcodecs.imdecode(encoded, opencv_imgcodecs.IMREAD_COLOR);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ImageSimilarityBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,117 @@
+package com.hexplatoon.syncrift_backend.benchmark;
+
+import com.hexplatoon.syncrift_backend.service.battle.typing.TypingAligner;
+import com.hexplatoon.syncrift_backend.service.battle.typing.TypingAlignment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Typing result accuracy over a 150-word text: the previous word-index comparison, a
+ * textbook Levenshtein matrix and the bit-parallel aligner. "skipped" drops one word early
+ * in the typed text, which word-index scoring turns into almost all wrong words.
+ * Run with {@code -prof gc} to check the aligner allocates nothing per call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TypingAlignerBenchmark {
+
+    @Param({"clean", "typos", "skipped"})
+    private String typing;
+
+    private String expected;
+    private String typed;
+    private final TypingAlignment alignment = new TypingAlignment();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(7);
+        StringBuilder text = new StringBuilder();
+        for (int word = 0; word < 150; word++) {
+            if (word > 0) text.append(' ');
+            int length = random.nextInt(2, 8);
+            for (int i = 0; i < length; i++) {
+                text.append((char) ('a' + random.nextInt(26)));
+            }
+        }
+        expected = text.toString();
+        // A player about 80% through the text
+        String prefix = expected.substring(0, expected.indexOf(' ', expected.length() * 4 / 5));
+        typed = switch (typing) {
+            case "typos" -> withTypos(prefix, random);
+            case "skipped" -> prefix.substring(0, 20) + prefix.substring(prefix.indexOf(' ', 21));
+            default -> prefix;
+        };
+    }
+
+    @Benchmark
+    public int wordIndexEquality() {
+        String[] typedWords = typed.trim().split("\\s+");
+        String[] originalWords = expected.trim().split("\\s+");
+        int correctWords = 0;
+        for (int i = 0; i < Math.min(typedWords.length, originalWords.length); i++) {
+            if (typedWords[i].equals(originalWords[i])) correctWords++;
+        }
+        return correctWords;
+    }
+
+    @Benchmark
+    public int levenshteinMatrix() {
+        int m = typed.length();
+        int n = expected.length();
+        int[][] d = new int[m + 1][n + 1];
+        for (int i = 0; i <= m; i++) d[i][0] = i;
+        for (int j = 0; j <= n; j++) d[0][j] = j;
+        for (int i = 1; i <= m; i++) {
+            for (int j = 1; j <= n; j++) {
+                int cost = typed.charAt(i - 1) == expected.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+            }
+        }
+        int best = Integer.MAX_VALUE;
+        for (int j = 0; j <= n; j++) best = Math.min(best, d[m][j]);
+        return best;
+    }
+
+    @Benchmark
+    public int bitParallelAligner() {
+        return TypingAligner.align(expected, typed, alignment).distance();
+    }
+
+    private static String withTypos(String text, SplittableRandom random) {
+        StringBuilder out = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int roll = random.nextInt(50);
+            if (roll == 0 && c != ' ') out.append((char) ('a' + random.nextInt(26)));
+            else if (roll == 1) out.append(c).append(c);
+            else if (roll != 2) out.append(c);
+        }
+        return out.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TypingAlignerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
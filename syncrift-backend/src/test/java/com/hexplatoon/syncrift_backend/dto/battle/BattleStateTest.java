@@ -0,0 +1,121 @@
+package com.hexplatoon.syncrift_backend.dto.battle;
+
+import com.hexplatoon.syncrift_backend.dto.battle.BattleState.Phase;
+import com.hexplatoon.syncrift_backend.dto.battle.BattleState.ReadyOutcome;
+import com.hexplatoon.syncrift_backend.entity.Battle;
+import com.hexplatoon.syncrift_backend.entity.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BattleStateTest {
+
+    private final Battle battle = Battle.builder()
+            .challenger(User.builder().username("alice").build())
+            .opponent(User.builder().username("bob").build())
+            .build();
+
+    @Test
+    void bothPlayersReadyStartsTheBattle() {
+        BattleState state = new BattleState(battle);
+        assertEquals(Phase.WAITING, state.getPhase());
+
+        assertEquals(ReadyOutcome.PARTIAL, state.markReady("alice"));
+        assertEquals(Phase.READY_PARTIAL, state.getPhase());
+        assertFalse(state.isBothReady());
+
+        assertEquals(ReadyOutcome.STARTED, state.markReady("bob"));
+        assertEquals(Phase.ONGOING, state.getPhase());
+        assertTrue(state.isBothReady());
+        assertTrue(state.isActive());
+    }
+
+    @Test
+    void readyIsRejectedTwiceForOutsidersAndOnceStarted() {
+        BattleState state = new BattleState(battle);
+        assertEquals(ReadyOutcome.REJECTED, state.markReady("mallory"));
+        assertEquals(ReadyOutcome.PARTIAL, state.markReady("bob"));
+        assertEquals(ReadyOutcome.REJECTED, state.markReady("bob"));
+        assertEquals(ReadyOutcome.STARTED, state.markReady("alice"));
+        assertEquals(ReadyOutcome.REJECTED, state.markReady("alice"));
+    }
+
+    @Test
+    void onlyBattlesThatHaveNotStartedCanBeCanceled() {
+        BattleState waiting = new BattleState(battle);
+        assertTrue(waiting.cancel());
+        assertEquals(Phase.CANCELED, waiting.getPhase());
+        assertFalse(waiting.cancel());
+        assertEquals(ReadyOutcome.REJECTED, waiting.markReady("alice"));
+
+        BattleState partial = new BattleState(battle);
+        partial.markReady("alice");
+        assertTrue(partial.cancel());
+
+        BattleState ongoing = new BattleState(battle, Phase.ONGOING);
+        assertFalse(ongoing.cancel());
+        assertEquals(Phase.ONGOING, ongoing.getPhase());
+    }
+
+    @Test
+    void scoringEndsOrCancels() {
+        BattleState scored = new BattleState(battle, Phase.ONGOING);
+        assertTrue(scored.transition(Phase.ONGOING, Phase.SCORING));
+        assertTrue(scored.isActive());
+        assertFalse(scored.transition(Phase.ONGOING, Phase.SCORING));
+        assertTrue(scored.transition(Phase.SCORING, Phase.ENDED));
+        assertFalse(scored.isActive());
+        // Readiness survives the transitions
+        assertTrue(scored.isBothReady());
+
+        BattleState unscored = new BattleState(battle, Phase.ONGOING);
+        unscored.transition(Phase.ONGOING, Phase.SCORING);
+        assertTrue(unscored.transition(Phase.SCORING, Phase.CANCELED));
+        assertFalse(unscored.transition(Phase.SCORING, Phase.ENDED));
+        assertEquals(Phase.CANCELED, unscored.getPhase());
+    }
+
+    @Test
+    void restoredWaitingBattleStartsOverWithNobodyReady() {
+        BattleState state = new BattleState(battle, Phase.WAITING);
+        assertFalse(state.isBothReady());
+        assertEquals(ReadyOutcome.PARTIAL, state.markReady("alice"));
+    }
+
+    @Test
+    void exactlyOneCallerWinsATransition() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 200; round++) {
+                BattleState state = new BattleState(battle, Phase.ONGOING);
+                CountDownLatch go = new CountDownLatch(1);
+                List<Future<Boolean>> calls = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    calls.add(executor.submit(() -> {
+                        go.await();
+                        return state.transition(Phase.ONGOING, Phase.SCORING);
+                    }));
+                }
+                go.countDown();
+                int winners = 0;
+                for (Future<Boolean> call : calls) {
+                    if (call.get(5, TimeUnit.SECONDS)) winners++;
+                }
+                assertEquals(1, winners);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
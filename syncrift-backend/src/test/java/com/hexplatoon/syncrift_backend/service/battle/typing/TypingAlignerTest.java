@@ -0,0 +1,166 @@
+package com.hexplatoon.syncrift_backend.service.battle.typing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the bit-parallel aligner against a textbook Levenshtein matrix, where the typed
+ * text is aligned to the closest prefix of the expected text.
+ */
+class TypingAlignerTest {
+
+    @Test
+    void emptyInputs() {
+        assertAligned("", "");
+        assertAligned("hello world", "");
+        assertAligned("", "hello");
+    }
+
+    @Test
+    void exactPrefixHasNoErrors() {
+        TypingAlignment alignment = align("the quick brown fox", "the quick");
+        assertEquals(0, alignment.distance());
+        assertEquals(9, alignment.expectedLength());
+        assertEquals(9, alignment.matches());
+        assertEquals(0, alignment.errorCount());
+    }
+
+    @Test
+    void skippedCharacterIsOneDeletion() {
+        TypingAlignment alignment = align("the quick brown", "the quck brown");
+        assertEquals(1, alignment.distance());
+        assertEquals(1, alignment.deletions());
+        assertEquals(1, alignment.skippedCount());
+        assertEquals(6, alignment.skippedPosition(0));
+    }
+
+    @Test
+    void allWrong() {
+        assertAligned("abcdefgh", "zzzzzzzz");
+        assertAligned("abc", "zzzzzzzzzzzz");
+        assertAligned(repeat('a', 200), repeat('b', 200));
+    }
+
+    @Test
+    void longerThanOneBlock() {
+        String text = words(new SplittableRandom(7), 60);
+        assertAligned(text, text.substring(0, 64));
+        assertAligned(text, text.substring(0, 65));
+        assertAligned(text, text.substring(0, 128));
+        assertAligned(text, text.substring(0, 200) + "x");
+        assertAligned(text, text);
+    }
+
+    @Test
+    void nonAsciiNeverMatches() {
+        assertAligned("café au lait", "café au lait");
+        assertAligned("naïve", "naive");
+    }
+
+    @Test
+    void randomInputs() {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int round = 0; round < 500; round++) {
+            String expected = words(random, 1 + random.nextInt(40));
+            String typed = mistype(random, expected.substring(0, random.nextInt(expected.length() + 1)));
+            assertAligned(expected, typed);
+        }
+    }
+
+    @Test
+    void reusedAlignmentIsReset() {
+        TypingAlignment alignment = new TypingAlignment();
+        TypingAligner.align(repeat('a', 300), repeat('b', 300), alignment);
+        TypingAligner.align("abc", "abc", alignment);
+        assertEquals(0, alignment.distance());
+        assertEquals(3, alignment.matches());
+        assertEquals(0, alignment.errorCount());
+    }
+
+    private static TypingAlignment align(String expected, String typed) {
+        return TypingAligner.align(expected, typed, new TypingAlignment());
+    }
+
+    private static void assertAligned(String expected, String typed) {
+        TypingAlignment alignment = align(expected, typed);
+        String message = "typed '" + typed + "' against '" + expected + "'";
+        assertEquals(levenshteinToPrefix(expected, typed), alignment.distance(), message);
+        // The edits found by the trace back must add up to the distance and both lengths
+        assertEquals(typed.length(), alignment.typedLength(), message);
+        assertEquals(alignment.distance(),
+                alignment.substitutions() + alignment.insertions() + alignment.deletions(), message);
+        assertEquals(typed.length(),
+                alignment.matches() + alignment.substitutions() + alignment.insertions(), message);
+        assertEquals(alignment.expectedLength(),
+                alignment.matches() + alignment.substitutions() + alignment.deletions(), message);
+        assertEquals(alignment.substitutions() + alignment.insertions(), alignment.errorCount(), message);
+        assertEquals(alignment.deletions(), alignment.skippedCount(), message);
+        assertEquals(levenshtein(expected.substring(0, alignment.expectedLength()), typed),
+                alignment.distance(), message);
+    }
+
+    /**
+     * Smallest edit distance between {@code typed} and any prefix of {@code expected}.
+     */
+    private static int levenshteinToPrefix(String expected, String typed) {
+        int[][] d = matrix(expected, typed);
+        int best = Integer.MAX_VALUE;
+        for (int j = 0; j <= expected.length(); j++) {
+            best = Math.min(best, d[typed.length()][j]);
+        }
+        return best;
+    }
+
+    private static int levenshtein(String expected, String typed) {
+        return matrix(expected, typed)[typed.length()][expected.length()];
+    }
+
+    private static int[][] matrix(String expected, String typed) {
+        int m = typed.length();
+        int n = expected.length();
+        int[][] d = new int[m + 1][n + 1];
+        for (int i = 0; i <= m; i++) d[i][0] = i;
+        for (int j = 0; j <= n; j++) d[0][j] = j;
+        for (int i = 1; i <= m; i++) {
+            for (int j = 1; j <= n; j++) {
+                char c = typed.charAt(i - 1);
+                // The aligner treats characters outside ASCII as never matching
+                int cost = c == expected.charAt(j - 1) && c < 128 ? 0 : 1;
+                d[i][j] = Math.min(d[i - 1][j - 1] + cost, Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+            }
+        }
+        return d;
+    }
+
+    private static String words(SplittableRandom random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int w = 0; w < count; w++) {
+            if (w > 0) text.append(' ');
+            for (int i = 0, length = 1 + random.nextInt(8); i < length; i++) {
+                text.append((char) ('a' + random.nextInt(26)));
+            }
+        }
+        return text.toString();
+    }
+
+    private static String mistype(SplittableRandom random, String text) {
+        StringBuilder typed = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            switch (random.nextInt(20)) {
+                case 0 -> typed.append((char) ('a' + random.nextInt(26)));
+                case 1 -> {
+                }
+                case 2 -> typed.append(text.charAt(i)).append((char) ('a' + random.nextInt(26)));
+                default -> typed.append(text.charAt(i));
+            }
+        }
+        return typed.toString();
+    }
+
+    private static String repeat(char c, int count) {
+        return String.valueOf(c).repeat(count);
+    }
+}
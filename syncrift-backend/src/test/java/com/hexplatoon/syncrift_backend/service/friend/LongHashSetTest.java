@@ -0,0 +1,102 @@
+package com.hexplatoon.syncrift_backend.service.friend;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongHashSetTest {
+
+    @Test
+    void addContainsRemove() {
+        LongHashSet set = new LongHashSet();
+        assertFalse(set.contains(1));
+        assertTrue(set.add(1));
+        assertFalse(set.add(1));
+        assertTrue(set.add(42));
+        assertEquals(2, set.size());
+        assertTrue(set.contains(42));
+
+        assertTrue(set.remove(1));
+        assertFalse(set.remove(1));
+        assertFalse(set.contains(1));
+        assertTrue(set.contains(42));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    void emptiedSetCanBeReused() {
+        LongHashSet set = new LongHashSet();
+        set.add(7);
+        set.remove(7);
+        assertEquals(0, set.size());
+        assertFalse(set.remove(7));
+        assertArrayEquals(new long[0], set.toSortedArray());
+        assertTrue(set.add(7));
+        assertTrue(set.contains(7));
+    }
+
+    @Test
+    void onlyPositiveIds() {
+        LongHashSet set = new LongHashSet();
+        assertThrows(IllegalArgumentException.class, () -> set.add(0));
+        assertThrows(IllegalArgumentException.class, () -> set.add(-3));
+        assertFalse(set.contains(0));
+    }
+
+    @Test
+    void sortedArray() {
+        LongHashSet set = new LongHashSet();
+        for (long id : new long[]{50, 3, 17, 1_000_000_000_000L, 8}) {
+            set.add(id);
+        }
+        assertArrayEquals(new long[]{3, 8, 17, 50, 1_000_000_000_000L}, set.toSortedArray());
+    }
+
+    @Test
+    void matchesHashSetUnderRandomChurn() {
+        // Sequential ids in a small range, so probe runs wrap and get shifted back often
+        Random random = new Random(1);
+        LongHashSet set = new LongHashSet();
+        Set<Long> reference = new HashSet<>();
+        for (int i = 0; i < 100_000; i++) {
+            long id = 1 + random.nextInt(300);
+            if (random.nextInt(3) == 0) {
+                assertEquals(reference.remove(id), set.remove(id));
+            } else {
+                assertEquals(reference.add(id), set.add(id));
+            }
+            assertEquals(reference.size(), set.size());
+        }
+        for (long id = 1; id <= 300; id++) {
+            assertEquals(reference.contains(id), set.contains(id), "id " + id);
+        }
+        long[] expected = reference.stream().mapToLong(Long::longValue).sorted().toArray();
+        assertArrayEquals(expected, set.toSortedArray());
+    }
+
+    @Test
+    void growsPastManyResizes() {
+        LongHashSet set = new LongHashSet();
+        for (long id = 1; id <= 10_000; id++) {
+            set.add(id * 31);
+        }
+        assertEquals(10_000, set.size());
+        for (long id = 1; id <= 10_000; id++) {
+            assertTrue(set.contains(id * 31));
+            assertFalse(set.contains(id * 31 + 1));
+        }
+        long[] sorted = set.toSortedArray();
+        long[] copy = sorted.clone();
+        Arrays.sort(copy);
+        assertArrayEquals(copy, sorted);
+    }
+}
@@ -0,0 +1,83 @@
+package com.hexplatoon.syncrift_backend.service.friend;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SortedLongsTest {
+
+    @Test
+    void intersectSmallAgainstLarge() {
+        long[] small = {4, 100, 999};
+        long[] large = new long[1000];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = i + 1;
+        }
+        assertArrayEquals(new long[]{4, 100, 999}, SortedLongs.intersect(small, large));
+        assertArrayEquals(new long[]{4, 100, 999}, SortedLongs.intersect(large, small));
+        assertEquals(3, SortedLongs.intersectionSize(small, large));
+    }
+
+    @Test
+    void emptyAndDisjoint() {
+        long[] values = {1, 2, 3};
+        assertSame(SortedLongs.EMPTY, SortedLongs.intersect(values, SortedLongs.EMPTY));
+        assertSame(SortedLongs.EMPTY, SortedLongs.intersect(values, new long[]{4, 5}));
+        assertEquals(0, SortedLongs.intersectionSize(SortedLongs.EMPTY, SortedLongs.EMPTY));
+        assertEquals(0, SortedLongs.intersectionSize(new long[]{10, 20}, new long[]{1, 2, 3}));
+    }
+
+    @Test
+    void gallopFindsTheFirstElementNotBelowTheKey() {
+        long[] values = {2, 4, 6, 8, 10, 12, 14, 16};
+        assertEquals(0, SortedLongs.gallop(values, 0, 1));
+        assertEquals(0, SortedLongs.gallop(values, 0, 2));
+        assertEquals(3, SortedLongs.gallop(values, 0, 7));
+        assertEquals(7, SortedLongs.gallop(values, 2, 16));
+        assertEquals(8, SortedLongs.gallop(values, 0, 17));
+        assertEquals(5, SortedLongs.gallop(values, 5, 3));
+        assertEquals(8, SortedLongs.gallop(values, 8, 1));
+    }
+
+    @Test
+    void contains() {
+        long[] values = {3, 9, 27};
+        assertTrue(SortedLongs.contains(values, 9));
+        assertFalse(SortedLongs.contains(values, 10));
+        assertFalse(SortedLongs.contains(SortedLongs.EMPTY, 1));
+    }
+
+    @Test
+    void matchesSetIntersectionOnRandomInputs() {
+        Random random = new Random(3);
+        for (int round = 0; round < 2000; round++) {
+            long[] a = randomSorted(random, random.nextInt(50), 1 + random.nextInt(200));
+            long[] b = randomSorted(random, random.nextInt(2000), 1 + random.nextInt(5000));
+            TreeSet<Long> common = new TreeSet<>();
+            for (long value : a) common.add(value);
+            TreeSet<Long> other = new TreeSet<>();
+            for (long value : b) other.add(value);
+            common.retainAll(other);
+            long[] expected = common.stream().mapToLong(Long::longValue).toArray();
+
+            assertArrayEquals(expected, SortedLongs.intersect(a, b));
+            assertArrayEquals(expected, SortedLongs.intersect(b, a));
+            assertEquals(expected.length, SortedLongs.intersectionSize(a, b));
+        }
+    }
+
+    private static long[] randomSorted(Random random, int count, int range) {
+        TreeSet<Long> values = new TreeSet<>();
+        for (int i = 0; i < count; i++) {
+            values.add(1L + random.nextInt(range));
+        }
+        return values.stream().mapToLong(Long::longValue).toArray();
+    }
+}
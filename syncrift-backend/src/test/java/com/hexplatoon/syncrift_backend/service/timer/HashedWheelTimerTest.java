@@ -0,0 +1,105 @@
+package com.hexplatoon.syncrift_backend.service.timer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashedWheelTimerTest {
+
+    // Tasks run on the worker thread, enough for these tests
+    private final HashedWheelTimer timer = new HashedWheelTimer("test", 10, TimeUnit.MILLISECONDS, 8, Runnable::run);
+
+    @AfterEach
+    void stop() {
+        timer.stop();
+    }
+
+    @Test
+    void expiresNoEarlierThanTheDelay() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        long start = System.nanoTime();
+        WheelTimeout timeout = timer.schedule(fired::countDown, 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+        assertEquals(0, timer.pendingTimeouts());
+    }
+
+    @Test
+    void expiresAfterMoreThanOneRound() throws InterruptedException {
+        // 8 buckets of 10 ms, a 200 ms deadline goes around the wheel twice
+        CountDownLatch fired = new CountDownLatch(1);
+        long start = System.nanoTime();
+        timer.schedule(fired::countDown, 200, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    void pastDeadlineExpiresOnTheNextTick() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        timer.schedule(fired::countDown, -5, TimeUnit.SECONDS);
+
+        assertTrue(fired.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void cancelledTimeoutNeverRuns() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch later = new CountDownLatch(1);
+        WheelTimeout cancelled = timer.schedule(runs::incrementAndGet, 30, TimeUnit.MILLISECONDS);
+        timer.schedule(later::countDown, 100, TimeUnit.MILLISECONDS);
+
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        assertTrue(cancelled.isCancelled());
+        assertEquals(1, timer.pendingTimeouts());
+
+        assertTrue(later.await(2, TimeUnit.SECONDS));
+        assertEquals(0, runs.get());
+        assertFalse(cancelled.isExpired());
+    }
+
+    @Test
+    void cancelAfterTheTimeoutWasBucketed() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        WheelTimeout timeout = timer.schedule(runs::incrementAndGet, 150, TimeUnit.MILLISECONDS);
+        // Let the worker move it from the pending queue into its bucket
+        Thread.sleep(40);
+        assertTrue(timeout.cancel());
+
+        Thread.sleep(250);
+        assertEquals(0, runs.get());
+        assertEquals(0, timer.pendingTimeouts());
+    }
+
+    @Test
+    void failingTaskDoesNotStopTheWheel() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        timer.schedule(() -> {
+            throw new IllegalStateException("boom");
+        }, 10, TimeUnit.MILLISECONDS);
+        timer.schedule(fired::countDown, 40, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void stoppedTimerRejectsNewTimeouts() {
+        timer.schedule(() -> { }, 1, TimeUnit.SECONDS);
+        timer.stop();
+
+        assertThrows(IllegalStateException.class, () -> timer.schedule(() -> { }, 1, TimeUnit.SECONDS));
+    }
+}
@@ -20,6 +20,8 @@ function CSSBattle() {
   const [targetColors] = useState(battleData.config.colorCode || []);
 
   const submittedRef = useRef(false);
+  // Code as last reported for the replay, edits are sent as diffs against it
+  const recordedCodeRef = useRef("");
   const initialCode = `<style>
 .box {
   width: 100px;
@@ -68,8 +70,32 @@ function CSSBattle() {
     iframeDoc.close();
   };
 
+  // Sends the changed range, the common prefix and suffix are left out
+  const recordEdit = (next) => {
+    const prev = recordedCodeRef.current;
+    let start = 0;
+    while (start < prev.length && start < next.length && prev[start] === next[start]) {
+      start++;
+    }
+    let prevEnd = prev.length;
+    let nextEnd = next.length;
+    while (prevEnd > start && nextEnd > start && prev[prevEnd - 1] === next[nextEnd - 1]) {
+      prevEnd--;
+      nextEnd--;
+    }
+    if (prevEnd === start && nextEnd === start) return;
+    send("/app/battle/css/edit", {
+      battleId: battleData.battleId,
+      offset: start,
+      deleted: prevEnd - start,
+      inserted: next.slice(start, nextEnd),
+    });
+    recordedCodeRef.current = next;
+  };
+
   useEffect(() => {
     updatePreview(code); // Initial render
+    recordEdit(code);
   }, []);
 
   // ✅ Submit Handlers
@@ -141,6 +167,7 @@ function CSSBattle() {
               onChange={(val) => {
                 setCode(val);
                 updatePreview(val);
+                recordEdit(val);
               }}
               editorProps={{ $blockScrolling: true }}
               fontSize={18}
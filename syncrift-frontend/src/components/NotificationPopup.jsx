@@ -50,6 +50,18 @@ export default function NotificationPopup({
       try {
         const data = JSON.parse(message.body);
         console.log("Parsed Challenge Data:", data);
+        if (data.status === "EXPIRED") {
+          // Sent to both players, the recipient can no longer answer it
+          setNotifications((prev) => prev.filter((n) => n.id !== `challenge-${data.challengeId}`));
+          if (data.senderUsername === user) {
+            addNotification({
+              id: `challenge-expired-${data.challengeId}`,
+              type: "challenge_expired",
+              content: `Your challenge to ${data.recipientUsername} expired.`,
+            });
+          }
+          return;
+        }
         addNotification({
           id: `challenge-${data.challengeId}`,
           type: "challenge",
@@ -6,16 +6,60 @@ import { useBattle, useStomp } from "@/utils/StompContext";
 
 const TypingBattle = () => {
   const { battleData } = useBattle();
-  const { send } = useStomp();
+  const { send, connected, subscribeWithCleanup } = useStomp();
   const [text] = useState(battleData.config.text);
   const [duration] = useState(battleData.config.duration);
   const [input, setInput] = useState("");
   const [timeLeft, setTimeLeft] = useState(duration);
   const [pressedKey, setPressedKey] = useState("");
   const [errors, setErrors] = useState([]);
+  const [opponentCaret, setOpponentCaret] = useState(null);
   const inputRef = useRef(null);
   const textContainerRef = useRef(null);
   const currentCharRef = useRef(null);
+  // Words already reported to the server, scoring happens there as we type
+  const sentWordsRef = useRef([]);
+
+  // Sends the words that changed since the last update
+  const syncProgress = (words) => {
+    const sent = sentWordsRef.current;
+    let start = 0;
+    while (start < words.length && start < sent.length && words[start] === sent[start]) {
+      start++;
+    }
+    if (start === words.length && start === sent.length) return;
+    // The server accepts at most 64 words per message
+    for (let i = start; i < Math.max(words.length, start + 1); i += 64) {
+      send("/app/battle/typing/progress", {
+        battleId: battleData.battleId,
+        startIndex: i,
+        words: words.slice(i, i + 64),
+      });
+    }
+    sentWordsRef.current = words;
+  };
+
+  // Opponent position, pushed by the server a few times per second as small deltas
+  useEffect(() => {
+    if (!connected) return;
+    let position = null;
+    let lastSeq = -1;
+    const cleanup = subscribeWithCleanup("/user/topic/battle/progress", (message) => {
+      const frame = JSON.parse(message.body);
+      if (frame.battleId !== battleData.battleId || frame.seq <= lastSeq) return;
+      if (frame.position !== undefined) {
+        position = frame.position;
+      } else if (position !== null && frame.seq === lastSeq + 1) {
+        position += frame.delta;
+      } else {
+        // Missed a frame, wait for the next key frame
+        position = null;
+      }
+      lastSeq = frame.seq;
+      if (position !== null) setOpponentCaret(position);
+    });
+    return () => cleanup?.();
+  }, [connected, battleData.battleId]);
 
   useEffect(() => {
     const endTime = Date.now() + (duration * 1000);
@@ -50,11 +94,10 @@ const TypingBattle = () => {
   useEffect(() => {
     console.log(input);
     if (timeLeft === 0) {
-      const payload = {
-        battleId: battleData.battleId,
-        text: input,
-      };
-      send("/app/battle/end", payload);
+      // The last word counts even without a trailing space
+      const trimmed = input.trim();
+      syncProgress(trimmed === "" ? [] : trimmed.split(/\s+/));
+      send("/app/battle/end", { battleId: battleData.battleId });
     }
   }, [timeLeft, input, battleData.battleId]);
 
@@ -92,6 +135,12 @@ const TypingBattle = () => {
     const value = e.target.value;
     setInput(value);
     setPressedKey(value.slice(-1));
+    send("/app/battle/typing/caret", {
+      battleId: battleData.battleId,
+      position: value.length,
+    });
+    // Words followed by a space are committed
+    syncProgress(value.split(" ").slice(0, -1));
 
     if (onStart && value.length === 1) {
       onStart(); // Optional callback if needed on actual typing start
@@ -112,6 +161,7 @@ const TypingBattle = () => {
       const isCorrect = typedChar === char;
       const isTyped = typedChar !== undefined;
       const isCurrent = input.length === i;
+      const isOpponent = opponentCaret === i && !isCurrent;
 
       let className = "text-muted-foreground";
       if (isTyped) {
@@ -119,6 +169,8 @@ const TypingBattle = () => {
       }
       if (isCurrent) {
         className += " border-l-2 border-blue-500 animate-pulse";
+      } else if (isOpponent) {
+        className += " border-l-2 border-orange-500";
       }
 
       return (
@@ -62,6 +62,22 @@ export default function BattleWaitingPage() {
     return cleanup;
   }, [token]);
 
+  // Subscribe to battle end, sent here when the battle could not be started
+  useEffect(() => {
+    if (!token) return;
+    const cleanup = subscribeWithCleanup(
+      "/user/topic/battle/end",
+      (message) => {
+        const data = JSON.parse(message.body);
+        battleData.result = data.result;
+        updateBattleData(battleData);
+        navigate("/battleresult");
+      }
+    );
+
+    return cleanup;
+  }, [token]);
+
   const handleReady = () => {
     if (!isReady && battleData?.battleId) {
       // Convert to numeric value first